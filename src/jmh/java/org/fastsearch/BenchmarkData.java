@@ -0,0 +1,100 @@
+package org.fastsearch;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Inputs shared by the benchmarks, generated from a fixed seed so runs compare.
+ */
+final class BenchmarkData {
+    private static final String[] WORDS = {
+            "report", "config", "index", "main", "util", "test", "data", "final", "draft", "backup",
+            "Invoice", "README", "server", "client", "build", "cache", "session", "export", "notes", "IMG"
+    };
+    private static final String[] EXTENSIONS = {
+            "txt", "log", "java", "md", "json", "xml", "jpg", "png", "pdf", "csv", "tmp", "class"
+    };
+
+    private BenchmarkData() {
+    }
+
+    static String[] fileNames(int count) {
+        Random random = new Random(42);
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            String base = WORDS[random.nextInt(WORDS.length)];
+            if (random.nextInt(4) == 0) {
+                base += "_20" + (10 + random.nextInt(15)) + "_" + random.nextInt(10000);
+            } else if (random.nextBoolean()) {
+                base += "-" + WORDS[random.nextInt(WORDS.length)].toLowerCase();
+            }
+            names[i] = base + "." + EXTENSIONS[random.nextInt(EXTENSIONS.length)];
+        }
+        return names;
+    }
+
+    static List<Path> paths(Path root, int count) {
+        Random random = new Random(7);
+        String[] folders = {"src", "main", "java", "node_modules", "lib", "build", "target", "docs", "assets", ".git",
+                "vendor", "cache", "projects", "2024", "photos"};
+        String[] names = fileNames(count);
+        List<Path> paths = new ArrayList<>(count);
+        for (String name : names) {
+            Path path = root;
+            int depth = 2 + random.nextInt(8);
+            for (int d = 0; d < depth; d++) {
+                path = path.resolve(folders[random.nextInt(folders.length)]);
+            }
+            paths.add(path.resolve(name));
+        }
+        return paths;
+    }
+
+    /**
+     * Text of about {@code size} bytes in lines of {@code lineLength} characters, with
+     * {@code needleLine} placed near the end so a search has to cover almost all of it.
+     */
+    static String text(int size, int lineLength, String needleLine) {
+        Random random = new Random(1);
+        StringBuilder text = new StringBuilder(size + lineLength);
+        StringBuilder line = new StringBuilder(lineLength + 16);
+        while (text.length() < size * 9 / 10) {
+            line.setLength(0);
+            while (line.length() < lineLength) {
+                line.append(WORDS[random.nextInt(WORDS.length)].toLowerCase()).append(' ');
+                if (random.nextInt(8) == 0) {
+                    line.append(random.nextInt(100000)).append(' ');
+                }
+            }
+            text.append(line, 0, lineLength).append('\n');
+        }
+        text.append(needleLine).append('\n');
+        while (text.length() < size) {
+            text.append("trailing line without the needle\n");
+        }
+        return text.toString();
+    }
+
+    static void delete(Path dir) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path d, IOException e) throws IOException {
+                Files.delete(d);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,178 @@
+package org.fastsearch;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generates the file trees the end-to-end benchmarks search. The same seed and scale always give
+ * the same tree, so results of different runs and machines describe the same work.
+ *
+ * <p>Every corpus mixes text files, some of which contain {@link #NEEDLE}, binary files the
+ * search has to recognize and skip, and folders excluded by the default settings that hold many
+ * files the search must never enter.
+ */
+final class CorpusGenerator {
+    static final String NEEDLE = "fastsearch-needle-4711";
+    private static final int VERSION = 1;
+    private static final String MARKER = ".corpus";
+    private static final String[] EXCLUDED = {"node_modules", ".git", "__pycache__"};
+    private static final String[] TEXT_EXTENSIONS = {"txt", "java", "md", "json", "xml", "csv"};
+    private static final String[] BINARY_EXTENSIONS = {"bin", "dat", "class"};
+    private static final String[] WORDS = {
+            "search", "index", "report", "config", "server", "client", "cache", "session", "error", "value",
+            "request", "response", "thread", "buffer", "stream", "folder", "result", "query", "filter", "match"
+    };
+
+    /**
+     * The shape of a corpus.
+     */
+    enum Shape {
+        /** Narrow and deep: few entries per folder, many levels. */
+        DEEP(10, 2, 5),
+        /** Shallow and wide: thousands of folders directly below a few parents. */
+        WIDE(2, 60, 3),
+        /** A handful of folders holding large log files. */
+        LOGS(1, 4, 3);
+
+        final int depth;
+        final int fanout;
+        final int filesPerFolder;
+
+        Shape(int depth, int fanout, int filesPerFolder) {
+            this.depth = depth;
+            this.fanout = fanout;
+            this.filesPerFolder = filesPerFolder;
+        }
+
+        String folderName() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final long seed;
+    private final int scale;
+
+    CorpusGenerator(long seed, int scale) {
+        this.seed = seed;
+        this.scale = scale;
+    }
+
+    /**
+     * Generates all shapes below {@code root}, unless it already holds the same corpus.
+     *
+     * @return whether anything was generated
+     */
+    boolean generate(Path root) throws IOException {
+        Path marker = root.resolve(MARKER);
+        String description = "version=" + VERSION + " seed=" + seed + " scale=" + scale;
+        if (Files.exists(marker) && Files.readString(marker).equals(description)) {
+            return false;
+        }
+        if (Files.exists(root)) {
+            BenchmarkData.delete(root);
+        }
+        for (Shape shape : Shape.values()) {
+            Random random = new Random(seed * 31 + shape.ordinal());
+            Path folder = Files.createDirectories(root.resolve(shape.folderName()));
+            populate(folder, shape, shape.depth, random);
+        }
+        Files.writeString(marker, description);
+        return true;
+    }
+
+    private void populate(Path folder, Shape shape, int depth, Random random) throws IOException {
+        for (int i = 0; i < shape.filesPerFolder * scale; i++) {
+            if (shape == Shape.LOGS) {
+                writeLog(folder.resolve("server-" + i + ".log"), random);
+            } else if (random.nextInt(10) == 0) {
+                writeBinary(folder.resolve(word(random) + i + "." + pick(BINARY_EXTENSIONS, random)), random);
+            } else {
+                writeText(folder.resolve(word(random) + "_" + i + "." + pick(TEXT_EXTENSIONS, random)), random);
+            }
+        }
+        // Excluded folders appear at every few levels and are large, so entering one shows
+        if (random.nextInt(4) == 0) {
+            Path excluded = Files.createDirectories(folder.resolve(pick(EXCLUDED, random)).resolve("pkg"));
+            for (int i = 0; i < 10 * scale; i++) {
+                writeText(excluded.resolve("module" + i + ".js"), random);
+            }
+        }
+        if (depth > 0) {
+            for (int i = 0; i < shape.fanout; i++) {
+                populate(Files.createDirectory(folder.resolve(word(random) + "-" + i)), shape, depth - 1, random);
+            }
+        }
+    }
+
+    /**
+     * A source-like file of a few kilobytes; one in fifty contains the needle.
+     */
+    private static void writeText(Path file, Random random) throws IOException {
+        int lines = 10 + random.nextInt(100);
+        boolean withNeedle = random.nextInt(50) == 0;
+        int needleLine = random.nextInt(lines);
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int line = 0; line < lines; line++) {
+                writeLine(out, random, 4 + random.nextInt(12));
+                if (withNeedle && line == needleLine) {
+                    out.write("    // " + NEEDLE + " " + random.nextInt(1000) + "\n");
+                }
+            }
+        }
+    }
+
+    /**
+     * A log of several megabytes with long lines; the needle, if any, is near the end.
+     */
+    private void writeLog(Path file, Random random) throws IOException {
+        long size = (3L << 20) + random.nextInt(1 << 20);
+        boolean withNeedle = random.nextBoolean();
+        long written = 0;
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            while (written < size) {
+                String prefix = "2024-03-" + (10 + random.nextInt(20)) + " " + (random.nextInt(5) == 0 ? "WARN" : "INFO")
+                        + " [thread-" + random.nextInt(32) + "] ";
+                out.write(prefix);
+                written += prefix.length() + writeLine(out, random, 10 + random.nextInt(40));
+                if (withNeedle && written >= size * 9 / 10) {
+                    out.write("ERROR " + NEEDLE + " connection refused\n");
+                    withNeedle = false;
+                }
+            }
+        }
+    }
+
+    private static void writeBinary(Path file, Random random) throws IOException {
+        byte[] data = new byte[1024 + random.nextInt(64 * 1024)];
+        random.nextBytes(data);
+        data[random.nextInt(Math.min(data.length, 512))] = 0;
+        try (OutputStream out = Files.newOutputStream(file)) {
+            out.write(data);
+        }
+    }
+
+    private static int writeLine(BufferedWriter out, Random random, int words) throws IOException {
+        int length = 0;
+        for (int i = 0; i < words; i++) {
+            String word = word(random);
+            out.write(word);
+            out.write(' ');
+            length += word.length() + 1;
+        }
+        out.write('\n');
+        return length + 1;
+    }
+
+    private static String word(Random random) {
+        return pick(WORDS, random);
+    }
+
+    private static String pick(String[] values, Random random) {
+        return values[random.nextInt(values.length)];
+    }
+}
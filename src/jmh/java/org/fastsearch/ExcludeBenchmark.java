@@ -0,0 +1,63 @@
+package org.fastsearch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exclude checks as the traversal makes them, once per directory entry, with the default
+ * patterns and with a long list mixing every kind of pattern.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExcludeBenchmark {
+    @Param({"default", "64"})
+    public String patterns;
+
+    private ExcludeMatcher matcher;
+    private Path[] paths;
+
+    @Setup
+    public void setUp() {
+        List<String> list = new ArrayList<>(new SearchConfig().getExcludePatterns());
+        if (!patterns.equals("default")) {
+            int count = Integer.parseInt(patterns);
+            for (int i = 0; list.size() < count; i++) {
+                switch (i % 4) {
+                    case 0 -> list.add("generated" + i);
+                    case 1 -> list.add("*.ext" + i);
+                    case 2 -> list.add("tmp" + i + "_*.bak");
+                    default -> list.add("**/out" + i + "/**");
+                }
+            }
+        }
+        matcher = new ExcludeMatcher(list);
+        paths = BenchmarkData.paths(Paths.get("/home/user"), 1024).toArray(new Path[0]);
+    }
+
+    @Benchmark
+    public void test(Blackhole blackhole) {
+        for (Path path : paths) {
+            blackhole.consume(matcher.test(path));
+        }
+    }
+}
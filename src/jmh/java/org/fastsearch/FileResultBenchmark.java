@@ -0,0 +1,40 @@
+package org.fastsearch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What every result costs: the engine's {@link SearchHit} and the table row made from it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileResultBenchmark {
+    private final String path = "/home/user/projects/fast-search/src/main/java/org/fastsearch/SearchEngine.java";
+    private final long size = 48_213;
+    private final long modified = 1_700_000_000_000L;
+    private final SearchHit hit = new SearchHit(path, size, modified, Collections.emptyList(), Collections.emptyList());
+
+    @Benchmark
+    public SearchHit searchHit() {
+        return new SearchHit(path, size, modified, Collections.emptyList(), Collections.emptyList());
+    }
+
+    @Benchmark
+    public FileResult fileResult() {
+        return new FileResult(hit);
+    }
+}
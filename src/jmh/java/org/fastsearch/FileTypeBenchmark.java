@@ -0,0 +1,73 @@
+package org.fastsearch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Text or binary: answered by the extension, by the file type cache, or by sniffing the file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileTypeBenchmark {
+    private Path dir;
+    private SearchEngine engine;
+    private Path textFile;
+    private BasicFileAttributes textAttrs;
+    private Path unknownFile;
+    private BasicFileAttributes unknownAttrs;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("filetype-bench");
+        SearchConfig config = new SearchConfig();
+        config.setIndexDirectory(dir.resolve("index").toString());
+        engine = new SearchEngine(config);
+        textFile = Files.writeString(dir.resolve("notes.txt"), BenchmarkData.text(8192, 80, "needle"));
+        textAttrs = Files.readAttributes(textFile, BasicFileAttributes.class);
+        unknownFile = Files.writeString(dir.resolve("notes.dat"), BenchmarkData.text(8192, 80, "needle"));
+        unknownAttrs = Files.readAttributes(unknownFile, BasicFileAttributes.class);
+        // Classified once, so later lookups hit the cache
+        engine.isTextFile(unknownFile, unknownAttrs);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        engine.close();
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    public boolean byExtension() {
+        return engine.isTextFile(textFile, textAttrs);
+    }
+
+    @Benchmark
+    public boolean cached() {
+        return engine.isTextFile(unknownFile, unknownAttrs);
+    }
+
+    @Benchmark
+    public boolean sniffed() {
+        // Without attributes the cache cannot be consulted
+        return engine.isTextFile(unknownFile, null);
+    }
+}
@@ -0,0 +1,56 @@
+package org.fastsearch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Filename queries: turning a query into a pattern, and matching it against a directory's worth
+ * of names.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatternBenchmark {
+    @Param({"report", "*.log", "IMG_20??_*.jpg"})
+    public String query;
+
+    @Param({"true", "false"})
+    public boolean caseSensitive;
+
+    private Pattern pattern;
+    private String[] names;
+
+    @Setup
+    public void setUp() {
+        pattern = Pattern.compile(SearchEngine.buildPattern(query), caseSensitive ? 0 : Pattern.CASE_INSENSITIVE);
+        names = BenchmarkData.fileNames(1024);
+    }
+
+    @Benchmark
+    public Pattern buildPattern() {
+        return Pattern.compile(SearchEngine.buildPattern(query), caseSensitive ? 0 : Pattern.CASE_INSENSITIVE);
+    }
+
+    @Benchmark
+    public void matchNames(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(pattern.matcher(name).find());
+        }
+    }
+}
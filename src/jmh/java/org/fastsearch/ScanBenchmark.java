@@ -0,0 +1,89 @@
+package org.fastsearch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Content scanning of a single file, the work a content search repeats for every file: a literal
+ * matched on the raw bytes, case-insensitively, a regex behind its required literal, and a regex
+ * with no literal that has to decode every line. The match sits near the end of the file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScanBenchmark {
+    @Param({"literal", "ignoreCase", "regex", "regexNoLiteral"})
+    public String query;
+
+    @Param({"80", "16384"})
+    public int lineLength;
+
+    @Param({"16384", "4194304"})
+    public int fileSize;
+
+    private Path dir;
+    private Path file;
+    private LiteralScanner scanner;
+    private PatternScanner patternScanner;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("scan-bench");
+        file = Files.writeString(dir.resolve("server.log"),
+                BenchmarkData.text(fileSize, lineLength, "2024-01-01 ERROR 5023 connection refused"));
+        switch (query) {
+            case "literal" -> scanner = new LiteralScanner("connection refused", true);
+            case "ignoreCase" -> scanner = new LiteralScanner("CONNECTION REFUSED", false);
+            case "regex" -> {
+                String regex = "ERROR\\s+\\d{4}";
+                scanner = new LiteralScanner(RegexLiterals.required(regex), true, Pattern.compile(regex));
+            }
+            default -> patternScanner = new PatternScanner(Pattern.compile("\\d{4}\\s+conn\\w+"));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    public boolean firstMatch() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return scanner != null
+                    ? scanner.matches(channel, null)
+                    : !patternScanner.findMatches(channel, null, 1).isEmpty();
+        }
+    }
+
+    @Benchmark
+    public List<MatchPosition> positions() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return scanner != null
+                    ? scanner.findMatches(channel, null, SearchEngine.MAX_MATCH_POSITIONS)
+                    : patternScanner.findMatches(channel, null, SearchEngine.MAX_MATCH_POSITIONS);
+        }
+    }
+}
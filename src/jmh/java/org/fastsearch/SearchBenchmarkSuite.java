@@ -0,0 +1,334 @@
+package org.fastsearch;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs whole searches over the corpora of {@link CorpusGenerator} and records how long they take
+ * to the first and to the last result, their throughput and the heap they need. The results are
+ * written as JSON and compared with a baseline recorded earlier on the same machine; the run fails
+ * if any search got slower or bigger than the baseline allows.
+ *
+ * <p>Each search runs once on a new engine with empty caches ("cold") and then several times on
+ * the same engine ("warm"), of which the median run is kept. Cold does not mean a cold disk cache,
+ * the corpus was just read by the previous search.
+ */
+final class SearchBenchmarkSuite {
+    static final int PASSED = 0;
+    static final int REGRESSED = 1;
+    static final int ERROR = 2;
+
+    private static final String USAGE = """
+            Usage: SearchBenchmarkSuite [options]
+
+            Options:
+              --corpus DIR         where the corpus is generated (default: target/corpus)
+              --seed N             seed of the corpus (default: 42)
+              --scale N            multiplies the files per folder (default: 1)
+              --runs N             warm runs per search (default: 5)
+              --out FILE           where the results are written (default: target/search-benchmark.json)
+              --baseline FILE      results to compare with (default: src/jmh/search-baseline.json)
+              --tolerance F        allowed slowdown, 0.25 is 25% (default: 0.25)
+              --save-baseline      store the results as the new baseline instead of comparing
+            """;
+    /** Below this, differences in time are noise whatever the tolerance. */
+    private static final double MIN_SLACK_MILLIS = 20;
+    private static final long MIN_SLACK_HEAP_BYTES = 32L << 20;
+
+    private static final List<Scenario> SCENARIOS = List.of(
+            new Scenario("filename-literal", SearchRequest.Mode.FILENAME, "report", true, false),
+            new Scenario("filename-wildcard", SearchRequest.Mode.FILENAME, "*_2.json", false, false),
+            new Scenario("content-literal", SearchRequest.Mode.CONTENT, CorpusGenerator.NEEDLE, true, false),
+            new Scenario("content-ignore-case", SearchRequest.Mode.CONTENT, CorpusGenerator.NEEDLE.toUpperCase(),
+                    false, false),
+            new Scenario("content-regex", SearchRequest.Mode.CONTENT, "needle-\\d+\\s+(connection|\\d+)", true, true));
+
+    private Path corpus = Paths.get("target", "corpus");
+    private long seed = 42;
+    private int scale = 1;
+    private int runs = 5;
+    private Path out = Paths.get("target", "search-benchmark.json");
+    private Path baseline = Paths.get("src", "jmh", "search-baseline.json");
+    private double tolerance = 0.25;
+    private boolean saveBaseline;
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    public static void main(String[] args) {
+        System.exit(new SearchBenchmarkSuite().run(args));
+    }
+
+    int run(String[] args) {
+        try {
+            parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            return ERROR;
+        }
+        try {
+            if (new CorpusGenerator(seed, scale).generate(corpus)) {
+                System.out.println("Generated corpus in " + corpus);
+            }
+            Report report = measureAll();
+            write(report, out);
+            System.out.println("Results written to " + out);
+            if (saveBaseline) {
+                write(report, baseline);
+                System.out.println("Baseline saved to " + baseline);
+                return PASSED;
+            }
+            if (!Files.exists(baseline)) {
+                System.out.println("No baseline at " + baseline + ", run with --save-baseline to record one");
+                return PASSED;
+            }
+            List<String> regressions = compare(read(baseline), report);
+            if (regressions.isEmpty()) {
+                System.out.println("No regressions against " + baseline);
+                return PASSED;
+            }
+            System.err.println(regressions.size() + " regression(s) against " + baseline + ":");
+            regressions.forEach(regression -> System.err.println("  " + regression));
+            return REGRESSED;
+        } catch (IOException e) {
+            System.err.println("Benchmark failed: " + e.getMessage());
+            return ERROR;
+        }
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--corpus" -> corpus = Paths.get(value(args, ++i, arg));
+                case "--seed" -> seed = Long.parseLong(value(args, ++i, arg));
+                case "--scale" -> scale = Integer.parseInt(value(args, ++i, arg));
+                case "--runs" -> runs = Integer.parseInt(value(args, ++i, arg));
+                case "--out" -> out = Paths.get(value(args, ++i, arg));
+                case "--baseline" -> baseline = Paths.get(value(args, ++i, arg));
+                case "--tolerance" -> tolerance = Double.parseDouble(value(args, ++i, arg));
+                case "--save-baseline" -> saveBaseline = true;
+                default -> throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        if (scale < 1 || runs < 1 || tolerance < 0) {
+            throw new IllegalArgumentException("--scale and --runs must be positive, --tolerance not negative");
+        }
+    }
+
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException(option + " needs a value");
+        }
+        return args[i];
+    }
+
+    private Report measureAll() throws IOException {
+        Report report = new Report();
+        report.seed = seed;
+        report.scale = scale;
+        report.runs = runs;
+        report.javaVersion = System.getProperty("java.version");
+        report.processors = Runtime.getRuntime().availableProcessors();
+        warmUp();
+        for (CorpusGenerator.Shape shape : CorpusGenerator.Shape.values()) {
+            Path folder = corpus.resolve(shape.folderName()).toAbsolutePath();
+            for (Scenario scenario : SCENARIOS) {
+                Result result = measure(scenario, folder, runs);
+                result.shape = shape.folderName();
+                report.results.add(result);
+                System.out.printf(Locale.ROOT, "%-20s %-5s %6d found  cold %8.1f ms  warm %8.1f ms  first %7.1f ms"
+                                + "  %9.0f files/s  %7.1f MB/s  heap %5d MB%n",
+                        result.scenario, result.shape, result.warm.found(), result.cold.totalMillis(),
+                        result.warm.totalMillis(), result.warm.firstResultMillis(), result.cold.filesPerSecond(),
+                        result.cold.megabytesPerSecond(), result.cold.peakHeapBytes() >> 20);
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Runs every search once without measuring it, so the first measured one does not also pay
+     * for loading classes and compiling the hot paths.
+     */
+    private void warmUp() throws IOException {
+        for (CorpusGenerator.Shape shape : CorpusGenerator.Shape.values()) {
+            Path folder = corpus.resolve(shape.folderName()).toAbsolutePath();
+            for (Scenario scenario : SCENARIOS) {
+                measure(scenario, folder, 0);
+            }
+        }
+    }
+
+    /**
+     * Measures {@code scenario} on a new engine, first cold and then {@code warmRuns} times warm.
+     */
+    private Result measure(Scenario scenario, Path folder, int warmRuns) throws IOException {
+        SearchRequest request = new SearchRequest();
+        request.setMode(scenario.mode());
+        request.setQuery(scenario.query());
+        request.setCaseSensitive(scenario.caseSensitive());
+        request.setRegex(scenario.regex());
+        request.setFolder(folder.toString());
+
+        // Every engine gets its own index folder, so no cache outlives it
+        Path indexDirectory = Files.createTempDirectory("fastsearch-bench");
+        SearchConfig config = new SearchConfig();
+        config.setIndexDirectory(indexDirectory.toString());
+        Result result = new Result();
+        result.scenario = scenario.name();
+        try (SearchEngine engine = new SearchEngine(config)) {
+            result.cold = measure(engine, request);
+            List<Measurement> warm = new ArrayList<>();
+            for (int i = 0; i < warmRuns; i++) {
+                warm.add(measure(engine, request));
+            }
+            if (!warm.isEmpty()) {
+                warm.sort(Comparator.comparingDouble(Measurement::totalMillis));
+                result.warm = warm.get(warm.size() / 2);
+            }
+        } finally {
+            BenchmarkData.delete(indexDirectory);
+        }
+        return result;
+    }
+
+    private static Measurement measure(SearchEngine engine, SearchRequest request) {
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        AtomicLong found = new AtomicLong();
+        AtomicLong firstResultNanos = new AtomicLong();
+        engine.setCancellation(() -> false);
+        long start = System.nanoTime();
+        request.run(engine, hit -> {
+            if (found.getAndIncrement() == 0) {
+                firstResultNanos.set(System.nanoTime());
+            }
+        }, status -> {
+        });
+        long end = System.nanoTime();
+
+        long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        SearchProgress progress = engine.getProgress();
+        double seconds = Math.max(end - start, 1) / 1e9;
+        return new Measurement(found.get(),
+                found.get() > 0 ? (firstResultNanos.get() - start) / 1e6 : -1,
+                (end - start) / 1e6,
+                progress.getFilesSeen() / seconds,
+                progress.getBytesScanned() / seconds / (1 << 20),
+                peakHeap);
+    }
+
+    /**
+     * Returns one message for every search that is slower or needs more heap than its baseline
+     * allows, or that found a different number of files.
+     */
+    List<String> compare(Report expected, Report actual) {
+        List<String> regressions = new ArrayList<>();
+        if (expected.seed != actual.seed || expected.scale != actual.scale) {
+            regressions.add("the baseline was recorded on another corpus (seed " + expected.seed + ", scale "
+                    + expected.scale + "), run with --save-baseline to replace it");
+            return regressions;
+        }
+        for (Result before : expected.results) {
+            Result after = actual.find(before.scenario, before.shape);
+            if (after == null) {
+                continue;
+            }
+            String name = before.scenario + "/" + before.shape;
+            if (after.warm.found() != before.warm.found()) {
+                regressions.add(String.format(Locale.ROOT, "%s: found %d files, the baseline found %d",
+                        name, after.warm.found(), before.warm.found()));
+            }
+            checkTime(regressions, name, "cold total", before.cold.totalMillis(), after.cold.totalMillis());
+            checkTime(regressions, name, "warm total", before.warm.totalMillis(), after.warm.totalMillis());
+            checkTime(regressions, name, "time to first result", before.cold.firstResultMillis(),
+                    after.cold.firstResultMillis());
+            long allowedHeap = (long) (before.cold.peakHeapBytes() * (1 + tolerance)) + MIN_SLACK_HEAP_BYTES;
+            if (after.cold.peakHeapBytes() > allowedHeap) {
+                regressions.add(String.format(Locale.ROOT, "%s: peak heap %d MB, baseline %d MB (allowed %d MB)",
+                        name, after.cold.peakHeapBytes() >> 20, before.cold.peakHeapBytes() >> 20, allowedHeap >> 20));
+            }
+        }
+        return regressions;
+    }
+
+    private void checkTime(List<String> regressions, String name, String metric, double before, double after) {
+        if (before < 0 || after < 0) {
+            return;
+        }
+        double allowed = before * (1 + tolerance) + MIN_SLACK_MILLIS;
+        if (after > allowed) {
+            regressions.add(String.format(Locale.ROOT, "%s: %s %.1f ms, baseline %.1f ms (%+.0f%%, allowed %.1f ms)",
+                    name, metric, after, before, (after / before - 1) * 100, allowed));
+        }
+    }
+
+    private void write(Report report, Path file) throws IOException {
+        if (file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            gson.toJson(report, writer);
+        }
+    }
+
+    private Report read(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file)) {
+            return gson.fromJson(reader, Report.class);
+        }
+    }
+
+    record Scenario(String name, SearchRequest.Mode mode, String query, boolean caseSensitive, boolean regex) {
+    }
+
+    /**
+     * One search. The first result time is -1 if nothing was found.
+     */
+    record Measurement(long found, double firstResultMillis, double totalMillis, double filesPerSecond,
+                       double megabytesPerSecond, long peakHeapBytes) {
+    }
+
+    static class Result {
+        String scenario;
+        String shape;
+        Measurement cold;
+        Measurement warm;
+    }
+
+    static class Report {
+        long seed;
+        int scale;
+        int runs;
+        String javaVersion;
+        int processors;
+        List<Result> results = new ArrayList<>();
+
+        Result find(String scenario, String shape) {
+            for (Result result : results) {
+                if (result.scenario.equals(scenario) && result.shape.equals(shape)) {
+                    return result;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package org.fastsearch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.function.Predicate;
+
+/**
+ * Finds which of many terms occur in a file in a single pass over its bytes.
+ *
+ * <p>The terms are compiled into an Aho-Corasick automaton over their UTF-8 bytes, with the
+ * failure links resolved into a complete transition table, so each byte costs one table lookup
+ * however many terms there are. Bytes that occur in no term share one column of the table to
+ * keep it small. Case-insensitive matching folds ASCII letters, like {@link LiteralScanner}.
+ */
+public class AhoCorasick {
+    private static final int MAP_CHUNK_SIZE = 1 << 30;
+
+    private final List<String> terms;
+    private final int[] byteClass = new int[256];
+    private final int classCount;
+    private final int[] transitions;
+    private final int[][] outputs;
+
+    /**
+     * @param terms the terms to look for; empty terms and duplicates are ignored
+     */
+    public AhoCorasick(Collection<String> terms, boolean isCaseSensitive) {
+        LinkedHashSet<String> unique = new LinkedHashSet<>();
+        for (String term : terms) {
+            if (LiteralScanner.supports(term)) {
+                unique.add(term);
+            }
+        }
+        if (unique.isEmpty()) {
+            throw new IllegalArgumentException("No search terms");
+        }
+        this.terms = List.copyOf(unique);
+
+        byte[][] encoded = new byte[this.terms.size()][];
+        int totalLength = 0;
+        boolean[] used = new boolean[256];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = this.terms.get(i).getBytes(StandardCharsets.UTF_8);
+            for (int j = 0; j < encoded[i].length; j++) {
+                int b = fold(encoded[i][j] & 0xFF, isCaseSensitive);
+                encoded[i][j] = (byte) b;
+                used[b] = true;
+            }
+            totalLength += encoded[i].length;
+        }
+
+        // Class 0 stands for every byte that appears in no term
+        int classes = 1;
+        int[] folded = new int[256];
+        for (int b = 0; b < 256; b++) {
+            if (used[b]) {
+                folded[b] = classes++;
+            }
+        }
+        for (int b = 0; b < 256; b++) {
+            byteClass[b] = folded[fold(b, isCaseSensitive)];
+        }
+        this.classCount = classes;
+
+        // Build the trie; state 0 is the root
+        int[] table = new int[(totalLength + 1) * classCount];
+        Arrays.fill(table, -1);
+        List<int[]> termsAt = new ArrayList<>();
+        termsAt.add(null);
+        int stateCount = 1;
+        for (int i = 0; i < encoded.length; i++) {
+            int state = 0;
+            for (byte b : encoded[i]) {
+                int slot = state * classCount + folded[b & 0xFF];
+                if (table[slot] < 0) {
+                    table[slot] = stateCount++;
+                    termsAt.add(null);
+                }
+                state = table[slot];
+            }
+            termsAt.set(state, append(termsAt.get(state), i));
+        }
+
+        // Resolve failure links breadth-first so every state has a transition for every class
+        int[] failure = new int[stateCount];
+        int[][] output = termsAt.toArray(new int[0][]);
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < classCount; c++) {
+            int child = table[c];
+            if (child < 0) {
+                table[c] = 0;
+            } else {
+                failure[child] = 0;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int c = 0; c < classCount; c++) {
+                int slot = state * classCount + c;
+                int child = table[slot];
+                int fallback = table[failure[state] * classCount + c];
+                if (child < 0) {
+                    table[slot] = fallback;
+                } else {
+                    failure[child] = fallback;
+                    output[child] = concat(output[child], output[fallback]);
+                    queue.add(child);
+                }
+            }
+        }
+        this.transitions = Arrays.copyOf(table, stateCount * classCount);
+        this.outputs = output;
+    }
+
+    public List<String> getTerms() {
+        return terms;
+    }
+
+    /**
+     * Returns the terms that occur in {@code file}, in the order they were given.
+     */
+    public List<String> matchedTerms(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return matchedTerms(channel, null);
+        }
+    }
+
+    /**
+     * Returns the terms that occur in the file open on {@code channel}.
+     *
+     * @param headCheck if not null, given the first bytes of the file before they are searched,
+     *                  like {@link LiteralScanner#matches(FileChannel, Predicate)}; returning false
+     *                  skips the file
+     */
+    public List<String> matchedTerms(FileChannel channel, Predicate<ByteBuffer> headCheck) throws IOException {
+        boolean[] found = new boolean[terms.size()];
+        int[] remaining = {terms.size()};
+        long size = channel.size();
+        if (size <= LiteralScanner.READ_THRESHOLD) {
+            ByteBuffer buffer = LiteralScanner.readSmallFile(channel);
+            if (!LiteralScanner.acceptsHead(buffer, buffer.position(), headCheck)) {
+                return Collections.emptyList();
+            }
+            scan(buffer, buffer.position(), 0, found, remaining);
+        } else {
+            // The automaton state carries over, so windows need no overlap
+            int state = 0;
+            for (long position = 0; position < size && remaining[0] > 0; position += MAP_CHUNK_SIZE) {
+                int length = (int) Math.min(MAP_CHUNK_SIZE, size - position);
+                ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                try {
+                    if (position == 0 && !LiteralScanner.acceptsHead(window, length, headCheck)) {
+                        return Collections.emptyList();
+                    }
+                    state = scan(window, length, state, found, remaining);
+                } catch (InternalError e) {
+                    // The JVM reports a fault on a mapped page, e.g. the file was truncated meanwhile
+                    throw new IOException("File changed while it was scanned", e);
+                }
+            }
+        }
+
+        if (remaining[0] == terms.size()) {
+            return Collections.emptyList();
+        }
+        List<String> matched = new ArrayList<>(terms.size() - remaining[0]);
+        for (int i = 0; i < found.length; i++) {
+            if (found[i]) {
+                matched.add(terms.get(i));
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Runs the automaton over the first {@code length} bytes of {@code buffer}, stopping early
+     * once every term has been seen.
+     *
+     * @return the state after the last byte
+     */
+    private int scan(ByteBuffer buffer, int length, int state, boolean[] found, int[] remaining) {
+        for (int i = 0; i < length; i++) {
+            state = transitions[state * classCount + byteClass[buffer.get(i) & 0xFF]];
+            int[] ids = outputs[state];
+            if (ids != null) {
+                for (int id : ids) {
+                    if (!found[id]) {
+                        found[id] = true;
+                        if (--remaining[0] == 0) {
+                            return state;
+                        }
+                    }
+                }
+            }
+        }
+        return state;
+    }
+
+    private static int fold(int b, boolean isCaseSensitive) {
+        return !isCaseSensitive && b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+    }
+
+    private static int[] append(int[] ids, int id) {
+        if (ids == null) {
+            return new int[]{id};
+        }
+        int[] result = Arrays.copyOf(ids, ids.length + 1);
+        result[ids.length] = id;
+        return result;
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        int[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+}
@@ -21,6 +21,8 @@ class ConfigDialog extends Dialog<Void> {
     private final ComboBox<String> themeCombo;
     private final Spinner<Integer> maxResultsSpinner;
     private final Spinner<Integer> statusPathDepthSpinner;
+    private final CheckBox indexEnabledCheck;
+    private final CheckBox useDaemonCheck;
     private final ListView<String> excludeList;
     private final ListView<String> foldersList;
     private final ListView<String> textExtensionsList;
@@ -67,6 +69,14 @@ class ConfigDialog extends Dialog<Void> {
         statusPathDepthSpinner.setPrefWidth(150);
         statusPathDepthBox.getChildren().addAll(statusPathDepthLabel, statusPathDepthSpinner);
 
+        // Search Index
+        indexEnabledCheck = new CheckBox("Use search index");
+        indexEnabledCheck.setSelected(config.isIndexEnabled());
+
+        // Search Daemon
+        useDaemonCheck = new CheckBox("Search through the background daemon when it is running");
+        useDaemonCheck.setSelected(config.isUseDaemon());
+
         // Exclude Patterns
         Label excludeLabel = new Label("Exclude Patterns:");
         excludeLabel.setStyle("-fx-font-weight: bold;");
@@ -116,6 +126,8 @@ class ConfigDialog extends Dialog<Void> {
                 themeBox,
                 maxResultsBox,
                 statusPathDepthBox,
+                indexEnabledCheck,
+                useDaemonCheck,
                 new Separator(),
                 excludeLabel, excludeList, excludeButtons,
                 new Separator(),
@@ -224,6 +236,8 @@ class ConfigDialog extends Dialog<Void> {
         config.setTheme(themeCombo.getValue());
         config.setMaxResults(maxResultsSpinner.getValue());
         config.setStatusPathDepth(statusPathDepthSpinner.getValue());
+        config.setIndexEnabled(indexEnabledCheck.isSelected());
+        config.setUseDaemon(useDaemonCheck.isSelected());
         config.setExcludePatterns(new java.util.ArrayList<>(excludeList.getItems()));
         config.setExtraFolders(new java.util.ArrayList<>(foldersList.getItems()));
         config.setTextExtensions(new java.util.ArrayList<>(textExtensionsList.getItems()));
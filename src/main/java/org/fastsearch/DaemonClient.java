@@ -0,0 +1,167 @@
+package org.fastsearch;
+
+import com.google.gson.Gson;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Talks to a {@link SearchDaemon}. Every request uses a connection of its own, so one client can
+ * be shared, and a search is cancelled by {@link #cancel()} or by interrupting the thread waiting
+ * for it, which closes its connection.
+ */
+public class DaemonClient {
+    private final Path socketPath;
+    private final Gson gson = new Gson();
+    private volatile SocketChannel searchChannel;
+    private volatile SearchProgress progress = new SearchProgress();
+    private volatile SearchMetrics.Summary metrics;
+
+    public DaemonClient(Path socketPath) {
+        this.socketPath = socketPath;
+    }
+
+    /**
+     * Returns whether a daemon answers on the socket.
+     */
+    public boolean isRunning() {
+        if (!Files.exists(socketPath)) {
+            return false;
+        }
+        try {
+            return SearchDaemon.Message.PONG.equals(call(new SearchDaemon.Message(SearchDaemon.Message.PING)).type);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Runs a search on the daemon, handing every file found to {@code resultCallback} on the
+     * calling thread.
+     *
+     * @return the counts of a count-only search, otherwise null
+     * @throws IOException if the daemon cannot be reached or the search failed there
+     */
+    public SearchCounts search(SearchRequest request, Consumer<SearchHit> resultCallback,
+                               Consumer<String> statusCallback) throws IOException {
+        SearchDaemon.Message message = new SearchDaemon.Message(SearchDaemon.Message.SEARCH);
+        message.request = request;
+        SearchProgress searchProgress = new SearchProgress();
+        progress = searchProgress;
+        try (SocketChannel channel = connect()) {
+            searchChannel = channel;
+            write(channel, message);
+            BufferedReader in = reader(channel);
+            String line;
+            while ((line = in.readLine()) != null) {
+                SearchDaemon.Message reply = gson.fromJson(line, SearchDaemon.Message.class);
+                switch (reply.type) {
+                    case SearchDaemon.Message.HIT -> resultCallback.accept(reply.hit);
+                    case SearchDaemon.Message.STATUS -> {
+                        if (statusCallback != null) {
+                            statusCallback.accept(reply.status);
+                        }
+                    }
+                    case SearchDaemon.Message.PROGRESS -> searchProgress.catchUp(reply.progress);
+                    case SearchDaemon.Message.ERROR -> throw new IOException("Search failed: " + reply.error);
+                    case SearchDaemon.Message.DONE -> {
+                        metrics = reply.metrics;
+                        return reply.counts != null ? SearchCounts.of(reply.counts) : null;
+                    }
+                    default -> {
+                        // Sent by a newer daemon, nothing to do with it here
+                    }
+                }
+            }
+            throw new IOException("The search daemon closed the connection");
+        } finally {
+            searchChannel = null;
+        }
+    }
+
+    /**
+     * Asks the daemon to stop the search running through this client, if any. The search returns
+     * once the daemon has stopped it.
+     */
+    public void cancel() {
+        SocketChannel channel = searchChannel;
+        if (channel != null) {
+            try {
+                write(channel, new SearchDaemon.Message(SearchDaemon.Message.CANCEL));
+            } catch (IOException e) {
+                // Already closed, which cancels the search as well
+            }
+        }
+    }
+
+    /**
+     * Returns the progress of the last search run through this client, as reported by the daemon.
+     */
+    public SearchProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * Returns the metrics of the last search that ran to its end through this client, or null if
+     * there was none.
+     */
+    public SearchMetrics.Summary getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Makes the daemon pick up settings that were changed and saved since it started.
+     */
+    public void reload() throws IOException {
+        call(new SearchDaemon.Message(SearchDaemon.Message.RELOAD));
+    }
+
+    public void shutdown() throws IOException {
+        call(new SearchDaemon.Message(SearchDaemon.Message.SHUTDOWN));
+    }
+
+    private SearchDaemon.Message call(SearchDaemon.Message message) throws IOException {
+        try (SocketChannel channel = connect()) {
+            write(channel, message);
+            String line = reader(channel).readLine();
+            if (line == null) {
+                throw new IOException("The search daemon closed the connection");
+            }
+            return gson.fromJson(line, SearchDaemon.Message.class);
+        }
+    }
+
+    private SocketChannel connect() throws IOException {
+        SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.connect(UnixDomainSocketAddress.of(socketPath));
+            return channel;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void write(SocketChannel channel, SearchDaemon.Message message) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((gson.toJson(message) + "\n").getBytes(StandardCharsets.UTF_8));
+        synchronized (channel) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private static BufferedReader reader(SocketChannel channel) {
+        return new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,255 @@
+package org.fastsearch;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Spreads a search's reads over the devices its roots live on. Roots are grouped by
+ * {@link FileStore}, and every store gets a {@link Device} that limits how many reads run on it
+ * at once, so a spinning disk or a network share is not flooded while a fast SSD next to it is
+ * kept busy.
+ *
+ * <p>Each limit adapts to the latency the device shows: it grows by one while it is fully used
+ * and reads stay about as fast as the fastest seen, and shrinks by a fifth once they are slow
+ * enough that several must be queueing on the device. Devices live as long as the scheduler, so
+ * what was learned carries over to the next search.
+ */
+class DeviceScheduler {
+    private static final Logger logger = Logger.getLogger(DeviceScheduler.class.getName());
+    private static final Set<String> NETWORK_TYPES = Set.of(
+            "nfs", "nfs4", "cifs", "smb", "smbfs", "smb2", "smb3", "afpfs", "webdav", "davfs", "fuse.sshfs", "sshfs",
+            "9p", "ncpfs", "afs", "ceph", "glusterfs", "fuse.glusterfs");
+
+    /**
+     * What a store is, which decides where its limit starts and how far it may grow.
+     */
+    enum Kind {
+        LOCAL, ROTATIONAL, NETWORK
+    }
+
+    private final int localLimit;
+    private final Map<FileStore, Device> devices = new ConcurrentHashMap<>();
+    // Looking up a store is slow, the roots seen so far remember theirs
+    private final Map<Path, Device> roots = new ConcurrentHashMap<>();
+    // For roots whose store cannot be determined
+    private final Device fallback;
+
+    /**
+     * @param localLimit the most reads a local solid-state store may run at once
+     */
+    DeviceScheduler(int localLimit) {
+        this.localLimit = localLimit;
+        this.fallback = new Device("unknown", Kind.LOCAL, Math.max(1, localLimit / 2), localLimit);
+    }
+
+    /**
+     * Returns the device {@code root} lives on. Folders mounted below a root count as part of it.
+     */
+    Device deviceOf(Path root) {
+        return roots.computeIfAbsent(root.toAbsolutePath().normalize(), path -> {
+            try {
+                return devices.computeIfAbsent(Files.getFileStore(path), this::newDevice);
+            } catch (IOException e) {
+                return fallback;
+            }
+        });
+    }
+
+    /**
+     * Makes {@code root} known before anything is read from it, so the files found below it
+     * through an index count as read from its device.
+     */
+    void register(Path root) {
+        deviceOf(root);
+    }
+
+    /**
+     * Returns the device of the deepest root seen so far that contains {@code file}, or the one
+     * {@code file} lives on if no root does.
+     */
+    Device deviceContaining(Path file) {
+        Path absolute = file.toAbsolutePath();
+        Path deepest = null;
+        for (Path root : roots.keySet()) {
+            if (absolute.startsWith(root) && (deepest == null || root.getNameCount() > deepest.getNameCount())) {
+                deepest = root;
+            }
+        }
+        return deepest != null ? roots.get(deepest) : deviceOf(file);
+    }
+
+    private Device newDevice(FileStore store) {
+        Kind kind = kindOf(store.type(), store.name(), Paths.get("/sys/class/block"));
+        Device device = switch (kind) {
+            case LOCAL -> new Device(store.name(), kind, Math.max(1, localLimit / 2), localLimit);
+            case ROTATIONAL -> new Device(store.name(), kind, 2, 4);
+            case NETWORK -> new Device(store.name(), kind, 4, 16);
+        };
+        logger.log(Level.FINE, "Searching {0} ({1}, {2}) with up to {3} reads at once",
+                new Object[]{store.name(), store.type(), kind, device.getLimit()});
+        return device;
+    }
+
+    /**
+     * Classifies a store by its file system type and, on Linux, by whether the block device
+     * behind it spins.
+     *
+     * @param sysBlock where Linux lists its block devices
+     */
+    static Kind kindOf(String type, String name, Path sysBlock) {
+        if (type != null && NETWORK_TYPES.contains(type.toLowerCase())) {
+            return Kind.NETWORK;
+        }
+        if (name != null && name.startsWith("/dev/")) {
+            Path device = sysBlock.resolve(name.substring("/dev/".length()));
+            // A partition has no queue of its own, its disk has
+            for (Path queue : new Path[]{device.resolve("queue"), device.resolve("../queue")}) {
+                try {
+                    return Files.readString(queue.resolve("rotational")).trim().equals("1") ? Kind.ROTATIONAL : Kind.LOCAL;
+                } catch (IOException e) {
+                    // Not a block device, or not Linux
+                }
+            }
+        }
+        return Kind.LOCAL;
+    }
+
+    /**
+     * Returns the current limit of every device seen so far.
+     */
+    Map<String, Integer> getLimits() {
+        Map<String, Integer> limits = new LinkedHashMap<>();
+        for (Device device : devices.values()) {
+            limits.put(device.getName() + " (" + device.getKind().name().toLowerCase() + ")", device.getLimit());
+        }
+        return limits;
+    }
+
+    /**
+     * One store and the number of reads allowed to run on it at once.
+     */
+    static class Device {
+        // A read costs one operation plus one per megabyte, so large files do not look like a slow device
+        private static final long BYTES_PER_OPERATION = 1024 * 1024;
+        // Reads faster than this come from the page cache, the device is not what they wait for
+        private static final long MIN_LATENCY_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+        // Reads estimated to be queueing on the device before the limit shrinks
+        private static final double MAX_QUEUED = 3;
+        private static final double DECREASE_FACTOR = 0.8;
+
+        private final String name;
+        private final Kind kind;
+        private final int maxLimit;
+        private int limit;
+        private int inFlight;
+        // Lowest average latency of a window so far, what a read costs without waiting
+        private double baseLatency;
+        private double windowLatency;
+        private int windowSamples;
+        private boolean saturated;
+
+        Device(String name, Kind kind, int limit, int maxLimit) {
+            this.name = name;
+            this.kind = kind;
+            this.limit = limit;
+            this.maxLimit = maxLimit;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        Kind getKind() {
+            return kind;
+        }
+
+        synchronized int getLimit() {
+            return limit;
+        }
+
+        /**
+         * Returns how many reads may ever run at once, the number of threads worth giving it.
+         */
+        int getMaxLimit() {
+            return maxLimit;
+        }
+
+        synchronized int getInFlight() {
+            return inFlight;
+        }
+
+        /**
+         * Waits until another read may start on the device.
+         *
+         * @return false if that did not happen within {@code timeoutMillis}
+         */
+        synchronized boolean tryAcquire(long timeoutMillis) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (inFlight >= limit) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, left);
+            }
+            inFlight++;
+            if (inFlight >= limit) {
+                saturated = true;
+            }
+            return true;
+        }
+
+        /**
+         * Ends a read of {@code bytes} that spent {@code nanos} waiting on the device, and adapts
+         * the limit once enough reads have been seen since it last changed. Time spent matching
+         * is not the device's and must not be included.
+         */
+        synchronized void release(long nanos, long bytes) {
+            inFlight--;
+            windowLatency += (double) nanos / (1 + bytes / BYTES_PER_OPERATION);
+            if (++windowSamples >= 2 * limit) {
+                adapt(windowLatency / windowSamples);
+            }
+            notifyAll();
+        }
+
+        /**
+         * Ends a read whose time on the device is not known, which leaves the limit as it is.
+         */
+        synchronized void release() {
+            inFlight--;
+            notifyAll();
+        }
+
+        /**
+         * Estimates how many reads were waiting on the device, as TCP Vegas does for a network
+         * path: by Little's law, reads taking longer than {@code baseLatency} on average mean
+         * {@code limit * (1 - baseLatency / latency)} of them were queued.
+         */
+        private void adapt(double latency) {
+            if (baseLatency == 0 || latency < baseLatency) {
+                baseLatency = latency;
+            }
+            double base = Math.max(baseLatency, MIN_LATENCY_NANOS);
+            double queued = latency > base ? limit * (1 - base / latency) : 0;
+            if (queued > MAX_QUEUED) {
+                limit = Math.max(1, (int) (limit * DECREASE_FACTOR));
+            } else if (saturated && limit < maxLimit) {
+                limit++;
+            }
+            windowLatency = 0;
+            windowSamples = 0;
+            saturated = false;
+        }
+    }
+}
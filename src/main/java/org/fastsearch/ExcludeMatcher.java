@@ -0,0 +1,157 @@
+package org.fastsearch;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Decides whether a path is excluded by the configured patterns, each of which is matched like
+ * {@code glob:**}{@code /pattern}.
+ *
+ * <p>The patterns are compiled once. Plain names such as {@code node_modules} are looked up in a
+ * hash set and suffix patterns such as {@code *.tmp} in a trie of reversed suffixes, both keyed
+ * on the last path component only. Only the remaining globs go through a {@link PathMatcher}.
+ * Names compare ignoring case on Windows, like the platform's own glob matching.
+ */
+public class ExcludeMatcher implements Predicate<Path> {
+    private static final Logger logger = Logger.getLogger(ExcludeMatcher.class.getName());
+    private static final String GLOB_SYNTAX = "*?[]{}\\";
+
+    private final boolean ignoreCase;
+    private final Set<String> names = new HashSet<>();
+    private final SuffixNode suffixes = new SuffixNode();
+    private boolean hasSuffixes;
+    private final List<PathMatcher> nameMatchers = new ArrayList<>();
+    private final List<PathMatcher> pathMatchers = new ArrayList<>();
+
+    public ExcludeMatcher(Collection<String> patterns) {
+        this(patterns, File.separatorChar == '\\');
+    }
+
+    ExcludeMatcher(Collection<String> patterns, boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+        for (String pattern : patterns) {
+            try {
+                add(pattern);
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Invalid exclude pattern: " + pattern, e);
+            }
+        }
+    }
+
+    private void add(String pattern) {
+        if (pattern.indexOf('/') >= 0 || pattern.contains("**")) {
+            // May span several path components, so it needs the whole path
+            pathMatchers.add(FileSystems.getDefault().getPathMatcher("glob:**/" + pattern));
+        } else if (isLiteral(pattern, 0)) {
+            names.add(normalize(pattern));
+        } else if (pattern.length() > 1 && pattern.charAt(0) == '*' && isLiteral(pattern, 1)) {
+            suffixes.add(normalize(pattern.substring(1)));
+            hasSuffixes = true;
+        } else {
+            // Confined to the last component, where the glob alone gives the same answer
+            nameMatchers.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern));
+        }
+    }
+
+    private static boolean isLiteral(String pattern, int from) {
+        for (int i = from; i < pattern.length(); i++) {
+            if (GLOB_SYNTAX.indexOf(pattern.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return from < pattern.length();
+    }
+
+    private String normalize(String name) {
+        return ignoreCase ? name.toLowerCase() : name;
+    }
+
+    @Override
+    public boolean test(Path path) {
+        Path fileName = path.getFileName();
+        if (fileName != null) {
+            String name = fileName.toString();
+            if (!names.isEmpty() && names.contains(normalize(name))) {
+                return true;
+            }
+            if (hasSuffixes && suffixes.matches(name, ignoreCase)) {
+                return true;
+            }
+            for (PathMatcher matcher : nameMatchers) {
+                if (matcher.matches(fileName)) {
+                    return true;
+                }
+            }
+        }
+        for (PathMatcher matcher : pathMatchers) {
+            if (matcher.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A trie over suffixes read from their last character backwards.
+     */
+    private static class SuffixNode {
+        private char[] keys = new char[0];
+        private SuffixNode[] children = new SuffixNode[0];
+        private boolean terminal;
+
+        void add(String suffix) {
+            SuffixNode node = this;
+            for (int i = suffix.length() - 1; i >= 0; i--) {
+                node = node.childOrCreate(suffix.charAt(i));
+            }
+            node.terminal = true;
+        }
+
+        boolean matches(String name, boolean ignoreCase) {
+            SuffixNode node = this;
+            for (int i = name.length() - 1; i >= 0; i--) {
+                char c = name.charAt(i);
+                node = node.child(ignoreCase ? Character.toLowerCase(c) : c);
+                if (node == null) {
+                    return false;
+                }
+                if (node.terminal) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private SuffixNode child(char c) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private SuffixNode childOrCreate(char c) {
+            SuffixNode child = child(c);
+            if (child == null) {
+                child = new SuffixNode();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                keys[keys.length - 1] = c;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+}
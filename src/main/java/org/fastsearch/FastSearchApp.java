@@ -77,6 +77,7 @@ public class FastSearchApp extends Application {
     public void stop() {
         if (controller != null) {
             controller.saveConfig();
+            controller.shutdown();
         }
     }
 }
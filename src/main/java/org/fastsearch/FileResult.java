@@ -6,6 +6,8 @@ import java.io.File;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -17,6 +19,8 @@ public class FileResult {
     private final LongProperty size;
     private final StringProperty type;
     private final ObjectProperty<LocalDateTime> modified;
+    private List<String> matchedTerms = Collections.emptyList();
+    private List<MatchPosition> matchPositions = Collections.emptyList();
 
     public FileResult(String path) {
         File file = new File(path);
@@ -38,6 +42,29 @@ public class FileResult {
         }
     }
 
+    /**
+     * Creates a result from attributes that were already read, without touching the file system.
+     */
+    public FileResult(String path, long size, long lastModifiedMillis) {
+        this.name = new SimpleStringProperty(new File(path).getName());
+        this.path = new SimpleStringProperty(path);
+        this.type = new SimpleStringProperty(getFileType(path));
+        this.size = new SimpleLongProperty(size);
+        this.modified = new SimpleObjectProperty<>(LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(lastModifiedMillis),
+                ZoneId.systemDefault()
+        ));
+    }
+
+    /**
+     * Creates the row shown for a file the search engine found.
+     */
+    public FileResult(SearchHit hit) {
+        this(hit.path(), hit.size(), hit.lastModifiedMillis());
+        this.matchedTerms = hit.matchedTerms();
+        this.matchPositions = hit.matchPositions();
+    }
+
     private String getFileType(String path) {
         String ext = "";
         int i = path.lastIndexOf('.');
@@ -135,4 +162,27 @@ public class FileResult {
     public void setModified(LocalDateTime modified) {
         this.modified.set(modified);
     }
-}
\ No newline at end of file
+
+    /**
+     * The terms of a multi-term search found in this file; empty for other searches.
+     */
+    public List<String> getMatchedTerms() {
+        return matchedTerms;
+    }
+
+    public void setMatchedTerms(List<String> matchedTerms) {
+        this.matchedTerms = matchedTerms;
+    }
+
+    /**
+     * Where a content search found matches in this file, one per line and at most a few; empty
+     * for other searches and for results answered from the match cache.
+     */
+    public List<MatchPosition> getMatchPositions() {
+        return matchPositions;
+    }
+
+    public void setMatchPositions(List<MatchPosition> matchPositions) {
+        this.matchPositions = matchPositions;
+    }
+}
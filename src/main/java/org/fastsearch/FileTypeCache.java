@@ -0,0 +1,223 @@
+package org.fastsearch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Remembers which files were found to be text or binary, so a file is only sniffed again once
+ * its size or modification time changes.
+ *
+ * <p>Entries live in two parallel {@code long} arrays forming an open-addressing hash table: a
+ * 64-bit hash of the path, and a hash of size and modification time whose lowest bit holds the
+ * answer. That is 16 bytes per slot whatever the path length. The table grows up to a fixed
+ * number of slots; after that a new entry replaces an old one on its probe sequence, so memory
+ * stays bounded and stale entries are eventually recycled.
+ */
+public class FileTypeCache {
+    public static final int UNKNOWN = -1;
+    private static final int MAGIC = 0x46535446; // "FSTF"
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    static final int MAX_CAPACITY = 1 << 21;
+    private static final int MAX_PROBES = 16;
+
+    private final int maxCapacity;
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private long[] stamps = new long[INITIAL_CAPACITY];
+    private int size;
+    private boolean dirty;
+    private long hits;
+    private long misses;
+
+    public FileTypeCache() {
+        this(MAX_CAPACITY);
+    }
+
+    FileTypeCache(int maxCapacity) {
+        this.maxCapacity = Math.max(Integer.highestOneBit(maxCapacity), INITIAL_CAPACITY);
+    }
+
+    /**
+     * @return 1 for text, 0 for binary, or {@link #UNKNOWN} if the file was not classified at this
+     * size and modification time
+     */
+    public synchronized int lookup(String path, long fileSize, long lastModifiedMillis) {
+        int type = find(path, fileSize, lastModifiedMillis);
+        if (type == UNKNOWN) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return type;
+    }
+
+    private int find(String path, long fileSize, long lastModifiedMillis) {
+        long key = keyOf(path);
+        int mask = keys.length - 1;
+        int slot = home(key, mask);
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            long existing = keys[slot];
+            if (existing == 0) {
+                return UNKNOWN;
+            }
+            if (existing == key) {
+                long stamp = stamps[slot];
+                return (stamp & ~1L) == stampOf(fileSize, lastModifiedMillis) ? (int) (stamp & 1) : UNKNOWN;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Returns the number of lookups that found an up-to-date entry.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized void put(String path, long fileSize, long lastModifiedMillis, boolean isText) {
+        if (size * 2 >= keys.length && keys.length < maxCapacity) {
+            resize(keys.length * 2);
+        }
+        insert(keyOf(path), stampOf(fileSize, lastModifiedMillis) | (isText ? 1 : 0));
+        dirty = true;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void insert(long key, long stamp) {
+        int mask = keys.length - 1;
+        int home = home(key, mask);
+        int slot = home;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            long existing = keys[slot];
+            if (existing == 0 || existing == key) {
+                if (existing == 0) {
+                    size++;
+                }
+                keys[slot] = key;
+                stamps[slot] = stamp;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (keys.length < maxCapacity) {
+            resize(keys.length * 2);
+            insert(key, stamp);
+        } else {
+            // The neighbourhood is full and the table cannot grow, the entry at home makes room
+            keys[home] = key;
+            stamps[home] = stamp;
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldStamps = stamps;
+        keys = new long[capacity];
+        stamps = new long[capacity];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                insert(oldKeys[i], oldStamps[i]);
+            }
+        }
+    }
+
+    /**
+     * Writes the cache to {@code file} if anything changed since it was loaded or last saved.
+     */
+    public synchronized void save(Path file) throws IOException {
+        if (!dirty) {
+            return;
+        }
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(size);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    out.writeLong(keys[i]);
+                    out.writeLong(stamps[i]);
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        dirty = false;
+    }
+
+    public static FileTypeCache load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a file type cache: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported file type cache version " + version + ": " + file);
+            }
+            int count = in.readInt();
+            FileTypeCache cache = new FileTypeCache();
+            int capacity = INITIAL_CAPACITY;
+            while (capacity < cache.maxCapacity && count * 2 >= capacity) {
+                capacity *= 2;
+            }
+            cache.resize(capacity);
+            for (int i = 0; i < count; i++) {
+                cache.insert(in.readLong(), in.readLong());
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * A 64-bit FNV-1a hash of the path; 0 marks an empty slot and is never returned.
+     */
+    static long keyOf(String path) {
+        return keyOf(0xcbf29ce484222325L, path);
+    }
+
+    /**
+     * Continues an FNV-1a hash from {@code seed}, so one key can cover several strings.
+     */
+    static long keyOf(long seed, String path) {
+        long hash = seed;
+        for (int i = 0; i < path.length(); i++) {
+            hash ^= path.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 29;
+        return hash != 0 ? hash : 1;
+    }
+
+    static int home(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & mask;
+    }
+
+    /**
+     * Mixes size and modification time into a stamp whose lowest bit is left free.
+     */
+    static long stampOf(long fileSize, long lastModifiedMillis) {
+        long hash = fileSize * 0x9E3779B97F4A7C15L + lastModifiedMillis;
+        hash ^= hash >>> 32;
+        hash *= 0xD6E8FEB86659FD93L;
+        hash ^= hash >>> 32;
+        return hash & ~1L;
+    }
+}
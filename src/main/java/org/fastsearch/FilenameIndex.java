@@ -0,0 +1,499 @@
+package org.fastsearch;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Persistent, front-coded list of every file path below a set of search roots.
+ *
+ * <p>Paths are sorted by their UTF-8 bytes and grouped into blocks of {@value #BLOCK_SIZE}. The
+ * first path of a block is stored in full, every following path as the length of the prefix it
+ * shares with its predecessor plus the remaining suffix. Deep trees share long directory
+ * prefixes, so this typically stores a path in a fraction of its length, and every block can
+ * be decoded independently, which lets a scan be split across threads.
+ *
+ * <p>Instances are immutable. Incremental changes produce a new instance that shares the encoded
+ * data and carries the changes as a small overlay of added and removed paths; the overlay is
+ * merged into freshly encoded data once it grows past {@value #MAX_OVERLAY_SIZE} entries.
+ */
+public class FilenameIndex {
+    private static final int MAGIC = 0x4653464E; // "FSFN"
+    private static final int VERSION = 1;
+    static final int BLOCK_SIZE = 16;
+    static final int MAX_OVERLAY_SIZE = 4096;
+    private static final int REMOVED_FILTER_BITS = 1 << 20;
+
+    private final List<String> roots;
+    private final String signature;
+    private final int count;
+    private final byte[] data;
+    private final int[] blockOffsets;
+    private final List<byte[]> added;
+    private final Set<String> removed;
+    private final BitSet removedFilter;
+
+    private FilenameIndex(List<String> roots, String signature, int count, byte[] data, int[] blockOffsets) {
+        this(roots, signature, count, data, blockOffsets, Collections.emptyList(), Collections.emptySet());
+    }
+
+    private FilenameIndex(List<String> roots, String signature, int count, byte[] data, int[] blockOffsets,
+                          List<byte[]> added, Set<String> removed) {
+        this.roots = roots;
+        this.signature = signature;
+        this.count = count;
+        this.data = data;
+        this.blockOffsets = blockOffsets;
+        this.added = added;
+        this.removed = removed;
+        this.removedFilter = new BitSet(removed.isEmpty() ? 0 : REMOVED_FILTER_BITS);
+        for (String path : removed) {
+            byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+            removedFilter.set(filterBit(bytes, bytes.length));
+        }
+    }
+
+    /**
+     * Builds an index of {@code paths}, which may be in any order and contain duplicates.
+     *
+     * @param roots     absolute paths of the directories the paths were collected from
+     * @param signature describes the settings the index was built with
+     */
+    public static FilenameIndex build(Collection<String> roots, String signature, Collection<String> paths) {
+        Encoder encoder = new Encoder(paths.size());
+        for (byte[] path : sortedBytes(paths)) {
+            encoder.add(path, path.length);
+        }
+        return encoder.finish(List.copyOf(roots), signature);
+    }
+
+    /**
+     * Returns an index with {@code addedPaths} added and {@code removedPaths} removed.
+     */
+    public FilenameIndex withChanges(Collection<String> addedPaths, Collection<String> removedPaths) {
+        Set<String> newRemoved = new HashSet<>(removed);
+        Set<String> newAdded = new HashSet<>();
+        for (byte[] path : added) {
+            newAdded.add(new String(path, StandardCharsets.UTF_8));
+        }
+        for (String path : removedPaths) {
+            if (!newAdded.remove(path) && containsInBase(path.getBytes(StandardCharsets.UTF_8))) {
+                newRemoved.add(path);
+            }
+        }
+        for (String path : addedPaths) {
+            if (!newRemoved.remove(path) && !containsInBase(path.getBytes(StandardCharsets.UTF_8))) {
+                newAdded.add(path);
+            }
+        }
+        FilenameIndex result = new FilenameIndex(roots, signature, count, data, blockOffsets,
+                List.copyOf(sortedBytes(newAdded)), Set.copyOf(newRemoved));
+        return newAdded.size() + newRemoved.size() > MAX_OVERLAY_SIZE ? result.compacted() : result;
+    }
+
+    /**
+     * Returns every indexed path below {@code directory}.
+     */
+    public List<String> pathsUnder(String directory) {
+        byte[] prefix = prefixOf(directory);
+        List<String> paths = new ArrayList<>();
+        PathVisitor collect = (path, length, nameStart) -> paths.add(new String(path, 0, length, StandardCharsets.UTF_8));
+        int[] range = blockRange(prefix);
+        scan(range[0], range[1], prefix, collect);
+        scanAdded(prefix, collect);
+        return paths;
+    }
+
+    /**
+     * Returns an equivalent index with the overlay merged into the encoded data.
+     */
+    public FilenameIndex compacted() {
+        if (added.isEmpty() && removed.isEmpty()) {
+            return this;
+        }
+        return merge();
+    }
+
+    /**
+     * Returns whether {@code path} is in the index.
+     */
+    public boolean contains(String path) {
+        if (removed.contains(path)) {
+            return false;
+        }
+        byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+        return Collections.binarySearch(added, bytes, Arrays::compareUnsigned) >= 0 || containsInBase(bytes);
+    }
+
+    public List<String> getRoots() {
+        return roots;
+    }
+
+    public String getSignature() {
+        return signature;
+    }
+
+    /**
+     * Number of indexed paths.
+     */
+    public int size() {
+        return count - removed.size() + added.size();
+    }
+
+    /**
+     * Size of the encoded path data in bytes.
+     */
+    public int encodedSize() {
+        return data.length;
+    }
+
+    public int blockCount() {
+        return blockOffsets.length;
+    }
+
+    /**
+     * Returns whether {@code root} is one of the indexed roots or lies below one of them.
+     */
+    public boolean covers(String root) {
+        for (String indexed : roots) {
+            if (root.startsWith(indexed) && (root.length() == indexed.length()
+                    || root.charAt(indexed.length()) == File.separatorChar || indexed.endsWith(File.separator))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The UTF-8 prefix shared by every path below {@code root}.
+     */
+    public static byte[] prefixOf(String root) {
+        String prefix = root.endsWith(File.separator) ? root : root + File.separator;
+        return prefix.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the half-open block range {@code [from, to)} that holds every path starting with
+     * {@code prefix}.
+     */
+    public int[] blockRange(byte[] prefix) {
+        // First block whose leading path is >= prefix; matches may start in the block before it
+        int low = 0;
+        int high = blockOffsets.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareFirstPath(mid, prefix, false) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int from = Math.max(0, low - 1);
+
+        // First block whose leading path sorts after every path starting with prefix
+        high = blockOffsets.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareFirstPath(mid, prefix, true) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return new int[]{from, low};
+    }
+
+    /**
+     * Decodes the blocks {@code [fromBlock, toBlock)} and passes every path starting with
+     * {@code prefix} to {@code visitor}, stopping early when the visitor returns false or the
+     * paths have moved past the prefix.
+     */
+    public void scan(int fromBlock, int toBlock, byte[] prefix, PathVisitor visitor) {
+        byte[] path = new byte[256];
+        for (int block = fromBlock; block < toBlock; block++) {
+            int pos = blockOffsets[block];
+            int end = block + 1 < blockOffsets.length ? blockOffsets[block + 1] : data.length;
+            int length = 0;
+            boolean first = true;
+            while (pos < end) {
+                int shared = 0;
+                if (!first) {
+                    long value = readVarint(pos);
+                    shared = (int) value;
+                    pos = (int) (value >>> 32);
+                }
+                long value = readVarint(pos);
+                int suffix = (int) value;
+                pos = (int) (value >>> 32);
+                length = shared + suffix;
+                if (length > path.length) {
+                    path = Arrays.copyOf(path, Math.max(length, path.length * 2));
+                }
+                System.arraycopy(data, pos, path, shared, suffix);
+                pos += suffix;
+                first = false;
+
+                int order = Arrays.compareUnsigned(path, 0, Math.min(length, prefix.length), prefix, 0, prefix.length);
+                if (order > 0) {
+                    return;
+                }
+                if (order == 0 && !isRemoved(path, length)) {
+                    if (!visitor.visit(path, length, nameStart(path, length))) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes the paths added since the data was last encoded that start with {@code prefix} to
+     * {@code visitor}. Together with {@link #scan} over the prefix's block range this covers
+     * every indexed path below the prefix.
+     */
+    public void scanAdded(byte[] prefix, PathVisitor visitor) {
+        for (byte[] path : added) {
+            if (startsWith(path, path.length, prefix) && !visitor.visit(path, path.length, nameStart(path, path.length))) {
+                return;
+            }
+        }
+    }
+
+    public void save(Path file) throws IOException {
+        if (!added.isEmpty() || !removed.isEmpty()) {
+            compacted().save(file);
+            return;
+        }
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(signature);
+            out.writeInt(roots.size());
+            for (String root : roots) {
+                out.writeUTF(root);
+            }
+            out.writeInt(count);
+            out.writeInt(blockOffsets.length);
+            for (int offset : blockOffsets) {
+                out.writeInt(offset);
+            }
+            out.writeInt(data.length);
+            out.write(data);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static FilenameIndex load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a filename index: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported filename index version " + version + ": " + file);
+            }
+            String signature = in.readUTF();
+            int rootCount = in.readInt();
+            List<String> roots = new ArrayList<>(rootCount);
+            for (int i = 0; i < rootCount; i++) {
+                roots.add(in.readUTF());
+            }
+            int count = in.readInt();
+            int[] blockOffsets = new int[in.readInt()];
+            for (int i = 0; i < blockOffsets.length; i++) {
+                blockOffsets[i] = in.readInt();
+            }
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            return new FilenameIndex(List.copyOf(roots), signature, count, data, blockOffsets);
+        }
+    }
+
+    private FilenameIndex merge() {
+        Encoder encoder = new Encoder(size());
+        int[] next = {0};
+        scan(0, blockOffsets.length, new byte[0], (path, length, nameStart) -> {
+            while (next[0] < added.size()
+                    && Arrays.compareUnsigned(added.get(next[0]), 0, added.get(next[0]).length, path, 0, length) < 0) {
+                byte[] insert = added.get(next[0]++);
+                encoder.add(insert, insert.length);
+            }
+            encoder.add(path, length);
+            return true;
+        });
+        while (next[0] < added.size()) {
+            byte[] insert = added.get(next[0]++);
+            encoder.add(insert, insert.length);
+        }
+        return encoder.finish(roots, signature);
+    }
+
+    private boolean containsInBase(byte[] path) {
+        boolean[] found = {false};
+        int[] range = blockRange(path);
+        scan(range[0], range[1], path, (entry, length, nameStart) -> {
+            found[0] = length == path.length;
+            return !found[0];
+        });
+        return found[0];
+    }
+
+    private boolean isRemoved(byte[] path, int length) {
+        return !removed.isEmpty() && removedFilter.get(filterBit(path, length))
+                && removed.contains(new String(path, 0, length, StandardCharsets.UTF_8));
+    }
+
+    private static int filterBit(byte[] path, int length) {
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + path[i];
+        }
+        return (hash ^ (hash >>> 20)) & (REMOVED_FILTER_BITS - 1);
+    }
+
+    private static int nameStart(byte[] path, int length) {
+        int nameStart = length;
+        while (nameStart > 0 && path[nameStart - 1] != File.separatorChar) {
+            nameStart--;
+        }
+        return nameStart;
+    }
+
+    private static boolean startsWith(byte[] path, int length, byte[] prefix) {
+        return length >= prefix.length && Arrays.equals(path, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    private static List<byte[]> sortedBytes(Collection<String> paths) {
+        List<byte[]> sorted = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            sorted.add(path.getBytes(StandardCharsets.UTF_8));
+        }
+        sorted.sort(Arrays::compareUnsigned);
+        return sorted;
+    }
+
+    /**
+     * Compares the leading path of {@code block} with {@code prefix}. With {@code prefixOnly} the
+     * comparison stops after the prefix length, so every path starting with the prefix compares
+     * equal to it.
+     */
+    private int compareFirstPath(int block, byte[] prefix, boolean prefixOnly) {
+        long value = readVarint(blockOffsets[block]);
+        int length = (int) value;
+        int pos = (int) (value >>> 32);
+        if (prefixOnly && length > prefix.length) {
+            length = prefix.length;
+        }
+        return Arrays.compareUnsigned(data, pos, pos + length, prefix, 0, prefix.length);
+    }
+
+    /**
+     * Reads a varint at {@code pos}; returns the value in the low and the next position in the
+     * high 32 bits.
+     */
+    private long readVarint(int pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[pos++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return ((long) pos << 32) | (value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Receives decoded paths during a {@link #scan}. The buffer is reused between calls.
+     */
+    @FunctionalInterface
+    public interface PathVisitor {
+        /**
+         * @param path      UTF-8 bytes of the path in {@code [0, length)}
+         * @param nameStart offset of the file name within the path
+         * @return false to stop the scan
+         */
+        boolean visit(byte[] path, int length, int nameStart);
+    }
+
+    /**
+     * Front-codes paths that arrive in ascending byte order, dropping duplicates.
+     */
+    private static final class Encoder {
+        private byte[] data;
+        private int length;
+        private int[] blockOffsets = new int[16];
+        private byte[] previous = new byte[256];
+        private int previousLength = -1;
+        private int count;
+
+        Encoder(int expectedPaths) {
+            data = new byte[Math.max(64, expectedPaths * 24)];
+        }
+
+        void add(byte[] path, int pathLength) {
+            if (pathLength == previousLength && Arrays.equals(previous, 0, previousLength, path, 0, pathLength)) {
+                return;
+            }
+            if (count % BLOCK_SIZE == 0) {
+                int block = count / BLOCK_SIZE;
+                if (block == blockOffsets.length) {
+                    blockOffsets = Arrays.copyOf(blockOffsets, block * 2);
+                }
+                blockOffsets[block] = length;
+                writeVarint(pathLength);
+                write(path, 0, pathLength);
+            } else {
+                int shared = Arrays.mismatch(previous, 0, previousLength, path, 0, pathLength);
+                if (shared < 0) {
+                    shared = pathLength;
+                }
+                writeVarint(shared);
+                writeVarint(pathLength - shared);
+                write(path, shared, pathLength - shared);
+            }
+            if (pathLength > previous.length) {
+                previous = new byte[Math.max(pathLength, previous.length * 2)];
+            }
+            System.arraycopy(path, 0, previous, 0, pathLength);
+            previousLength = pathLength;
+            count++;
+        }
+
+        FilenameIndex finish(List<String> roots, String signature) {
+            int blocks = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            return new FilenameIndex(roots, signature, count, Arrays.copyOf(data, length), Arrays.copyOf(blockOffsets, blocks));
+        }
+
+        private void write(byte[] bytes, int offset, int count) {
+            ensure(count);
+            System.arraycopy(bytes, offset, data, length, count);
+            length += count;
+        }
+
+        private void writeVarint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + extra));
+            }
+        }
+    }
+}
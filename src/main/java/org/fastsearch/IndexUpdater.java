@@ -0,0 +1,690 @@
+package org.fastsearch;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the filename and content indexes in step with the file system.
+ *
+ * <p>Every directory below the index roots is registered with a {@link WatchService}. A watcher
+ * thread collects the changed paths and a scheduler applies them in batches every
+ * {@value #BATCH_INTERVAL_MS} ms, so a burst of writes to one file re-indexes it once. A directory
+ * whose events were lost to an overflowing queue is listed again; subtrees that cannot be
+ * watched, typically because the platform's watch limit ran out, are polled every
+ * {@value #POLL_INTERVAL_MS} ms: their directories whose modification time changed are listed,
+ * and the files of the others are only checked for a new size or modification time. Either way
+ * only files whose size or modification time changed are re-read, and the filename index takes
+ * the difference as overlay changes rather than being encoded again.
+ *
+ * <p>The saved filename index carries, as its modification time, the time before which every
+ * change reached the indexes. Reconciling indexes loaded from disk lists only the directories
+ * modified since then; the files of the others are only checked for a new size or modification
+ * time.
+ */
+public class IndexUpdater implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(IndexUpdater.class.getName());
+    private static final long BATCH_INTERVAL_MS = 1000;
+    private static final long POLL_INTERVAL_MS = 5000;
+    private static final long SAVE_INTERVAL_MS = 60_000;
+    // Covers coarse directory times and events that are still on their way when a batch is taken
+    private static final long CLOCK_SLACK_MS = 2000;
+
+    private final List<String> roots;
+    private final TrigramIndex contentIndex;
+    private volatile FilenameIndex filenameIndex;
+    private final Predicate<Path> excluded;
+    private final Predicate<Path> textFile;
+    private final Path contentFile;
+    private final Path filenameFile;
+    private final int maxWatches;
+
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<>();
+    private final Set<Path> registeredDirs = ConcurrentHashMap.newKeySet();
+    private final Set<Path> unwatchedDirs = ConcurrentHashMap.newKeySet();
+    private final Set<Path> pendingPaths = new LinkedHashSet<>();
+    private final Set<Path> pendingRefreshes = new LinkedHashSet<>();
+    // What the last poll saw of each polled directory; only used by the scheduler thread
+    private final Map<Path, PolledDir> polledDirs = new HashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final Thread watcherThread;
+    private volatile boolean closed;
+    private boolean dirty;
+    private long lastSave = System.currentTimeMillis();
+    // Changes made before this time are in the indexes; after start, only the scheduler uses these
+    private long upToDate;
+    // Whether the indexes follow every change since upToDate, so that it can move on
+    private boolean following;
+    private long polledAt;
+
+    /**
+     * @param excluded decides which files and directories are left out of the indexes
+     * @param textFile decides which files belong in the content index
+     */
+    public IndexUpdater(Collection<String> roots, TrigramIndex contentIndex, FilenameIndex filenameIndex,
+                        Predicate<Path> excluded, Predicate<Path> textFile, Path contentFile, Path filenameFile) throws IOException {
+        this(roots, contentIndex, filenameIndex, excluded, textFile, contentFile, filenameFile, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxWatches the most directories to watch, beyond which they are polled as if the
+     *                   platform's limit had run out
+     */
+    IndexUpdater(Collection<String> roots, TrigramIndex contentIndex, FilenameIndex filenameIndex, Predicate<Path> excluded,
+                 Predicate<Path> textFile, Path contentFile, Path filenameFile, int maxWatches) throws IOException {
+        this.roots = List.copyOf(roots);
+        this.contentIndex = contentIndex;
+        this.filenameIndex = filenameIndex;
+        this.excluded = excluded;
+        this.textFile = textFile;
+        this.contentFile = contentFile;
+        this.filenameFile = filenameFile;
+        this.maxWatches = maxWatches;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "index-updater");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.watcherThread = new Thread(this::watch, "index-watcher");
+        this.watcherThread.setDaemon(true);
+    }
+
+    /**
+     * Registers the roots and starts applying changes.
+     *
+     * @param reconcile bring the indexes up to date in the background with the changes made
+     *                  since they were saved, e.g. when they were loaded from disk. Otherwise they
+     *                  are assumed to be current and the roots are registered before this method
+     *                  returns.
+     */
+    public void start(boolean reconcile) {
+        upToDate = savedAt(filenameFile);
+        if (reconcile) {
+            scheduler.execute(() -> {
+                long started = System.currentTimeMillis();
+                roots.forEach(root -> reconcile(Paths.get(root), upToDate));
+                if (!closed) {
+                    upToDate = started;
+                    polledAt = started;
+                    following = true;
+                }
+                logWatchCount();
+            });
+        } else {
+            roots.forEach(root -> registerTree(Paths.get(root)));
+            logWatchCount();
+        }
+        scheduler.scheduleWithFixedDelay(this::applyPending, BATCH_INTERVAL_MS, BATCH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::pollUnwatched, POLL_INTERVAL_MS, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        watcherThread.start();
+    }
+
+    private void logWatchCount() {
+        logger.log(Level.INFO, "Watching {0} directories ({1} polled)",
+                new Object[]{registeredDirs.size(), unwatchedDirs.size()});
+    }
+
+    public FilenameIndex getFilenameIndex() {
+        return filenameIndex;
+    }
+
+    /**
+     * Stops watching and saves any changes that have not been written yet.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Error closing watch service", e);
+        }
+        scheduler.shutdown();
+        try {
+            if (scheduler.awaitTermination(5, TimeUnit.SECONDS) && dirty) {
+                save();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void watch() {
+        while (!closed) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = watchedDirs.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                synchronized (this) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // Events on the directory were lost; only listing it again can tell what changed.
+                        // An overflow is reported on each key it affects, so each covers only its own entries.
+                        if (dir != null) {
+                            pendingRefreshes.add(dir);
+                        }
+                    } else if (dir != null) {
+                        pendingPaths.add(dir.resolve((Path) event.context()));
+                    }
+                }
+            }
+            if (!key.reset()) {
+                // The directory is gone; its deletion arrives as an event on the parent
+                watchedDirs.remove(key);
+                if (dir != null) {
+                    registeredDirs.remove(dir);
+                }
+            }
+        }
+    }
+
+    private void applyPending() {
+        long taken = System.currentTimeMillis() - CLOCK_SLACK_MS;
+        Set<Path> paths;
+        Set<Path> refreshes;
+        synchronized (this) {
+            paths = new LinkedHashSet<>(pendingPaths);
+            refreshes = new LinkedHashSet<>(pendingRefreshes);
+            pendingPaths.clear();
+            pendingRefreshes.clear();
+        }
+
+        try {
+            for (Path dir : refreshes) {
+                refresh(dir, true);
+            }
+
+            List<String> added = new ArrayList<>();
+            List<String> removed = new ArrayList<>();
+            for (Path path : paths) {
+                if (closed) {
+                    return;
+                }
+                if (excluded.test(path)) {
+                    continue;
+                }
+                BasicFileAttributes attrs = readAttributes(path);
+                if (attrs == null) {
+                    removePath(path, removed);
+                } else if (attrs.isDirectory()) {
+                    // A new or renamed directory: watch it and pick up everything inside
+                    if (!registeredDirs.contains(path)) {
+                        rescan(path);
+                    }
+                } else {
+                    added.add(path.toString());
+                    // The event says the file changed even if its size and time look the same
+                    updateContent(path, attrs, true);
+                }
+            }
+            if (!added.isEmpty() || !removed.isEmpty()) {
+                filenameIndex = filenameIndex.withChanges(added, removed);
+                dirty = true;
+            }
+            if (following) {
+                // Polled subtrees are only as current as their last poll
+                upToDate = Math.max(upToDate, Math.min(taken, polledAt));
+            }
+
+            if (dirty && System.currentTimeMillis() - lastSave > SAVE_INTERVAL_MS) {
+                save();
+            }
+        } catch (Exception e) {
+            // Never let an exception cancel the scheduled task
+            logger.log(Level.WARNING, "Error applying index updates", e);
+        }
+    }
+
+    /**
+     * Polls the subtrees that are not watched, and watches those for which a watch became free.
+     */
+    void pollUnwatched() {
+        long started = System.currentTimeMillis();
+        try {
+            for (Path dir : topMostUnwatched()) {
+                if (closed) {
+                    return;
+                }
+                if (register(dir)) {
+                    // A watch became free: the subtree is watched again from here on
+                    polledDirs.keySet().removeIf(polled -> polled.startsWith(dir));
+                    rescan(dir);
+                } else {
+                    poll(dir);
+                }
+            }
+        } catch (Exception e) {
+            // Never let an exception cancel the scheduled task
+            logger.log(Level.WARNING, "Error polling unwatched directories", e);
+            return;
+        }
+        polledAt = started;
+    }
+
+    /**
+     * Returns the unwatched directories not below another one, whose polls cover the rest.
+     */
+    private List<Path> topMostUnwatched() {
+        List<Path> topMost = new ArrayList<>();
+        for (Path dir : unwatchedDirs) {
+            Path parent = dir.getParent();
+            while (parent != null && !unwatchedDirs.contains(parent)) {
+                parent = parent.getParent();
+            }
+            if (parent == null) {
+                topMost.add(dir);
+            }
+        }
+        return topMost;
+    }
+
+    /**
+     * Brings the unwatched subtree at {@code top} up to date. A directory whose modification
+     * time is the one the last poll saw had nothing added, removed or renamed in it, so it is
+     * not listed again: the files it had are checked for a new size or modification time, which
+     * a file rewritten in place does not show on its directory, and its subdirectories in turn.
+     */
+    private void poll(Path top) {
+        Set<Path> seen = new HashSet<>();
+        Deque<Path> dirs = new ArrayDeque<>(List.of(top));
+        while (!dirs.isEmpty()) {
+            if (closed) {
+                return;
+            }
+            Path dir = dirs.pop();
+            BasicFileAttributes attrs = readAttributes(dir);
+            if (attrs == null || !attrs.isDirectory()) {
+                // Gone; below the top, the listing of its changed parent already dropped it
+                refresh(dir, false);
+                continue;
+            }
+            seen.add(dir);
+            PolledDir polled = polledDirs.get(dir);
+            if (polled != null && polled.modified().equals(attrs.lastModifiedTime())) {
+                for (Path file : polled.listing().files()) {
+                    BasicFileAttributes fileAttrs = readAttributes(file);
+                    if (fileAttrs != null) {
+                        updateContent(file, fileAttrs, false);
+                    }
+                }
+                dirs.addAll(polled.listing().subdirs());
+                continue;
+            }
+            // The time is taken before the listing, a change in between shows at the next poll
+            Listing listing = refresh(dir, false);
+            if (listing != null) {
+                polledDirs.put(dir, new PolledDir(attrs.lastModifiedTime(), listing));
+                dirs.addAll(listing.subdirs());
+            }
+        }
+        polledDirs.keySet().removeIf(dir -> dir.startsWith(top) && !seen.contains(dir));
+        unwatchedDirs.removeIf(dir -> dir.startsWith(top) && !seen.contains(dir));
+    }
+
+    /**
+     * Brings the entries directly in {@code dir} up to date: re-indexes its files whose size or
+     * modification time changed and drops the paths below it that are gone, including those in
+     * subdirectories that are gone.
+     *
+     * @param registerNew rescan the subdirectories that are neither watched nor polled yet
+     * @return the files and subdirectories in {@code dir}, or null if it could not be listed
+     */
+    private Listing refresh(Path dir, boolean registerNew) {
+        Set<String> files = new HashSet<>();
+        List<Path> listedFiles = new ArrayList<>();
+        List<Path> subdirs = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                if (closed) {
+                    return null;
+                }
+                BasicFileAttributes attrs = excluded.test(entry) ? null : readAttributes(entry);
+                if (attrs == null) {
+                    continue;
+                }
+                if (!attrs.isDirectory()) {
+                    files.add(entry.toString());
+                    listedFiles.add(entry);
+                    updateContent(entry, attrs, false);
+                } else {
+                    subdirs.add(entry);
+                    if (registerNew && !registeredDirs.contains(entry) && !unwatchedDirs.contains(entry)) {
+                        rescan(entry);
+                    }
+                }
+            }
+        } catch (NoSuchFileException | NotDirectoryException e) {
+            // The directory itself is gone; everything below it is dropped
+            subdirs = null;
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Cannot list " + dir, e);
+            return null;
+        }
+        Set<String> kept = new HashSet<>();
+        if (subdirs != null) {
+            subdirs.forEach(subdir -> kept.add(subdir.toString()));
+        }
+        String prefix = dir.toString().endsWith(File.separator) ? dir.toString() : dir + File.separator;
+        applyListing(dir, files, path -> {
+            int end = path.indexOf(File.separatorChar, prefix.length());
+            return end >= 0 && kept.contains(path.substring(0, end));
+        });
+        return subdirs == null ? null : new Listing(listedFiles, subdirs);
+    }
+
+    /**
+     * Brings everything below {@code dir} up to date: registers its directories, re-indexes
+     * only the files whose size or modification time no longer match the content index and
+     * drops the paths that are gone.
+     */
+    private void rescan(Path dir) {
+        Set<String> files = new HashSet<>();
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path subdir, BasicFileAttributes attrs) {
+                    if (closed) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    if (!subdir.equals(dir) && excluded.test(subdir)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    register(subdir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (!excluded.test(file)) {
+                        files.add(file.toString());
+                        updateContent(file, attrs, false);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (NoSuchFileException e) {
+            // The directory itself is gone; everything below it is dropped
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Error rescanning " + dir, e);
+            return;
+        }
+        if (closed) {
+            return;
+        }
+
+        applyListing(dir, files, path -> false);
+        for (String path : contentIndex.pathsUnder(dir.toString())) {
+            if (!files.contains(path)) {
+                contentIndex.removeDocument(path);
+                dirty = true;
+            }
+        }
+    }
+
+    /**
+     * Brings everything below {@code root} up to date with the changes made since {@code since}
+     * while nothing was watching. Every directory is registered and every file is checked for a
+     * new size or modification time, which the walk reads anyway, but only directories modified
+     * since then can have had entries added, removed or renamed, so only those are listed again.
+     */
+    private void reconcile(Path root, long since) {
+        Set<Path> changed = new LinkedHashSet<>();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path subdir, BasicFileAttributes attrs) {
+                    if (closed) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    if (!subdir.equals(root) && excluded.test(subdir)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    register(subdir);
+                    if (attrs.lastModifiedTime().toMillis() >= since - CLOCK_SLACK_MS) {
+                        changed.add(subdir);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    // Files of changed directories are checked when those are listed
+                    if (!changed.contains(file.getParent()) && !excluded.test(file)) {
+                        updateContent(file, attrs, false);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (NoSuchFileException e) {
+            // The root itself is gone; everything below it is dropped
+            rescan(root);
+            return;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Error reconciling " + root, e);
+            return;
+        }
+        for (Path dir : changed) {
+            if (closed) {
+                return;
+            }
+            Listing listing = refresh(dir, false);
+            if (listing == null) {
+                continue;
+            }
+            for (Path subdir : listing.subdirs()) {
+                // A directory moved in keeps its own time, that nothing below it is indexed gives it away
+                if (!changed.contains(subdir) && filenameIndex.pathsUnder(subdir.toString()).isEmpty()) {
+                    rescan(subdir);
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the filename index below {@code dir} to {@code files}, keeping the other paths
+     * below it only if {@code keep} accepts them. The difference goes into the index's overlay,
+     * which is compacted once it grows large.
+     */
+    private void applyListing(Path dir, Set<String> files, Predicate<String> keep) {
+        List<String> removed = new ArrayList<>();
+        Set<String> indexed = new HashSet<>();
+        for (String path : filenameIndex.pathsUnder(dir.toString())) {
+            if (files.contains(path)) {
+                indexed.add(path);
+            } else if (!keep.test(path)) {
+                removed.add(path);
+            }
+        }
+        List<String> added = new ArrayList<>();
+        for (String path : files) {
+            if (!indexed.contains(path)) {
+                added.add(path);
+            }
+        }
+        if (added.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        filenameIndex = filenameIndex.withChanges(added, removed);
+        removed.forEach(contentIndex::removeDocument);
+        dirty = true;
+    }
+
+    private void registerTree(Path dir) {
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path subdir, BasicFileAttributes attrs) {
+                    if (closed) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    if (!subdir.equals(dir) && excluded.test(subdir)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    return register(subdir) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Error registering " + dir, e);
+        }
+    }
+
+    /**
+     * Registers one directory. A directory that cannot be watched, typically because the
+     * platform's watch limit is exhausted, is polled instead.
+     */
+    private boolean register(Path dir) {
+        if (registeredDirs.contains(dir)) {
+            return true;
+        }
+        try {
+            if (registeredDirs.size() >= maxWatches) {
+                throw new IOException("No more than " + maxWatches + " directories are watched");
+            }
+            WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchedDirs.put(key, dir);
+            registeredDirs.add(dir);
+            unwatchedDirs.remove(dir);
+            return true;
+        } catch (IOException | ClosedWatchServiceException e) {
+            if (!closed) {
+                logger.log(Level.FINE, "Cannot watch " + dir + ", polling it instead: " + e.getMessage());
+                unwatchedDirs.add(dir);
+            }
+            return false;
+        }
+    }
+
+    private void updateContent(Path file, BasicFileAttributes attrs, boolean changed) {
+        try {
+            if (attrs.isSymbolicLink()) {
+                // Links are indexed with the attributes of their target, like the initial build
+                attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            }
+            String path = file.toString();
+            long size = attrs.size();
+            long lastModified = attrs.lastModifiedTime().toMillis();
+            if (!attrs.isRegularFile()) {
+                dirty |= contentIndex.removeDocument(path);
+            } else if (changed || !contentIndex.isCurrent(path, size, lastModified)) {
+                if (textFile.test(file)) {
+                    contentIndex.addDocument(path, size, lastModified, TrigramIndex.extractTrigrams(file));
+                    dirty = true;
+                } else {
+                    // Files that are not text are never current, checking them must not cause a save
+                    dirty |= contentIndex.removeDocument(path);
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Skipping unreadable file " + file, e);
+        }
+    }
+
+    private void removePath(Path path, List<String> removed) {
+        String name = path.toString();
+        if (filenameIndex.contains(name)) {
+            removed.add(name);
+            contentIndex.removeDocument(name);
+        } else {
+            // A deleted directory takes everything below it along
+            rescan(path);
+        }
+        dirty = true;
+    }
+
+    private BasicFileAttributes readAttributes(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void save() {
+        try {
+            // Saving encodes the overlay anyway, the index keeps that rather than redo it next time
+            filenameIndex = filenameIndex.compacted();
+            contentIndex.save(contentFile);
+            filenameIndex.save(filenameFile);
+            markUpToDate(filenameFile, upToDate);
+            dirty = false;
+            lastSave = System.currentTimeMillis();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to save search index", e);
+        }
+    }
+
+    /**
+     * Records on a saved filename index that it holds every change made before {@code time}, which
+     * is where reconciling it after it was loaded again starts from.
+     */
+    static void markUpToDate(Path filenameFile, long time) throws IOException {
+        Files.setLastModifiedTime(filenameFile, FileTime.fromMillis(time));
+    }
+
+    /**
+     * Returns the time before which every change is in the saved filename index, or 0 if there is
+     * none to tell.
+     */
+    private static long savedAt(Path filenameFile) {
+        try {
+            return Files.getLastModifiedTime(filenameFile).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * What listing a directory found in it, leaving out excluded entries.
+     */
+    private record Listing(List<Path> files, List<Path> subdirs) {
+    }
+
+    /**
+     * A polled directory as its last listing saw it.
+     */
+    private record PolledDir(FileTime modified, Listing listing) {
+    }
+}
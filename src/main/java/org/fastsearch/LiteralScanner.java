@@ -0,0 +1,413 @@
+package org.fastsearch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Searches files for a literal on the raw bytes, without decoding them to characters.
+ *
+ * <p>The literal is encoded as UTF-8 and located with Boyer-Moore-Horspool. Case-insensitive
+ * matching folds ASCII letters only, which is exactly what {@link java.util.regex.Pattern#CASE_INSENSITIVE}
+ * does without {@code UNICODE_CASE}. Small files are read into a per-thread buffer, larger ones
+ * are memory-mapped, so the allocation per file stays flat whatever its size.
+ *
+ * <p>When the literal was extracted from a regex, each hit only marks a candidate line. That line
+ * alone is decoded and handed to the regex, so lines without the literal never reach it.
+ */
+public class LiteralScanner {
+    static final int READ_THRESHOLD = 64 * 1024;
+    /**
+     * How much of the start of a file is shown to a head check.
+     */
+    public static final int HEAD_SIZE = 1024;
+    private static final int DEFAULT_MAP_CHUNK_SIZE = 1 << 30;
+    private static final byte[] IDENTITY = new byte[256];
+    private static final byte[] ASCII_FOLD = new byte[256];
+    private static final ThreadLocal<ByteBuffer> readBuffer =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(READ_THRESHOLD));
+    private static final ThreadLocal<byte[]> lineBuffer = ThreadLocal.withInitial(() -> new byte[1024]);
+    // Bytes decoded on each side of a hit for its snippet, a snippet's worth of characters at up to four bytes each
+    private static final int SNIPPET_WINDOW = 4 * MatchPosition.MAX_SNIPPET_LENGTH;
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            IDENTITY[i] = (byte) i;
+            ASCII_FOLD[i] = (byte) (i >= 'A' && i <= 'Z' ? i + ('a' - 'A') : i);
+        }
+    }
+
+    private final byte[] needle;
+    private final int literalLength;
+    private final byte[][] lineNeedles;
+    private final byte[] fold;
+    private final int[] shift = new int[256];
+    private final Pattern linePattern;
+    private final int mapChunkSize;
+
+    public LiteralScanner(String literal, boolean isCaseSensitive) {
+        this(List.of(literal), isCaseSensitive, null, DEFAULT_MAP_CHUNK_SIZE);
+    }
+
+    /**
+     * @param literals    literals every match of {@code linePattern} contains; the first one is
+     *                    searched for, the others must appear on the same line
+     * @param linePattern lines with all literals only count if this pattern also finds a match
+     */
+    public LiteralScanner(List<String> literals, boolean isCaseSensitive, Pattern linePattern) {
+        this(literals, isCaseSensitive, linePattern, DEFAULT_MAP_CHUNK_SIZE);
+    }
+
+    LiteralScanner(List<String> literals, boolean isCaseSensitive, Pattern linePattern, int mapChunkSize) {
+        if (literals.isEmpty() || literals.get(0).isEmpty()) {
+            throw new IllegalArgumentException("Literal must not be empty");
+        }
+        this.fold = isCaseSensitive ? IDENTITY : ASCII_FOLD;
+        this.linePattern = linePattern;
+        this.needle = encode(literals.get(0));
+        this.literalLength = literals.get(0).length();
+        this.lineNeedles = new byte[literals.size() - 1][];
+        for (int i = 1; i < literals.size(); i++) {
+            lineNeedles[i - 1] = encode(literals.get(i));
+        }
+        this.mapChunkSize = Math.max(mapChunkSize, needle.length * 2);
+
+        Arrays.fill(shift, needle.length);
+        for (int i = 0; i < needle.length - 1; i++) {
+            shift[needle[i] & 0xFF] = needle.length - 1 - i;
+        }
+    }
+
+    private byte[] encode(String literal) {
+        byte[] bytes = literal.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = fold[bytes[i] & 0xFF];
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns whether a line-by-line search for {@code literal} would give the same answer as
+     * scanning the bytes. Literals spanning lines or containing the replacement character that
+     * stands in for malformed input only make sense on decoded lines.
+     */
+    public static boolean supports(String literal) {
+        return !literal.isEmpty() && literal.indexOf('\n') < 0 && literal.indexOf('\r') < 0
+                && literal.indexOf('\uFFFD') < 0;
+    }
+
+    /**
+     * Returns whether {@code file} contains the literal.
+     */
+    public boolean matches(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return matches(channel, null);
+        }
+    }
+
+    /**
+     * Returns whether the file open on {@code channel} contains the literal.
+     *
+     * @param headCheck if not null, given the first {@value #HEAD_SIZE} bytes (or fewer for a short
+     *                  file) before they are searched; returning false skips the file
+     */
+    public boolean matches(FileChannel channel, Predicate<ByteBuffer> headCheck) throws IOException {
+        return matches(channel, headCheck, null);
+    }
+
+    /**
+     * Like {@link #matches(FileChannel, Predicate)}, but a file {@code parallelScan} splits is
+     * scanned as chunks in parallel.
+     */
+    boolean matches(FileChannel channel, Predicate<ByteBuffer> headCheck, ParallelScan parallelScan)
+            throws IOException {
+        long[] chunks = parallelScan != null ? parallelScan.split(channel) : null;
+        if (chunks != null) {
+            return acceptsHead(channel, headCheck) && parallelScan.matches(channel, chunks, this::findInChunk);
+        }
+        return scan(channel, headCheck, null);
+    }
+
+    /**
+     * Returns where {@code file} contains the literal, one position per matching line.
+     */
+    public List<MatchPosition> findMatches(Path file, int maxMatches) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return findMatches(channel, null, maxMatches);
+        }
+    }
+
+    /**
+     * Returns the first {@code maxMatches} lines of the file open on {@code channel} that match,
+     * or an empty list if there are none. Unlike {@link #matches}, this has to read on past the
+     * first match until enough lines are found.
+     *
+     * @param headCheck see {@link #matches(FileChannel, Predicate)}
+     */
+    public List<MatchPosition> findMatches(FileChannel channel, Predicate<ByteBuffer> headCheck, int maxMatches)
+            throws IOException {
+        return findMatches(channel, headCheck, maxMatches, null);
+    }
+
+    /**
+     * Like {@link #findMatches(FileChannel, Predicate, int)}, but a file {@code parallelScan}
+     * splits is scanned as chunks in parallel.
+     */
+    List<MatchPosition> findMatches(FileChannel channel, Predicate<ByteBuffer> headCheck, int maxMatches,
+                                    ParallelScan parallelScan) throws IOException {
+        long[] chunks = parallelScan != null ? parallelScan.split(channel) : null;
+        if (chunks != null) {
+            return acceptsHead(channel, headCheck)
+                    ? parallelScan.findMatches(channel, chunks, this::findInChunk, maxMatches)
+                    : Collections.emptyList();
+        }
+        MatchCollector collector = new MatchCollector(maxMatches);
+        scan(channel, headCheck, collector);
+        return collector.positions();
+    }
+
+    /**
+     * @param collector receives the matching lines, or null to stop at the first one
+     * @return whether the scan stopped early: at the first match, or once the collector is full
+     */
+    private boolean scan(FileChannel channel, Predicate<ByteBuffer> headCheck, MatchCollector collector)
+            throws IOException {
+        // A file shorter than the literal is still shown to the head check, which may classify it
+        long size = channel.size();
+        Matcher matcher = linePattern != null ? linePattern.matcher("") : null;
+        if (size <= READ_THRESHOLD) {
+            ByteBuffer buffer = readSmallFile(channel);
+            int length = buffer.position();
+            return acceptsHead(buffer, length, headCheck) && find(buffer, length, length, matcher, collector);
+        }
+        return scanMapped(channel, size, matcher, headCheck, collector);
+    }
+
+    private boolean findInChunk(ByteBuffer chunk, int length, MatchCollector collector) {
+        return find(chunk, length, length, linePattern != null ? linePattern.matcher("") : null, collector);
+    }
+
+    /**
+     * Hands the first bytes of the file open on {@code channel} to {@code headCheck}.
+     */
+    static boolean acceptsHead(FileChannel channel, Predicate<ByteBuffer> headCheck) throws IOException {
+        if (headCheck == null) {
+            return true;
+        }
+        int length = (int) Math.min(HEAD_SIZE, channel.size());
+        return acceptsHead(channel.map(FileChannel.MapMode.READ_ONLY, 0, length), length, headCheck);
+    }
+
+    /**
+     * Hands the first bytes of a file that was just read or mapped to {@code headCheck}.
+     */
+    static boolean acceptsHead(ByteBuffer buffer, int length, Predicate<ByteBuffer> headCheck) {
+        return headCheck == null || headCheck.test(buffer.slice(0, Math.min(length, HEAD_SIZE)));
+    }
+
+    /**
+     * Reads a file of at most {@value #READ_THRESHOLD} bytes into a buffer owned by the calling
+     * thread, which stays valid until the thread reads the next file. The buffer's position is
+     * the number of bytes read.
+     */
+    static ByteBuffer readSmallFile(FileChannel channel) throws IOException {
+        ByteBuffer buffer = readBuffer.get().clear();
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            // Keep reading until the buffer is full or the file ends
+        }
+        return buffer;
+    }
+
+    private boolean scanMapped(FileChannel channel, long size, Matcher matcher, Predicate<ByteBuffer> headCheck,
+                               MatchCollector collector) throws IOException {
+        long position = 0;
+        while (position < size) {
+            int length = (int) Math.min(mapChunkSize, size - position);
+            boolean last = position + length >= size;
+            ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            try {
+                if (position == 0 && !acceptsHead(window, length, headCheck)) {
+                    return false;
+                }
+                // A line cut off by the end of the window is left to the next window, which
+                // starts at the beginning of that line
+                int complete = last ? length : lineStart(window, length);
+                if (complete == 0) {
+                    // A single line longer than the window; overlap so the literal is still seen
+                    complete = length - (needle.length - 1);
+                }
+                if (find(window, complete, length, matcher, collector)) {
+                    return true;
+                }
+                if (collector != null) {
+                    collector.nextBuffer(window, complete);
+                }
+                position += complete;
+            } catch (InternalError e) {
+                // The JVM reports a fault on a mapped page, e.g. the file was truncated meanwhile
+                throw new IOException("File changed while it was scanned", e);
+            }
+            if (last) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Looks for a hit starting before {@code limit} in the first {@code length} bytes of
+     * {@code buffer}, confirming it with {@code matcher} if there is one.
+     *
+     * @param collector receives every matching line, or null to stop at the first one
+     * @return whether to stop scanning
+     */
+    private boolean find(ByteBuffer buffer, int limit, int length, Matcher matcher, MatchCollector collector) {
+        int from = 0;
+        while (from < limit) {
+            int hit = indexOf(buffer, from, Math.min(length, limit + needle.length - 1));
+            if (hit < 0) {
+                return false;
+            }
+            if (matcher == null && collector == null) {
+                return true;
+            }
+            int start = lineStart(buffer, hit);
+            int end = lineEnd(buffer, hit + needle.length, length);
+            if (matcher == null) {
+                collector.add(buffer, start, hit, characters(buffer, start, hit), literalLength,
+                        snippet(buffer, start, hit, end));
+            } else if (containsLineNeedles(buffer, start, end)) {
+                String line = decode(buffer, start, end);
+                if (matcher.reset(line).find()) {
+                    if (collector == null) {
+                        return true;
+                    }
+                    int column = matcher.start();
+                    int offset = start + line.substring(0, column).getBytes(StandardCharsets.UTF_8).length;
+                    collector.add(buffer, start, offset, column, matcher.end() - column, MatchPosition.snippet(line, column));
+                }
+            }
+            if (collector != null && collector.isFull()) {
+                return true;
+            }
+            // The whole line has been checked, continue on the next one
+            from = end + 1;
+        }
+        return false;
+    }
+
+    private boolean containsLineNeedles(ByteBuffer buffer, int start, int end) {
+        for (byte[] lineNeedle : lineNeedles) {
+            if (!contains(buffer, start, end, lineNeedle)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean contains(ByteBuffer buffer, int start, int end, byte[] bytes) {
+        outer:
+        for (int i = start; i <= end - bytes.length; i++) {
+            for (int j = 0; j < bytes.length; j++) {
+                if (fold[buffer.get(i + j) & 0xFF] != bytes[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the offset just after the last line terminator before {@code offset}, or 0.
+     */
+    static int lineStart(ByteBuffer buffer, int offset) {
+        for (int i = offset - 1; i >= 0; i--) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    static int lineEnd(ByteBuffer buffer, int offset, int length) {
+        for (int i = offset; i < length; i++) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Returns the snippet of a hit at {@code hit} in the line {@code [start, end)}, decoding no
+     * more of a long line than a snippet can show.
+     */
+    private String snippet(ByteBuffer buffer, int start, int hit, int end) {
+        int from = Math.max(start, hit - SNIPPET_WINDOW);
+        while (from < hit && (buffer.get(from) & 0xC0) == 0x80) {
+            from++;
+        }
+        int to = Math.min(end, hit + needle.length + SNIPPET_WINDOW);
+        while (to < end && (buffer.get(to) & 0xC0) == 0x80) {
+            to--;
+        }
+        return MatchPosition.snippet(decode(buffer, from, to), characters(buffer, from, hit), from > start, to < end);
+    }
+
+    /**
+     * Counts the UTF-8 characters in {@code [start, end)} of {@code buffer} by their lead bytes.
+     */
+    private static int characters(ByteBuffer buffer, int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if ((buffer.get(i) & 0xC0) != 0x80) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    static String decode(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = lineBuffer.get();
+        int length = end - start;
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(length, bytes.length * 2)];
+            lineBuffer.set(bytes);
+        }
+        buffer.get(start, bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the offset of the first match in {@code buffer} between {@code from} and
+     * {@code to}, or -1 if there is none.
+     */
+    int indexOf(ByteBuffer buffer, int from, int to) {
+        int last = needle.length - 1;
+        int end = to - needle.length;
+        int i = from;
+        while (i <= end) {
+            int j = last;
+            while (fold[buffer.get(i + j) & 0xFF] == needle[j]) {
+                if (j == 0) {
+                    return i;
+                }
+                j--;
+            }
+            i += shift[fold[buffer.get(i + last) & 0xFF] & 0xFF];
+        }
+        return -1;
+    }
+}
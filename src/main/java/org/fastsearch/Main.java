@@ -1,7 +1,16 @@
 package org.fastsearch;
 
+import java.util.Arrays;
+
 public class Main {
-    public static void main(String[] args) {
-        FastSearchApp.main(args);
+    public static void main(String[] args) throws Exception {
+        // The command line modes must not touch FastSearchApp, which would load JavaFX
+        if (args.length > 0 && args[0].equals("search")) {
+            SearchCli.main(Arrays.copyOfRange(args, 1, args.length));
+        } else if (args.length > 0 && args[0].equals("daemon")) {
+            SearchDaemon.main(Arrays.copyOfRange(args, 1, args.length));
+        } else {
+            FastSearchApp.main(args);
+        }
     }
 }
@@ -2,6 +2,7 @@ package org.fastsearch;
 
 import javafx.animation.PauseTransition;
 import javafx.application.Platform;
+import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.concurrent.Task;
@@ -27,6 +28,7 @@ import org.fxmisc.richtext.model.StyleSpansBuilder;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
 import java.nio.file.Files;
@@ -34,8 +36,10 @@ import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.StringJoiner;
 import java.util.function.Consumer;
@@ -46,6 +50,8 @@ import java.util.regex.Pattern;
 
 public class MainWindowController {
     private static final Logger logger = Logger.getLogger(MainWindowController.class.getName());
+    // The status bar is refreshed from the engine's counters ten times a second
+    private static final Duration PROGRESS_SAMPLE_INTERVAL = Duration.millis(100);
 
 
     @FXML
@@ -98,14 +104,24 @@ public class MainWindowController {
     @FXML
     private TableColumn<FileResult, LocalDateTime> modifiedCol;
     @FXML
+    private TableColumn<FileResult, String> termsCol;
+    @FXML
+    private TableColumn<FileResult, String> matchCol;
+    @FXML
     private VBox previewVBox;
 
     private long searchStartTime;
     private javafx.animation.Timeline timerTimeline;
+    private javafx.animation.Timeline progressTimeline;
+    private volatile String progressPhase;
+    private ResultBatcher resultBatcher;
 
     private ObservableList<FileResult> searchResults;
     private SearchConfig config;
     private SearchEngine searchEngine;
+    private DaemonClient daemonClient;
+    // Whether the running search was sent to the daemon, whose progress is then shown
+    private volatile boolean searchingThroughDaemon;
     private Task<Void> searchTask;
     private final Tika tika = new Tika();
     private PauseTransition previewDelay;
@@ -116,12 +132,14 @@ public class MainWindowController {
     public void initialize() {
         config = SearchConfig.load();
         searchEngine = new SearchEngine(config);
+        daemonClient = new DaemonClient(SearchDaemon.socketPath(config));
         searchResults = FXCollections.observableArrayList();
+        resultBatcher = new ResultBatcher(searchResults, ResultBatcher.DEFAULT_MAX_PER_FRAME);
 
         // Apply theme on startup
         Platform.runLater(() -> FastSearchApp.applyTheme(searchField.getScene(), config.getTheme()));
 
-        searchModeCombo.getItems().addAll("Filename", "Content");
+        searchModeCombo.getItems().addAll("Filename", "Content", "Multi-term");
         searchModeCombo.setValue("Filename");
 
         maxResultsSpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(100, 10000, config.getMaxResults(), 100));
@@ -131,6 +149,8 @@ public class MainWindowController {
         sizeCol.setCellValueFactory(new PropertyValueFactory<>("size"));
         typeCol.setCellValueFactory(new PropertyValueFactory<>("type"));
         modifiedCol.setCellValueFactory(new PropertyValueFactory<>("modified"));
+        termsCol.setCellValueFactory(data -> new SimpleStringProperty(String.join(", ", data.getValue().getMatchedTerms())));
+        matchCol.setCellValueFactory(data -> new SimpleStringProperty(describeMatches(data.getValue().getMatchPositions())));
 
         // Enable sorting
         nameCol.setSortable(true);
@@ -195,14 +215,18 @@ public class MainWindowController {
         });
 
         searchModeCombo.valueProperty().addListener((obs, oldVal, newVal) -> {
-            if ("Filename".equals(newVal)) {
+            if (!"Content".equals(newVal)) {
                 regexCheck.setSelected(false);
                 regexCheck.setDisable(true);
             } else {
                 regexCheck.setDisable(false);
             }
+            boolean multiTerm = "Multi-term".equals(newVal);
+            termsCol.setVisible(multiTerm);
+            matchCol.setVisible("Content".equals(newVal));
+            searchField.setPromptText(multiTerm ? "Enter comma-separated terms to search..." : "Enter filename or text to search...");
         });
-        regexCheck.setDisable("Filename".equals(searchModeCombo.getValue()));
+        regexCheck.setDisable(!"Content".equals(searchModeCombo.getValue()));
     }
 
     private void updatePreview(FileResult fileResult) {
@@ -353,8 +377,13 @@ public class MainWindowController {
                 codeArea.setStyleSpans(0, computeSyntaxHighlighting(codeArea.getText(), language));
 
                 // Search term highlighting and scrolling
-                if (searchTerm != null && !searchTerm.isEmpty()) {
-                    Pattern pattern = Pattern.compile(Pattern.quote(searchTerm), Pattern.CASE_INSENSITIVE);
+                if (!fileResult.getMatchPositions().isEmpty()) {
+                    highlightMatchPositions(codeArea, fileResult.getMatchPositions());
+                } else if (searchTerm != null && !searchTerm.isEmpty()) {
+                    // A multi-term result highlights every term that was found in it
+                    String regex = fileResult.getMatchedTerms().isEmpty() ? Pattern.quote(searchTerm)
+                            : String.join("|", fileResult.getMatchedTerms().stream().map(Pattern::quote).toList());
+                    Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
                     Matcher matcher = pattern.matcher(codeArea.getText());
                     boolean firstMatch = true;
                     while (matcher.find()) {
@@ -385,6 +414,44 @@ public class MainWindowController {
         thread.start();
     }
 
+    /**
+     * Highlights the matches the search reported and scrolls to the first one, without searching
+     * the text again.
+     */
+    private void highlightMatchPositions(CodeArea codeArea, List<MatchPosition> positions) {
+        int firstStart = -1;
+        for (MatchPosition position : positions) {
+            int paragraph = position.line() - 1;
+            // The file may have changed since it was searched
+            if (paragraph >= codeArea.getParagraphs().size()) {
+                continue;
+            }
+            int paragraphLength = codeArea.getParagraphLength(paragraph);
+            int column = Math.min(position.column() - 1, paragraphLength);
+            int start = codeArea.getAbsolutePosition(paragraph, column);
+            int end = codeArea.getAbsolutePosition(paragraph, Math.min(column + position.length(), paragraphLength));
+            codeArea.setStyle(start, end, Collections.singleton("search-term"));
+            if (firstStart < 0) {
+                firstStart = start;
+            }
+        }
+        if (firstStart >= 0) {
+            int start = firstStart;
+            Platform.runLater(() -> {
+                codeArea.moveTo(start);
+                codeArea.requestFollowCaret();
+            });
+        }
+    }
+
+    private static String describeMatches(List<MatchPosition> positions) {
+        if (positions.isEmpty()) {
+            return "";
+        }
+        String first = positions.get(0).toString();
+        return positions.size() > 1 ? first + "  (+" + (positions.size() - 1) + " more)" : first;
+    }
+
     private String getLanguage(String filename) {
         String extension = "";
         int i = filename.lastIndexOf('.');
@@ -546,10 +613,28 @@ public class MainWindowController {
         return spansBuilder.create();
     }
 
+    private List<String> parseTerms(String query) {
+        return Arrays.stream(query.split(","))
+                .map(String::trim)
+                .filter(term -> !term.isEmpty())
+                .distinct()
+                .toList();
+    }
+
     public void saveConfig() {
         config.save();
     }
 
+    /**
+     * Stops any running search and releases the engine, saving pending index updates.
+     */
+    public void shutdown() {
+        if (searchTask != null && searchTask.isRunning()) {
+            searchTask.cancel(true);
+        }
+        searchEngine.close();
+    }
+
     @FXML
     private void performSearch() {
         // Cancel any running search
@@ -573,6 +658,11 @@ public class MainWindowController {
         }
 
         String mode = searchModeCombo.getValue();
+        if (mode.equals("Multi-term") && parseTerms(query).isEmpty()) {
+            showAlert("Error", "Please enter at least one search term", Alert.AlertType.ERROR);
+            updateStatus("Error: No search terms provided");
+            return;
+        }
         String extension = extensionField.getText().trim();
         String customFolder = searchFolderField.getText().trim();
         boolean isCaseSensitive = caseSensitiveCheck.isSelected();
@@ -590,25 +680,40 @@ public class MainWindowController {
         searchResults.clear();
 
         searchStartTime = System.currentTimeMillis();
-        startTimer();
+        startTimer(true);
 
         setSearching(true);
+        Consumer<FileResult> batch = resultBatcher.begin();
+        Consumer<SearchHit> resultSink = hit -> batch.accept(new FileResult(hit));
+
+        SearchRequest request = new SearchRequest();
+        if (mode.equals("Filename")) {
+            request.setMode(SearchRequest.Mode.FILENAME);
+        } else if (mode.equals("Multi-term")) {
+            request.setMode(SearchRequest.Mode.MULTI_TERM);
+            request.setTerms(parseTerms(query));
+        }
+        request.setQuery(query);
+        request.setExtension(extension);
+        request.setFolder(customFolder);
+        request.setFilters(filters);
+        request.setMaxResults(maxResults);
+        request.setCaseSensitive(isCaseSensitive);
+        request.setRegex(isRegex);
 
         searchTask = new Task<>() {
             @Override
-            protected Void call() {
-                Consumer<String> statusCallback = (status) -> {
-                    String truncatedPath = truncatePath(status, config.getStatusPathDepth());
-                    Platform.runLater(() -> updateStatus(truncatedPath));
-                };
+            protected Void call() throws Exception {
+                Consumer<String> statusCallback = status -> progressPhase = status;
 
                 try {
-                    if (mode.equals("Filename")) {
-                        searchEngine.searchFilenameRealtime(query, extension, customFolder, filters, maxResults,
-                                isCaseSensitive, result -> addResultToTable(result), statusCallback);
+                    // A running daemon has warm caches; interrupting this thread closes the
+                    // connection, which cancels the search there
+                    searchingThroughDaemon = config.isUseDaemon() && daemonClient.isRunning();
+                    if (searchingThroughDaemon) {
+                        daemonClient.search(request, resultSink, statusCallback);
                     } else {
-                        searchEngine.searchContentRealtime(query, extension, customFolder, filters, maxResults,
-                                isCaseSensitive, isRegex, result -> addResultToTable(result), statusCallback);
+                        request.run(searchEngine, resultSink, statusCallback);
                     }
                 } catch (Exception e) {
                     if (!isCancelled()) {
@@ -627,17 +732,19 @@ public class MainWindowController {
 
                 long elapsedSeconds = (System.currentTimeMillis() - searchStartTime) / 1000;
                 String folderInfo = customFolder.isEmpty() ? "common folders" : new File(customFolder).getName();
-                updateStatus(searchResults.size() + " results found in " + folderInfo +
-                        " (" + elapsedSeconds + "s)");
-
-                config.addToHistory(mode, query, extension, searchResults.size());
+                // Results may still be queued for the table
+                resultBatcher.finish(() -> {
+                    updateStatus(searchResults.size() + " results found in " + folderInfo +
+                            " (" + elapsedSeconds + "s)");
+                    config.addToHistory(mode, query, extension, searchResults.size());
+                });
             }
 
             @Override
             protected void failed() {
                 stopTimer();
                 setSearching(false);
-                updateStatus("Search failed");
+                resultBatcher.finish(() -> updateStatus("Search failed"));
                 Throwable ex = getException();
                 if (ex != null) {
                     logger.log(Level.SEVERE, "Search failed", ex);
@@ -649,16 +756,37 @@ public class MainWindowController {
             protected void cancelled() {
                 stopTimer();
                 setSearching(false);
-                updateStatus("Search cancelled");
+                resultBatcher.finish(() -> updateStatus("Search cancelled"));
             }
         };
 
-        searchEngine.setSearchTask(searchTask);
+        searchEngine.setCancellation(searchTask::isCancelled);
         Thread searchThread = new Thread(searchTask);
         searchThread.setDaemon(true);
         searchThread.start();
     }
 
+    /**
+     * Lets a running daemon pick up changed settings or a rebuilt index.
+     */
+    private void reloadDaemon() {
+        if (!config.isUseDaemon()) {
+            return;
+        }
+        DaemonClient client = daemonClient;
+        Thread reload = new Thread(() -> {
+            if (client.isRunning()) {
+                try {
+                    client.reload();
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Failed to reload the search daemon", e);
+                }
+            }
+        }, "daemon-reload");
+        reload.setDaemon(true);
+        reload.start();
+    }
+
     private String truncatePath(String path, int depth) {
         if (path == null) return "";
         String[] parts = path.split("[/\\\\]");
@@ -714,26 +842,64 @@ public class MainWindowController {
         searchFolderField.clear();
     }
 
-    private void addResultToTable(FileResult result) {
-        Platform.runLater(() -> {
-            searchResults.add(result);
-            updateStatus("Found " + searchResults.size() + " files...");
-        });
-    }
-
-    private void startTimer() {
+    /**
+     * Starts the elapsed time display and samples the engine's progress into the status bar.
+     *
+     * @param countResults whether the status starts with the number of results found so far
+     */
+    private void startTimer(boolean countResults) {
         timerLabel.setVisible(true);
         timerTimeline = new javafx.animation.Timeline(
                 new javafx.animation.KeyFrame(javafx.util.Duration.seconds(1), e -> updateTimer())
         );
         timerTimeline.setCycleCount(javafx.animation.Timeline.INDEFINITE);
         timerTimeline.play();
+
+        progressPhase = null;
+        progressTimeline = new javafx.animation.Timeline(
+                new javafx.animation.KeyFrame(PROGRESS_SAMPLE_INTERVAL, e -> showProgress(countResults))
+        );
+        progressTimeline.setCycleCount(javafx.animation.Timeline.INDEFINITE);
+        progressTimeline.play();
     }
 
     private void stopTimer() {
         if (timerTimeline != null) {
             timerTimeline.stop();
         }
+        if (progressTimeline != null) {
+            progressTimeline.stop();
+        }
+    }
+
+    private void showProgress(boolean countResults) {
+        SearchProgress progress = searchingThroughDaemon ? daemonClient.getProgress() : searchEngine.getProgress();
+        StringBuilder status = new StringBuilder();
+        if (countResults) {
+            status.append("Found ").append(searchResults.size()).append(" · ");
+        }
+        status.append(progress.getFilesSeen()).append(" files");
+        long directories = progress.getDirectoriesVisited();
+        if (directories > 0) {
+            status.append(" in ").append(directories).append(" folders");
+        }
+        status.append(String.format(" · %.0f files/s", progress.getFilesPerSecond()));
+        if (progress.getBytesScanned() > 0) {
+            status.append(" · ").append(formatSize((long) progress.getBytesPerSecond())).append("/s");
+        }
+        long millisLeft = progress.getEstimatedMillisLeft();
+        if (millisLeft >= 0) {
+            long secondsLeft = (millisLeft + 999) / 1000;
+            status.append(String.format(" · ~%d:%02d left", secondsLeft / 60, secondsLeft % 60));
+        }
+        String phase = progressPhase;
+        String directory = progress.getCurrentDirectory();
+        if (phase != null) {
+            status.append(" · ").append(phase);
+        } else if (directory != null) {
+            status.append(" · ").append(truncatePath(directory, config.getStatusPathDepth()));
+        }
+        statusLabel.setText(status.toString());
     }
 
     private void updateTimer() {
@@ -859,7 +1025,11 @@ public class MainWindowController {
     private void showConfigDialog() {
         ConfigDialog dialog = new ConfigDialog(config);
         dialog.showAndWait();
+        // The old engine still watches the indexed folders
+        searchEngine.close();
         searchEngine = new SearchEngine(config);
+        daemonClient = new DaemonClient(SearchDaemon.socketPath(config));
+        reloadDaemon();
         // Apply theme to main window, just in case it was changed in config
         FastSearchApp.applyTheme(searchField.getScene(), config.getTheme());
 
@@ -876,6 +1046,69 @@ public class MainWindowController {
         }
     }
 
+    @FXML
+    private void rebuildIndex() {
+        if (searchTask != null && searchTask.isRunning()) {
+            showAlert("Info", "Wait for the current search to finish before rebuilding the index", Alert.AlertType.INFORMATION);
+            return;
+        }
+        if (!config.isIndexEnabled()) {
+            showAlert("Info", "The search index is disabled. Enable it in Config first.", Alert.AlertType.INFORMATION);
+            return;
+        }
+
+        String customFolder = searchFolderField.getText().trim();
+        searchStartTime = System.currentTimeMillis();
+        startTimer(false);
+        setSearching(true);
+        updateStatus("Building index...");
+
+        searchTask = new Task<>() {
+            private int indexedFiles;
+
+            @Override
+            protected Void call() throws Exception {
+                Consumer<String> statusCallback = status -> progressPhase = status;
+                indexedFiles = searchEngine.rebuildIndex(customFolder, statusCallback);
+                return null;
+            }
+
+            @Override
+            protected void succeeded() {
+                stopTimer();
+                setSearching(false);
+                long elapsedSeconds = (System.currentTimeMillis() - searchStartTime) / 1000;
+                updateStatus("Indexed " + indexedFiles + " files (" + elapsedSeconds + "s)");
+                reloadDaemon();
+            }
+
+            @Override
+            protected void failed() {
+                stopTimer();
+                setSearching(false);
+                updateStatus("Indexing failed");
+                Throwable ex = getException();
+                if (ex != null) {
+                    logger.log(Level.SEVERE, "Indexing failed", ex);
+                    showAlert("Error", "Indexing failed: " + ex.getMessage(), Alert.AlertType.ERROR);
+                }
+            }
+
+            @Override
+            protected void cancelled() {
+                stopTimer();
+                setSearching(false);
+                updateStatus("Indexing cancelled");
+            }
+        };
+
+        searchingThroughDaemon = false;
+        searchEngine.setCancellation(searchTask::isCancelled);
+        Thread indexThread = new Thread(searchTask);
+        indexThread.setDaemon(true);
+        indexThread.start();
+    }
+
     @FXML
     private void showHistoryDialog() {
         HistoryDialog dialog = new HistoryDialog(config);
@@ -890,6 +1123,19 @@ public class MainWindowController {
         });
     }
 
+    @FXML
+    private void showMetricsDialog() {
+        SearchMetrics metrics = searchEngine.getMetrics();
+        SearchMetrics.Summary summary = searchingThroughDaemon ? daemonClient.getMetrics()
+                : metrics != null ? metrics.getSummary() : null;
+        if (summary == null) {
+            showAlert("Metrics", "No search has run yet", Alert.AlertType.INFORMATION);
+            return;
+        }
+        MetricsDialog dialog = new MetricsDialog(config, summary);
+        dialog.showAndWait();
+    }
+
     @FXML
     private void showAboutDialog() {
         AboutDialog dialog = new AboutDialog(config);
@@ -0,0 +1,197 @@
+package org.fastsearch;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers which files matched recent content queries, so running a query again over an
+ * unchanged tree only has to walk it. An entry is keyed by the query and the file's path and
+ * stamped with its size and modification time, so it is ignored as soon as either changes.
+ *
+ * <p>Like {@link FileTypeCache}, entries live in parallel {@code long} arrays forming an
+ * open-addressing table, 24 bytes per slot here. Once the table has reached its maximum size new
+ * entries replace old ones, which lets entries of queries that are no longer run age out.
+ *
+ * <p>Where a matching file's matches are, which is too large for the table, is kept for the
+ * {@value #MAX_POSITION_ENTRIES} files that matched most recently, so a query run again can show
+ * them without reading the file.
+ */
+public class MatchCache {
+    public static final long UNKNOWN = -1;
+    /**
+     * Queries with more terms than this are not cached, the match mask would not fit.
+     */
+    public static final int MAX_TERMS = 63;
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    static final int MAX_CAPACITY = 1 << 20;
+    private static final int MAX_PROBES = 16;
+    static final int MAX_POSITION_ENTRIES = 4096;
+
+    private final int maxCapacity;
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private long[] stamps = new long[INITIAL_CAPACITY];
+    private long[] values = new long[INITIAL_CAPACITY];
+    private int size;
+    private final Map<Long, Positions> positions = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Positions> eldest) {
+            return size() > MAX_POSITION_ENTRIES;
+        }
+    };
+    private long hits;
+    private long misses;
+
+    public MatchCache() {
+        this(MAX_CAPACITY);
+    }
+
+    MatchCache(int maxCapacity) {
+        this.maxCapacity = Math.max(Integer.highestOneBit(maxCapacity), INITIAL_CAPACITY);
+    }
+
+    /**
+     * Returns the key for a query. {@code description} must capture everything that decides
+     * whether a file matches: the pattern, its flags and the kind of search.
+     */
+    public static long queryKey(String description) {
+        return FileTypeCache.keyOf(description);
+    }
+
+    /**
+     * @return the mask of terms the file matched (bit 0 for single-pattern queries), 0 if it did
+     * not match, or {@link #UNKNOWN} if the query has not seen the file at this size and time
+     */
+    public synchronized long lookup(long query, String path, long fileSize, long lastModifiedMillis) {
+        long matches = find(query, path, fileSize, lastModifiedMillis);
+        if (matches == UNKNOWN) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return matches;
+    }
+
+    private long find(long query, String path, long fileSize, long lastModifiedMillis) {
+        long key = FileTypeCache.keyOf(query, path);
+        int mask = keys.length - 1;
+        int slot = FileTypeCache.home(key, mask);
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            long existing = keys[slot];
+            if (existing == 0) {
+                return UNKNOWN;
+            }
+            if (existing == key) {
+                return stamps[slot] == FileTypeCache.stampOf(fileSize, lastModifiedMillis) ? values[slot] : UNKNOWN;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Returns where the matches of a file that matched the query are, or null if they are not
+     * known for the file at this size and time.
+     */
+    public synchronized List<MatchPosition> positions(long query, String path, long fileSize, long lastModifiedMillis) {
+        Positions known = positions.get(FileTypeCache.keyOf(query, path));
+        return known != null && known.stamp() == FileTypeCache.stampOf(fileSize, lastModifiedMillis)
+                ? known.positions() : null;
+    }
+
+    /**
+     * Returns the number of lookups that found an up-to-date entry.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @param matches the mask of matched terms, see {@link #lookup}
+     */
+    public synchronized void put(long query, String path, long fileSize, long lastModifiedMillis, long matches) {
+        put(query, path, fileSize, lastModifiedMillis, matches, List.of());
+    }
+
+    /**
+     * Like {@link #put(long, String, long, long, long)}, also keeping where the matches are.
+     *
+     * @param matchPositions where the file matched, empty if that is not known
+     */
+    public synchronized void put(long query, String path, long fileSize, long lastModifiedMillis, long matches,
+                                 List<MatchPosition> matchPositions) {
+        if (size * 2 >= keys.length && keys.length < maxCapacity) {
+            resize(keys.length * 2);
+        }
+        long key = FileTypeCache.keyOf(query, path);
+        long stamp = FileTypeCache.stampOf(fileSize, lastModifiedMillis);
+        insert(key, stamp, matches);
+        if (matches != 0 && !matchPositions.isEmpty()) {
+            positions.put(key, new Positions(stamp, List.copyOf(matchPositions)));
+        } else {
+            positions.remove(key);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        keys = new long[INITIAL_CAPACITY];
+        stamps = new long[INITIAL_CAPACITY];
+        values = new long[INITIAL_CAPACITY];
+        size = 0;
+        positions.clear();
+    }
+
+    private void insert(long key, long stamp, long value) {
+        int mask = keys.length - 1;
+        int home = FileTypeCache.home(key, mask);
+        int slot = home;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            long existing = keys[slot];
+            if (existing == 0 || existing == key) {
+                if (existing == 0) {
+                    size++;
+                }
+                keys[slot] = key;
+                stamps[slot] = stamp;
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (keys.length < maxCapacity) {
+            resize(keys.length * 2);
+            insert(key, stamp, value);
+        } else {
+            // The neighbourhood is full and the table cannot grow, the entry at home makes room
+            keys[home] = key;
+            stamps[home] = stamp;
+            values[home] = value;
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldStamps = stamps;
+        long[] oldValues = values;
+        keys = new long[capacity];
+        stamps = new long[capacity];
+        values = new long[capacity];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                insert(oldKeys[i], oldStamps[i], oldValues[i]);
+            }
+        }
+    }
+
+    private record Positions(long stamp, List<MatchPosition> positions) {
+    }
+}
@@ -0,0 +1,78 @@
+package org.fastsearch;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gathers the positions of matching lines while a file is scanned buffer by buffer, keeping
+ * count of the lines passed so far. Lines are counted by their {@code \n} terminators.
+ */
+class MatchCollector {
+    private final int maxMatches;
+    private final List<MatchPosition> positions = new ArrayList<>();
+    // File offset of the start of the current buffer
+    private long base;
+    // Line number at countedTo, the part of the current buffer already counted
+    private int line = 1;
+    private int countedTo;
+
+    MatchCollector(int maxMatches) {
+        this(maxMatches, 0);
+    }
+
+    /**
+     * @param base file offset of the first buffer, whose first line is counted as line 1
+     */
+    MatchCollector(int maxMatches, long base) {
+        this.maxMatches = maxMatches;
+        this.base = base;
+    }
+
+    boolean isFull() {
+        return positions.size() >= maxMatches;
+    }
+
+    List<MatchPosition> positions() {
+        return positions;
+    }
+
+    /**
+     * Records a match in the line starting at {@code lineStart} of {@code buffer}.
+     *
+     * @param matchOffset the match's byte offset in {@code buffer}
+     * @param column      the match's character position in its line, starting at 0
+     * @param snippet     the line, shortened around the match by {@link MatchPosition#snippet}
+     */
+    void add(ByteBuffer buffer, int lineStart, int matchOffset, int column, int length, String snippet) {
+        countLines(buffer, lineStart);
+        positions.add(new MatchPosition(base + matchOffset, line, column + 1, length, snippet));
+    }
+
+    /**
+     * Returns how many lines ended since the collector was created, up to {@code length} bytes
+     * into the current buffer. Lines already counted on the way to the matches are not read again.
+     */
+    int linesEnded(ByteBuffer buffer, int length) {
+        countLines(buffer, length);
+        return line - 1;
+    }
+
+    /**
+     * Moves on to the next buffer, which starts {@code consumed} bytes into the current one.
+     */
+    void nextBuffer(ByteBuffer buffer, int consumed) {
+        countLines(buffer, consumed);
+        base += consumed;
+        countedTo = 0;
+    }
+
+    private void countLines(ByteBuffer buffer, int to) {
+        for (int i = countedTo; i < to; i++) {
+            if (buffer.get(i) == '\n') {
+                line++;
+            }
+        }
+        countedTo = Math.max(countedTo, to);
+    }
+}
@@ -0,0 +1,47 @@
+package org.fastsearch;
+
+/**
+ * Where a content search found a match: the first match on one line of a file.
+ *
+ * @param offset  byte offset of the match from the start of the file
+ * @param line    line number, starting at 1
+ * @param column  character position of the match in its line, starting at 1
+ * @param length  length of the match in characters
+ * @param snippet the matching line, shortened around the match if it is long
+ */
+public record MatchPosition(long offset, int line, int column, int length, String snippet) {
+    static final int MAX_SNIPPET_LENGTH = 160;
+    private static final int SNIPPET_CONTEXT = 40;
+
+    /**
+     * Cuts a long line down to the part around a match starting at {@code matchStart}.
+     */
+    static String snippet(String line, int matchStart) {
+        return snippet(line, matchStart, false, false);
+    }
+
+    /**
+     * Like {@link #snippet(String, int)}, for a part of a line that holds at least a snippet's
+     * length on each side of the match wherever the line goes on past it.
+     *
+     * @param cutBefore whether the line starts before {@code part}
+     * @param cutAfter  whether the line goes on after {@code part}
+     */
+    static String snippet(String part, int matchStart, boolean cutBefore, boolean cutAfter) {
+        String text = cutBefore ? part : part.stripLeading();
+        int start = matchStart - (part.length() - text.length());
+        text = cutAfter ? text : text.stripTrailing();
+        if (text.length() <= MAX_SNIPPET_LENGTH && !cutBefore && !cutAfter) {
+            return text;
+        }
+        int from = Math.max(0, Math.min(start - SNIPPET_CONTEXT, text.length() - MAX_SNIPPET_LENGTH));
+        int to = Math.min(text.length(), from + MAX_SNIPPET_LENGTH);
+        return (from > 0 || cutBefore ? "..." : "") + text.substring(from, to)
+                + (to < text.length() || cutAfter ? "..." : "");
+    }
+
+    @Override
+    public String toString() {
+        return line + ":" + column + ": " + snippet;
+    }
+}
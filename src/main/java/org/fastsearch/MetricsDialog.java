@@ -0,0 +1,58 @@
+package org.fastsearch;
+
+import javafx.geometry.Insets;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.Dialog;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextArea;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+
+import java.net.URL;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Metrics Dialog - Shows where the time of the last search went
+ */
+public class MetricsDialog extends Dialog<Void> {
+    private static final Logger logger = Logger.getLogger(MetricsDialog.class.getName());
+
+    public MetricsDialog(SearchConfig config, SearchMetrics.Summary summary) {
+        setTitle("Search Metrics");
+        setHeaderText("Time and memory of the last search");
+
+        VBox content = new VBox(10);
+        content.setPadding(new Insets(20));
+        content.setPrefSize(560, 400);
+
+        TextArea metricsArea = new TextArea(summary.format());
+        metricsArea.setEditable(false);
+        metricsArea.setStyle("-fx-font-family: \"Consolas\", \"Monaco\", monospace;");
+        VBox.setVgrow(metricsArea, Priority.ALWAYS);
+
+        Label infoLabel = new Label("Times are summed over all search threads");
+        infoLabel.setStyle("-fx-font-size: 11px; -fx-text-fill: gray;");
+
+        content.getChildren().addAll(metricsArea, infoLabel);
+
+        getDialogPane().setContent(content);
+        getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+
+        // Apply theme to dialog pane directly in constructor
+        String stylesheet = "styles-dark.css";
+        if ("Light".equalsIgnoreCase(config.getTheme())) {
+            stylesheet = "styles-light.css";
+        }
+        try {
+            URL resource = FastSearchApp.class.getResource(stylesheet);
+            if (resource != null) {
+                getDialogPane().getStylesheets().add(resource.toExternalForm());
+            } else {
+                logger.log(Level.WARNING, "Could not find stylesheet: {0}", stylesheet);
+            }
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error loading stylesheet: " + stylesheet, e);
+        }
+    }
+}
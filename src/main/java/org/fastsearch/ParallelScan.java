@@ -0,0 +1,264 @@
+package org.fastsearch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Scans a very large file as chunks on a fork/join pool, so one huge log does not keep a single
+ * thread busy while the others have nothing left to do.
+ *
+ * <p>Chunks start and end on line boundaries: each one starts at the first line beginning at or
+ * after a multiple of the chunk size and owns every line starting before the next one, so no line
+ * is cut or searched twice. No more chunks are read at once than the scan's parallelism, which
+ * the search sets to what the file's device allows. A chunk that finds what the search needs
+ * cancels those after it.
+ * Chunks that have not started are skipped; those running finish their few megabytes. Matches
+ * are collected per chunk and renumbered once the lines of the chunks before them are known, so
+ * the result is the same as reading the file from start to end. A scan the search cancelled
+ * throws rather than return the partial result, which would look like the file does not match.
+ */
+class ParallelScan {
+    static final long DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+    // How far past a chunk's nominal start a line boundary is looked for
+    private static final int BOUNDARY_SEARCH = 64 * 1024;
+    // Chunks are mapped whole, like the scanners' windows
+    private static final long MAX_CHUNK_SIZE = 1 << 30;
+
+    /**
+     * Scans one chunk with one of the scanners' own loops.
+     */
+    interface ChunkScanner {
+        /**
+         * @param collector receives the matching lines, or null to stop at the first one
+         * @return whether the scan stopped early: at the first match, or once the collector is full
+         */
+        boolean scan(ByteBuffer chunk, int length, MatchCollector collector);
+    }
+
+    private final ForkJoinPool pool;
+    private final long threshold;
+    private final long chunkSize;
+    private final BooleanSupplier cancelled;
+    private final int parallelism;
+
+    /**
+     * @param threshold files larger than this many bytes are split
+     * @param cancelled tells when the search was cancelled, which skips the chunks not started yet
+     *                  and fails the scan with a {@link CancellationException}
+     */
+    ParallelScan(ForkJoinPool pool, long threshold, BooleanSupplier cancelled) {
+        this(pool, threshold, DEFAULT_CHUNK_SIZE, cancelled);
+    }
+
+    ParallelScan(ForkJoinPool pool, long threshold, long chunkSize, BooleanSupplier cancelled) {
+        this(pool, threshold, chunkSize, cancelled, pool.getParallelism());
+    }
+
+    private ParallelScan(ForkJoinPool pool, long threshold, long chunkSize, BooleanSupplier cancelled, int parallelism) {
+        this.pool = pool;
+        this.threshold = threshold;
+        this.chunkSize = chunkSize;
+        this.cancelled = cancelled;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Returns a scan like this one that reads no more than {@code parallelism} chunks at once.
+     */
+    ParallelScan withParallelism(int parallelism) {
+        return new ParallelScan(pool, threshold, chunkSize, cancelled, parallelism);
+    }
+
+    /**
+     * Returns whether a file of {@code size} bytes is large enough to be split, if its lines allow.
+     */
+    boolean isLarge(long size) {
+        return size > threshold && size > chunkSize;
+    }
+
+    /**
+     * Splits the file open on {@code channel} into chunks.
+     *
+     * @return the offsets the chunks start at followed by the size of the file, or null if the
+     *         file is too small to be worth it or its lines too long to be split
+     */
+    long[] split(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (!isLarge(size)) {
+            return null;
+        }
+        List<Long> starts = new ArrayList<>();
+        starts.add(0L);
+        for (long nominal = chunkSize; nominal < size; nominal += chunkSize) {
+            if (nominal <= starts.get(starts.size() - 1)) {
+                continue;
+            }
+            // The line starting right at the nominal offset is found by the terminator before it
+            long from = nominal - 1;
+            int length = (int) Math.min(BOUNDARY_SEARCH, size - from);
+            ByteBuffer probe = channel.map(FileChannel.MapMode.READ_ONLY, from, length);
+            int end = LiteralScanner.lineEnd(probe, 0, length);
+            // A CRLF pair ends one line, not two
+            if (end + 1 < length && probe.get(end) == '\r' && probe.get(end + 1) == '\n') {
+                end++;
+            }
+            // Without a line starting near the nominal offset, the chunk goes on to the next one
+            if (end < length && from + end + 1 < size) {
+                starts.add(from + end + 1);
+            }
+        }
+        starts.add(size);
+        long[] offsets = starts.stream().mapToLong(Long::longValue).toArray();
+        for (int i = 1; i < offsets.length; i++) {
+            if (offsets[i] - offsets[i - 1] > MAX_CHUNK_SIZE) {
+                return null;
+            }
+        }
+        return offsets.length > 2 ? offsets : null;
+    }
+
+    /**
+     * Returns whether any chunk of the file open on {@code channel} matches.
+     *
+     * @param starts the file's chunks, as returned by {@link #split}
+     * @throws CancellationException if the search was cancelled before every chunk needed was scanned
+     */
+    boolean matches(FileChannel channel, long[] starts, ChunkScanner scanner) throws IOException {
+        Chunk[] chunks = run(channel, starts, scanner, 0);
+        for (Chunk chunk : chunks) {
+            if (chunk.stopped) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the first {@code maxMatches} lines of the file open on {@code channel} that match.
+     *
+     * @param starts the file's chunks, as returned by {@link #split}
+     * @throws CancellationException if the search was cancelled before every chunk needed was scanned
+     */
+    List<MatchPosition> findMatches(FileChannel channel, long[] starts, ChunkScanner scanner, int maxMatches)
+            throws IOException {
+        Chunk[] chunks = run(channel, starts, scanner, maxMatches);
+        List<MatchPosition> positions = new ArrayList<>();
+        int lines = 0;
+        for (Chunk chunk : chunks) {
+            for (MatchPosition position : chunk.collector.positions()) {
+                if (positions.size() == maxMatches) {
+                    return positions;
+                }
+                positions.add(new MatchPosition(position.offset(), position.line() + lines, position.column(),
+                        position.length(), position.snippet()));
+            }
+            if (chunk.stopped) {
+                // Full, the chunks after it were cancelled
+                break;
+            }
+            lines += chunk.newlines;
+        }
+        return positions;
+    }
+
+    /**
+     * @param maxMatches the matches to collect, or 0 to stop at the first one
+     */
+    private Chunk[] run(FileChannel channel, long[] starts, ChunkScanner scanner, int maxMatches) throws IOException {
+        Chunk[] chunks = new Chunk[starts.length - 1];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = new Chunk(starts[i], starts[i + 1], maxMatches);
+        }
+        // Index of the first chunk that stopped early; the ones after it are not needed
+        AtomicInteger stoppedAt = new AtomicInteger(chunks.length);
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        // Index of the first chunk the cancellation skipped
+        AtomicInteger skippedAt = new AtomicInteger(chunks.length);
+        // Each task reads every width-th chunk in turn, which caps how many are read at once
+        int width = Math.min(chunks.length, parallelism);
+        List<RecursiveAction> tasks = new ArrayList<>(width);
+        for (int i = 0; i < width; i++) {
+            int first = i;
+            tasks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    for (int index = first; index < chunks.length; index += width) {
+                        int stopped = stoppedAt.get();
+                        if (index > stopped || maxMatches == 0 && stopped < chunks.length) {
+                            return;
+                        }
+                        if (cancelled.getAsBoolean()) {
+                            skippedAt.accumulateAndGet(index, Math::min);
+                            return;
+                        }
+                        try {
+                            if (chunks[index].scan(channel, scanner)) {
+                                stoppedAt.accumulateAndGet(index, Math::min);
+                            }
+                        } catch (IOException e) {
+                            failure.compareAndSet(null, e);
+                            stoppedAt.set(-1);
+                        }
+                    }
+                }
+            });
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        // A skipped chunk only matters before the one that stopped, and not at all once a hit settled matches()
+        int stopped = stoppedAt.get();
+        if (skippedAt.get() < stopped && (maxMatches > 0 || stopped == chunks.length)) {
+            throw new CancellationException("Search cancelled while the file was scanned");
+        }
+        return chunks;
+    }
+
+    private static class Chunk {
+        private final long start;
+        private final long end;
+        private final MatchCollector collector;
+        private boolean stopped;
+        private int newlines;
+
+        Chunk(long start, long end, int maxMatches) {
+            this.start = start;
+            this.end = end;
+            this.collector = maxMatches > 0 ? new MatchCollector(maxMatches, start) : null;
+        }
+
+        /**
+         * @return whether the chunk stopped early
+         */
+        boolean scan(FileChannel channel, ChunkScanner scanner) throws IOException {
+            int length = (int) (end - start);
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            try {
+                stopped = scanner.scan(buffer, length, collector);
+                if (!stopped && collector != null) {
+                    // The chunks after this one number their lines from here
+                    newlines = collector.linesEnded(buffer, length);
+                }
+            } catch (InternalError e) {
+                // The JVM reports a fault on a mapped page, e.g. the file was truncated meanwhile
+                throw new IOException("File changed while it was scanned", e);
+            }
+            return stopped;
+        }
+    }
+}
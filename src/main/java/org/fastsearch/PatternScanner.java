@@ -0,0 +1,123 @@
+package org.fastsearch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs a regex over every line of a file, for patterns that have no literal a
+ * {@link LiteralScanner} could look for first. The file is read or mapped like the literal
+ * scanner does, so positions are reported in the same way.
+ */
+public class PatternScanner {
+    private static final int DEFAULT_MAP_CHUNK_SIZE = 1 << 30;
+
+    private final Pattern pattern;
+    private final int mapChunkSize;
+
+    public PatternScanner(Pattern pattern) {
+        this(pattern, DEFAULT_MAP_CHUNK_SIZE);
+    }
+
+    PatternScanner(Pattern pattern, int mapChunkSize) {
+        this.pattern = pattern;
+        this.mapChunkSize = mapChunkSize;
+    }
+
+    /**
+     * Returns the first {@code maxMatches} lines of the file open on {@code channel} that match,
+     * or an empty list if there are none.
+     *
+     * @param headCheck see {@link LiteralScanner#matches(FileChannel, Predicate)}
+     */
+    public List<MatchPosition> findMatches(FileChannel channel, Predicate<ByteBuffer> headCheck, int maxMatches)
+            throws IOException {
+        return findMatches(channel, headCheck, maxMatches, null);
+    }
+
+    /**
+     * Like {@link #findMatches(FileChannel, Predicate, int)}, but a file {@code parallelScan}
+     * splits is scanned as chunks in parallel.
+     */
+    List<MatchPosition> findMatches(FileChannel channel, Predicate<ByteBuffer> headCheck, int maxMatches,
+                                    ParallelScan parallelScan) throws IOException {
+        long[] chunks = parallelScan != null ? parallelScan.split(channel) : null;
+        if (chunks != null) {
+            return LiteralScanner.acceptsHead(channel, headCheck)
+                    ? parallelScan.findMatches(channel, chunks,
+                            (chunk, length, collector) -> find(chunk, length, length, pattern.matcher(""), collector),
+                            maxMatches)
+                    : Collections.emptyList();
+        }
+        MatchCollector collector = new MatchCollector(maxMatches);
+        Matcher matcher = pattern.matcher("");
+        long size = channel.size();
+        if (size <= LiteralScanner.READ_THRESHOLD) {
+            ByteBuffer buffer = LiteralScanner.readSmallFile(channel);
+            int length = buffer.position();
+            if (LiteralScanner.acceptsHead(buffer, length, headCheck)) {
+                find(buffer, length, length, matcher, collector);
+            }
+            return collector.positions();
+        }
+
+        long position = 0;
+        while (position < size) {
+            int length = (int) Math.min(mapChunkSize, size - position);
+            boolean last = position + length >= size;
+            ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            try {
+                if (position == 0 && !LiteralScanner.acceptsHead(window, length, headCheck)) {
+                    break;
+                }
+                // Windows end after the last complete line; a line longer than a window is cut
+                int complete = last ? length : LiteralScanner.lineStart(window, length);
+                if (complete == 0) {
+                    complete = length;
+                }
+                if (find(window, complete, length, matcher, collector)) {
+                    break;
+                }
+                collector.nextBuffer(window, complete);
+                position += complete;
+            } catch (InternalError e) {
+                // The JVM reports a fault on a mapped page, e.g. the file was truncated meanwhile
+                throw new IOException("File changed while it was scanned", e);
+            }
+        }
+        return collector.positions();
+    }
+
+    /**
+     * Checks the lines starting before {@code limit}.
+     *
+     * @return whether the collector is full
+     */
+    private static boolean find(ByteBuffer buffer, int limit, int length, Matcher matcher, MatchCollector collector) {
+        int start = 0;
+        while (start < limit) {
+            int end = LiteralScanner.lineEnd(buffer, start, length);
+            String line = LiteralScanner.decode(buffer, start, end);
+            if (matcher.reset(line).find()) {
+                int column = matcher.start();
+                int offset = start + line.substring(0, column).getBytes(StandardCharsets.UTF_8).length;
+                collector.add(buffer, start, offset, column, matcher.end() - column, MatchPosition.snippet(line, column));
+                if (collector.isFull()) {
+                    return true;
+                }
+            }
+            // A CRLF pair ends one line, not two
+            start = end + 1;
+            if (start < length && buffer.get(end) == '\r' && buffer.get(start) == '\n') {
+                start++;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,299 @@
+package org.fastsearch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds the literal strings that every match of a regular expression must contain, e.g.
+ * {@code ERROR} for {@code ERROR\s+\d{4}}. Files and lines without them cannot match, so they
+ * are rejected with a byte search before the regex engine runs.
+ *
+ * <p>The analysis is conservative: whenever a construct is not understood, such as alternation
+ * or inline flags that change how literals match, fewer literals (possibly none) are reported.
+ */
+public final class RegexLiterals {
+    private static final int NO_QUANTIFIER = -1;
+    private static final String ZERO_WIDTH = "";
+    private final String regex;
+    private int pos;
+    private boolean unsupported;
+
+    private RegexLiterals(String regex) {
+        this.regex = regex;
+    }
+
+    /**
+     * Returns literals that every match of {@code regex} contains, longest first. An empty list
+     * means nothing is known about the matches.
+     */
+    public static List<String> required(String regex) {
+        RegexLiterals parser = new RegexLiterals(regex);
+        List<String> literals = new ArrayList<>();
+        boolean alternation = parser.parseSequence(literals);
+        if (alternation || parser.unsupported || parser.pos < regex.length()) {
+            return Collections.emptyList();
+        }
+        literals.removeIf(literal -> !LiteralScanner.supports(literal));
+        literals.sort((a, b) -> Integer.compare(b.length(), a.length()));
+        return literals;
+    }
+
+    /**
+     * Parses a concatenation up to the closing parenthesis or the end of the regex and adds the
+     * literals it requires.
+     *
+     * @return whether the sequence contains an alternation, in which case nothing it added is required
+     */
+    private boolean parseSequence(List<String> required) {
+        List<String> literals = new ArrayList<>();
+        StringBuilder run = new StringBuilder();
+        boolean alternation = false;
+        while (pos < regex.length() && !unsupported) {
+            char c = regex.charAt(pos);
+            if (c == ')') {
+                break;
+            }
+            if (c == '|') {
+                alternation = true;
+                pos++;
+                flush(run, literals);
+                continue;
+            }
+
+            List<String> groupLiterals = new ArrayList<>();
+            String text = null;
+            boolean zeroWidth = false;
+            if (c == '^' || c == '$') {
+                pos++;
+                zeroWidth = true;
+            } else if (c == '\\') {
+                text = parseEscape();
+                if (ZERO_WIDTH.equals(text)) {
+                    text = null;
+                    zeroWidth = true;
+                }
+            } else if (c == '[') {
+                skipClass();
+            } else if (c == '(') {
+                parseGroup(groupLiterals);
+            } else if (c == '.') {
+                pos++;
+            } else if ("*+?{".indexOf(c) >= 0) {
+                // A quantifier without an atom, the regex is invalid anyway
+                unsupported = true;
+                break;
+            } else {
+                int codePoint = regex.codePointAt(pos);
+                pos += Character.charCount(codePoint);
+                text = new String(Character.toChars(codePoint));
+            }
+
+            int min = parseQuantifier();
+            if (min == 0) {
+                flush(run, literals);
+            } else if (text != null) {
+                run.append(text);
+                if (min != NO_QUANTIFIER) {
+                    // A repeated atom ends the run: what follows may come after any repetition
+                    flush(run, literals);
+                }
+            } else if (!zeroWidth) {
+                flush(run, literals);
+                literals.addAll(groupLiterals);
+            }
+        }
+        flush(run, literals);
+        if (!alternation) {
+            required.addAll(literals);
+        }
+        return alternation;
+    }
+
+    /**
+     * Parses an optional quantifier after an atom.
+     *
+     * @return the minimum number of repetitions, or {@link #NO_QUANTIFIER}
+     */
+    private int parseQuantifier() {
+        if (pos >= regex.length()) {
+            return NO_QUANTIFIER;
+        }
+        char c = regex.charAt(pos);
+        int min;
+        if (c == '*' || c == '?') {
+            min = 0;
+            pos++;
+        } else if (c == '+') {
+            min = 1;
+            pos++;
+        } else if (c == '{') {
+            int close = regex.indexOf('}', pos);
+            if (close < 0) {
+                unsupported = true;
+                return 0;
+            }
+            String bounds = regex.substring(pos + 1, close);
+            int comma = bounds.indexOf(',');
+            try {
+                min = Integer.parseInt((comma < 0 ? bounds : bounds.substring(0, comma)).trim());
+            } catch (NumberFormatException e) {
+                unsupported = true;
+                return 0;
+            }
+            pos = close + 1;
+        } else {
+            return NO_QUANTIFIER;
+        }
+        // Lazy and possessive modifiers do not change what must be matched
+        if (pos < regex.length() && (regex.charAt(pos) == '?' || regex.charAt(pos) == '+')) {
+            pos++;
+        }
+        return min;
+    }
+
+    private void parseGroup(List<String> groupLiterals) {
+        pos++; // (
+        if (regex.startsWith("?", pos)) {
+            if (regex.startsWith("?:", pos) || regex.startsWith("?>", pos)) {
+                pos += 2;
+            } else if (regex.startsWith("?<", pos) && pos + 2 < regex.length()
+                    && Character.isLetter(regex.charAt(pos + 2))) {
+                int close = regex.indexOf('>', pos);
+                if (close < 0) {
+                    unsupported = true;
+                    return;
+                }
+                pos = close + 1;
+            } else if (regex.startsWith("?=", pos) || regex.startsWith("?!", pos)
+                    || regex.startsWith("?<=", pos) || regex.startsWith("?<!", pos)) {
+                // Lookaround does not consume anything, its content is not part of the match
+                pos += regex.startsWith("?<", pos) ? 3 : 2;
+                parseSequence(new ArrayList<>());
+                expectClose();
+                return;
+            } else {
+                // Inline flags such as (?i) change how literals compare
+                unsupported = true;
+                return;
+            }
+        }
+        List<String> inner = new ArrayList<>();
+        if (!parseSequence(inner)) {
+            groupLiterals.addAll(inner);
+        }
+        expectClose();
+    }
+
+    private void expectClose() {
+        if (pos < regex.length() && regex.charAt(pos) == ')') {
+            pos++;
+        } else {
+            unsupported = true;
+        }
+    }
+
+    /**
+     * Parses an escape sequence.
+     *
+     * @return the literal text it stands for, {@link #ZERO_WIDTH} for assertions such as
+     * {@code \b}, or null for character classes and anything else that is not a fixed string
+     */
+    private String parseEscape() {
+        pos++; // backslash
+        if (pos >= regex.length()) {
+            unsupported = true;
+            return null;
+        }
+        char c = regex.charAt(pos);
+        if (c == 'Q') {
+            int end = regex.indexOf("\\E", pos + 1);
+            String quoted = regex.substring(pos + 1, end < 0 ? regex.length() : end);
+            pos = end < 0 ? regex.length() : end + 2;
+            return quoted.isEmpty() ? null : quoted;
+        }
+        pos++;
+        switch (c) {
+            case 't':
+                return "\t";
+            case 'f':
+                return "\f";
+            case 'a':
+                return "\u0007";
+            case 'e':
+                return "\u001B";
+            case 'p':
+            case 'P':
+            case 'N':
+                if (pos < regex.length() && regex.charAt(pos) == '{') {
+                    int close = regex.indexOf('}', pos);
+                    pos = close < 0 ? regex.length() : close + 1;
+                } else {
+                    pos++;
+                }
+                return null;
+            case 'k':
+                int close = regex.indexOf('>', pos);
+                pos = close < 0 ? regex.length() : close + 1;
+                return null;
+            case 'x':
+            case 'u':
+            case 'c':
+            case '0':
+                // Code point escapes; treated as unknown rather than decoded
+                skipEscapeDigits(c);
+                return null;
+            default:
+                if ("bBAzZG".indexOf(c) >= 0) {
+                    return ZERO_WIDTH;
+                }
+                // \d, \w, \s, back references and the like; punctuation stands for itself
+                return Character.isLetterOrDigit(c) ? null : String.valueOf(c);
+        }
+    }
+
+    private void skipEscapeDigits(char kind) {
+        if (kind == 'c') {
+            pos++;
+        } else if (kind == 'x' && pos < regex.length() && regex.charAt(pos) == '{') {
+            int close = regex.indexOf('}', pos);
+            pos = close < 0 ? regex.length() : close + 1;
+        } else {
+            int max = kind == 'x' ? 2 : kind == 'u' ? 4 : 3;
+            while (max-- > 0 && pos < regex.length() && Character.digit(regex.charAt(pos), 16) >= 0) {
+                pos++;
+            }
+        }
+    }
+
+    private void skipClass() {
+        pos++; // [
+        int depth = 1;
+        if (pos < regex.length() && regex.charAt(pos) == '^') {
+            pos++;
+        }
+        if (pos < regex.length() && regex.charAt(pos) == ']') {
+            pos++;
+        }
+        while (pos < regex.length() && depth > 0) {
+            char c = regex.charAt(pos++);
+            if (c == '\\') {
+                pos++;
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']') {
+                depth--;
+            }
+        }
+        if (depth > 0) {
+            unsupported = true;
+        }
+    }
+
+    private static void flush(StringBuilder run, List<String> literals) {
+        if (run.length() > 0) {
+            literals.add(run.toString());
+            run.setLength(0);
+        }
+    }
+}
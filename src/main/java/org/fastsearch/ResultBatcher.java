@@ -0,0 +1,77 @@
+package org.fastsearch;
+
+import javafx.animation.AnimationTimer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Hands search results from the engine's threads to a JavaFX list without flooding the FX queue.
+ *
+ * <p>Search threads append to a lock-free queue. On every animation pulse the queue is drained
+ * into the list with a single {@code addAll}, at most {@code maxPerFrame} items at a time, so a
+ * burst of results costs a few list changes per frame rather than one {@code runLater} per hit.
+ * All methods except the returned sink must be called on the FX thread.
+ */
+public class ResultBatcher {
+    public static final int DEFAULT_MAX_PER_FRAME = 1000;
+
+    private final List<FileResult> target;
+    private final int maxPerFrame;
+    private final AnimationTimer timer;
+    private ConcurrentLinkedQueue<FileResult> pending = new ConcurrentLinkedQueue<>();
+    private Runnable onDrained;
+
+    public ResultBatcher(List<FileResult> target, int maxPerFrame) {
+        this.target = target;
+        this.maxPerFrame = maxPerFrame;
+        this.timer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                drain();
+            }
+        };
+    }
+
+    /**
+     * Starts delivering a new search. Results still queued for an earlier search are dropped, and
+     * so is anything its threads add later.
+     *
+     * @return the callback to give the engine; safe to call from any thread
+     */
+    public Consumer<FileResult> begin() {
+        ConcurrentLinkedQueue<FileResult> queue = new ConcurrentLinkedQueue<>();
+        pending = queue;
+        onDrained = null;
+        timer.start();
+        return queue::add;
+    }
+
+    /**
+     * Keeps delivering at the usual pace until everything queued so far is in the list, then runs
+     * {@code onDrained} and stops.
+     */
+    public void finish(Runnable onDrained) {
+        this.onDrained = onDrained;
+        drain();
+    }
+
+    private void drain() {
+        List<FileResult> batch = new ArrayList<>();
+        FileResult result;
+        while (batch.size() < maxPerFrame && (result = pending.poll()) != null) {
+            batch.add(result);
+        }
+        if (!batch.isEmpty()) {
+            target.addAll(batch);
+        }
+        if (onDrained != null && pending.isEmpty()) {
+            timer.stop();
+            Runnable callback = onDrained;
+            onDrained = null;
+            callback.run();
+        }
+    }
+}
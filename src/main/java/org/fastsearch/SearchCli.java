@@ -0,0 +1,288 @@
+package org.fastsearch;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Runs a search from the command line with the same engine and settings as the application, but
+ * without loading JavaFX. Files are printed as they are found, as plain paths or as one JSON
+ * object per line, and the exit status follows grep: 0 if something was found, 1 if not, 2 on
+ * errors.
+ */
+public class SearchCli {
+    static final int FOUND = 0;
+    static final int NOT_FOUND = 1;
+    static final int ERROR = 2;
+
+    private static final String USAGE = """
+            Usage: fastsearch search [options] PATTERN [FOLDER]
+                   fastsearch search [options] -e TERM [-e TERM]... [FOLDER]
+
+            Searches the content of the files below FOLDER (default: the current folder).
+
+            Options:
+              -n, --name                 match file names instead of content
+              -E, --regex                PATTERN is a regular expression
+              -i, --ignore-case          ignore case
+              -e, --term TERM            find files containing any of the terms
+              -L, --files-without-match  list the files whose content does not match
+              -c, --count                only print how many files were found
+              -x, --ext EXT              only search files with this extension
+              -m, --max-count N          stop after N files
+                  --json                 print one JSON object per line
+                  --daemon               search through the background daemon if it is running
+              -h, --help                 show this help
+            """;
+
+    private final SearchRequest request = new SearchRequest();
+    private boolean json;
+    private boolean useDaemon;
+
+    public static void main(String[] args) {
+        int status = run(args, SearchConfig.load(), System.out, System.err, System.console() != null);
+        System.exit(status);
+    }
+
+    /**
+     * @param flushEachLine whether every line is written out at once, as for a terminal; otherwise
+     *                      output is buffered until the search ends
+     * @return the exit status
+     */
+    static int run(String[] args, SearchConfig config, OutputStream out, PrintStream err, boolean flushEachLine) {
+        SearchCli cli = new SearchCli();
+        try {
+            if (!cli.parse(args)) {
+                err.print(USAGE);
+                return args.length == 1 && isHelp(args[0]) ? FOUND : ERROR;
+            }
+        } catch (IllegalArgumentException e) {
+            err.println("fastsearch: " + e.getMessage());
+            err.print(USAGE);
+            return ERROR;
+        }
+        String folder = cli.request.getFolder();
+        if (!new File(folder).isDirectory()) {
+            err.println("fastsearch: " + folder + ": no such folder");
+            return ERROR;
+        }
+        PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+        try {
+            DaemonClient daemon = new DaemonClient(SearchDaemon.socketPath(config));
+            if ((cli.useDaemon || config.isUseDaemon()) && daemon.isRunning()) {
+                return cli.search(writer, flushEachLine, daemon::cancel,
+                        sink -> daemon.search(cli.request, sink, null));
+            }
+            try (SearchEngine engine = new SearchEngine(config)) {
+                return cli.search(writer, flushEachLine, engine::cancelSearch,
+                        sink -> cli.request.run(engine, sink, null));
+            }
+        } catch (PatternSyntaxException e) {
+            err.println("fastsearch: invalid regular expression: " + e.getDescription());
+            return ERROR;
+        } catch (IOException e) {
+            err.println("fastsearch: " + e.getMessage());
+            return ERROR;
+        } finally {
+            writer.flush();
+        }
+    }
+
+    private static boolean isHelp(String arg) {
+        return arg.equals("-h") || arg.equals("--help");
+    }
+
+    /**
+     * @return false if help was asked for or no pattern was given
+     */
+    private boolean parse(String[] args) {
+        List<String> positional = new ArrayList<>();
+        boolean ignoreCase = false;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "-n", "--name" -> request.setMode(SearchRequest.Mode.FILENAME);
+                case "-E", "--regex" -> request.setRegex(true);
+                case "-i", "--ignore-case" -> ignoreCase = true;
+                case "-e", "--term" -> request.getTerms().add(value(args, ++i, arg));
+                case "-L", "--files-without-match" -> request.setWithoutMatch(true);
+                case "-c", "--count" -> request.setCountOnly(true);
+                case "-x", "--ext" -> request.setExtension(value(args, ++i, arg));
+                case "-m", "--max-count" -> {
+                    int max;
+                    try {
+                        max = Integer.parseInt(value(args, ++i, arg));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("not a number: " + args[i]);
+                    }
+                    if (max <= 0) {
+                        throw new IllegalArgumentException("not a positive number: " + args[i]);
+                    }
+                    request.setMaxResults(max);
+                }
+                case "--json" -> json = true;
+                case "--daemon" -> useDaemon = true;
+                case "-h", "--help" -> {
+                    return false;
+                }
+                case "--" -> positional.addAll(List.of(args).subList(i + 1, args.length));
+                default -> {
+                    if (arg.startsWith("-") && arg.length() > 1) {
+                        throw new IllegalArgumentException("unknown option " + arg);
+                    }
+                    positional.add(arg);
+                }
+            }
+            if (arg.equals("--")) {
+                break;
+            }
+        }
+        boolean multiTerm = !request.getTerms().isEmpty();
+        boolean filenameSearch = request.getMode() == SearchRequest.Mode.FILENAME;
+        if (!multiTerm) {
+            if (positional.isEmpty()) {
+                return false;
+            }
+            request.setQuery(positional.remove(0));
+        }
+        if (positional.size() > 1) {
+            throw new IllegalArgumentException("only one folder can be searched");
+        }
+        request.setFolder(new File(positional.isEmpty() ? "." : positional.get(0)).getAbsolutePath());
+        request.setCaseSensitive(!ignoreCase);
+        if (multiTerm && (filenameSearch || request.isRegex() || request.isWithoutMatch() || request.isCountOnly())) {
+            throw new IllegalArgumentException("-e cannot be combined with -n, -E, -L or -c");
+        }
+        if (multiTerm) {
+            request.setMode(SearchRequest.Mode.MULTI_TERM);
+        }
+        if (filenameSearch && (request.isRegex() || request.isWithoutMatch() || request.isCountOnly())) {
+            throw new IllegalArgumentException("-E, -L and -c only apply to content searches");
+        }
+        return true;
+    }
+
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException(option + " needs a value");
+        }
+        return args[i];
+    }
+
+    /**
+     * Prints what {@code search} finds, wherever it runs.
+     */
+    private int search(PrintWriter writer, boolean flushEachLine, Runnable cancel, Search search) throws IOException {
+        AtomicBoolean found = new AtomicBoolean();
+        SearchCounts counts = search.run(hit -> {
+            found.set(true);
+            synchronized (writer) {
+                if (json) {
+                    printJson(hit, writer);
+                } else {
+                    writer.println(hit.path());
+                }
+                if (flushEachLine) {
+                    writer.flush();
+                }
+                // The reader went away, e.g. the output was piped into head
+                if (writer.checkError()) {
+                    cancel.run();
+                }
+            }
+        });
+        if (counts != null) {
+            printCounts(counts, writer);
+            return counts.getFiles() > 0 ? FOUND : NOT_FOUND;
+        }
+        return found.get() ? FOUND : NOT_FOUND;
+    }
+
+    @FunctionalInterface
+    private interface Search {
+        SearchCounts run(Consumer<SearchHit> resultCallback) throws IOException;
+    }
+
+    private void printCounts(SearchCounts counts, PrintWriter writer) {
+        if (!json) {
+            writer.println(counts.getFiles());
+            return;
+        }
+        try {
+            JsonWriter out = jsonWriter(writer);
+            out.beginObject();
+            out.name("files").value(counts.getFiles());
+            out.name("bytes").value(counts.getBytes());
+            out.name("roots").beginArray();
+            for (SearchCounts.RootCount root : counts.getRoots()) {
+                out.beginObject();
+                out.name("root").value(root.root());
+                out.name("files").value(root.files());
+                out.name("bytes").value(root.bytes());
+                out.endObject();
+            }
+            out.endArray();
+            out.endObject();
+        } catch (IOException e) {
+            // PrintWriter does not throw, errors show in checkError()
+        }
+        writer.println();
+    }
+
+    private static void printJson(SearchHit hit, PrintWriter writer) {
+        try {
+            JsonWriter out = jsonWriter(writer);
+            out.beginObject();
+            out.name("path").value(hit.path());
+            out.name("size").value(hit.size());
+            out.name("modified").value(Instant.ofEpochMilli(hit.lastModifiedMillis()).toString());
+            if (!hit.matchedTerms().isEmpty()) {
+                out.name("terms").beginArray();
+                for (String term : hit.matchedTerms()) {
+                    out.value(term);
+                }
+                out.endArray();
+            }
+            if (!hit.matchPositions().isEmpty()) {
+                out.name("matches").beginArray();
+                for (MatchPosition position : hit.matchPositions()) {
+                    out.beginObject();
+                    out.name("line").value(position.line());
+                    out.name("column").value(position.column());
+                    out.name("offset").value(position.offset());
+                    out.name("length").value(position.length());
+                    out.name("text").value(position.snippet());
+                    out.endObject();
+                }
+                out.endArray();
+            }
+            out.endObject();
+        } catch (IOException e) {
+            // PrintWriter does not throw, errors show in checkError()
+        }
+        writer.println();
+    }
+
+    /**
+     * JsonWriter has no buffer of its own and is not flushed, so output stays buffered in the
+     * PrintWriter.
+     */
+    private static JsonWriter jsonWriter(PrintWriter writer) {
+        JsonWriter out = new JsonWriter(writer);
+        out.setHtmlSafe(false);
+        return out;
+    }
+}
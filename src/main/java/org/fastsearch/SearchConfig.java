@@ -38,6 +38,11 @@ public class SearchConfig {
     private int windowHeight = 700;
     private int windowX = -1;
     private int windowY = -1;
+    private boolean indexEnabled = false;
+    private String indexDirectory = System.getProperty("user.home") + "/.fastsearch/index";
+    private boolean useDaemon = false;
+    private int parallelism = 0;
+    private int parallelScanThresholdMb = 256;
 
     public static SearchConfig load() {
         File configFile = new File(CONFIG_FILE);
@@ -178,6 +183,56 @@ public class SearchConfig {
         this.windowY = windowY;
     }
 
+    public boolean isIndexEnabled() {
+        return indexEnabled;
+    }
+
+    public void setIndexEnabled(boolean indexEnabled) {
+        this.indexEnabled = indexEnabled;
+    }
+
+    public String getIndexDirectory() {
+        return indexDirectory;
+    }
+
+    public void setIndexDirectory(String indexDirectory) {
+        this.indexDirectory = indexDirectory;
+    }
+
+    /**
+     * Whether searches are sent to a running {@link SearchDaemon} when there is one.
+     */
+    public boolean isUseDaemon() {
+        return useDaemon;
+    }
+
+    public void setUseDaemon(boolean useDaemon) {
+        this.useDaemon = useDaemon;
+    }
+
+    /**
+     * The number of threads walking directories, or 0 for one fewer than there are processors.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * The size in megabytes above which a file's content is read as chunks in parallel, or 0 to
+     * always read a file on one thread.
+     */
+    public int getParallelScanThresholdMb() {
+        return parallelScanThresholdMb;
+    }
+
+    public void setParallelScanThresholdMb(int parallelScanThresholdMb) {
+        this.parallelScanThresholdMb = parallelScanThresholdMb;
+    }
+
     // ============================================
     // SEARCH HISTORY
     // ============================================
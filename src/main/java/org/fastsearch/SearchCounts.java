@@ -0,0 +1,96 @@
+package org.fastsearch;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The outcome of a count-only search: how many files were counted and their total size, in all
+ * and for every search root. Counting a file only bumps two counters of its root, so a count
+ * holds the same memory however many files it covers.
+ */
+public class SearchCounts {
+    private final Path[] roots;
+    private final LongAdder[] files;
+    private final LongAdder[] bytes;
+
+    public SearchCounts(Collection<String> roots) {
+        this.roots = new Path[roots.size()];
+        this.files = new LongAdder[roots.size()];
+        this.bytes = new LongAdder[roots.size()];
+        int i = 0;
+        for (String root : roots) {
+            this.roots[i] = Paths.get(root);
+            this.files[i] = new LongAdder();
+            this.bytes[i] = new LongAdder();
+            i++;
+        }
+    }
+
+    /**
+     * Recreates counts that were taken elsewhere, e.g. by a {@link SearchDaemon}.
+     */
+    static SearchCounts of(List<RootCount> rootCounts) {
+        SearchCounts counts = new SearchCounts(rootCounts.stream().map(RootCount::root).toList());
+        for (int i = 0; i < rootCounts.size(); i++) {
+            counts.files[i].add(rootCounts.get(i).files());
+            counts.bytes[i].add(rootCounts.get(i).bytes());
+        }
+        return counts;
+    }
+
+    /**
+     * Counts {@code file} under the innermost root containing it; files outside every root are
+     * not counted.
+     */
+    void add(Path file, long size) {
+        int root = -1;
+        for (int i = 0; i < roots.length; i++) {
+            if (file.startsWith(roots[i]) && (root < 0 || roots[i].startsWith(roots[root]))) {
+                root = i;
+            }
+        }
+        if (root >= 0) {
+            files[root].increment();
+            bytes[root].add(size);
+        }
+    }
+
+    public long getFiles() {
+        long total = 0;
+        for (LongAdder count : files) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    public long getBytes() {
+        long total = 0;
+        for (LongAdder count : bytes) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the counts of every root, in the order the roots were searched.
+     */
+    public List<RootCount> getRoots() {
+        List<RootCount> counts = new ArrayList<>(roots.length);
+        for (int i = 0; i < roots.length; i++) {
+            counts.add(new RootCount(roots[i].toString(), files[i].sum(), bytes[i].sum()));
+        }
+        return counts;
+    }
+
+    @Override
+    public String toString() {
+        return getFiles() + " files, " + getBytes() + " bytes";
+    }
+
+    public record RootCount(String root, long files, long bytes) {
+    }
+}
@@ -0,0 +1,350 @@
+package org.fastsearch;
+
+import com.google.gson.Gson;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps a {@link SearchEngine} running in the background so its pools, indexes and caches stay
+ * warm between searches, and serves searches over a Unix domain socket.
+ *
+ * <p>Messages are JSON objects, one per line. A client connects, sends one {@link Message} and
+ * reads the replies. For a search these are the files found, status and progress updates, and a
+ * final {@code done} message; sending {@code cancel} or closing the connection cancels it. The
+ * engine runs one search at a time, later ones wait for it.
+ */
+public class SearchDaemon implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(SearchDaemon.class.getName());
+    static final String SOCKET_FILE = "daemon.sock";
+    private static final long FLUSH_INTERVAL_MILLIS = 100;
+
+    private final Path socketPath;
+    private final Gson gson = new Gson();
+    private final Object searchLock = new Object();
+    private final ExecutorService connections = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "daemon-connection");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "daemon-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private volatile SearchEngine engine;
+    private ServerSocketChannel server;
+    private boolean closed;
+
+    public SearchDaemon(SearchConfig config, Path socketPath) {
+        this.engine = new SearchEngine(config);
+        this.socketPath = socketPath;
+    }
+
+    /**
+     * Returns where the daemon for {@code config} listens.
+     */
+    public static Path socketPath(SearchConfig config) {
+        return Paths.get(config.getIndexDirectory(), SOCKET_FILE);
+    }
+
+    public static void main(String[] args) throws Exception {
+        SearchConfig config = SearchConfig.load();
+        Path socket = socketPath(config);
+        if (args.length > 0 && args[0].equals("stop")) {
+            new DaemonClient(socket).shutdown();
+            return;
+        }
+        try (SearchDaemon daemon = new SearchDaemon(config, socket)) {
+            daemon.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(daemon::close));
+            logger.info("Search daemon listening on " + socket);
+            daemon.awaitStop();
+        }
+    }
+
+    /**
+     * Starts listening. The socket's folder is made private to the user. Fails if another
+     * daemon already listens on the socket.
+     */
+    public synchronized void start() throws IOException {
+        if (Files.exists(socketPath)) {
+            if (new DaemonClient(socketPath).isRunning()) {
+                throw new IOException("A search daemon is already running on " + socketPath);
+            }
+            // Left behind by a daemon that did not shut down cleanly
+            Files.delete(socketPath);
+        }
+        Path folder = Files.createDirectories(socketPath.toAbsolutePath().getParent());
+        try {
+            // Only the user's own processes may search through the daemon. The folder is closed
+            // first, the socket exists with the umask's permissions until they are set below.
+            Files.setPosixFilePermissions(folder, PosixFilePermissions.fromString("rwx------"));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system, the folder's permissions apply
+        }
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socketPath));
+        try {
+            Files.setPosixFilePermissions(socketPath, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            // As above
+        }
+        ServerSocketChannel listening = server;
+        Thread acceptor = new Thread(() -> accept(listening), "daemon-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Waits until the daemon is closed or a client asked it to shut down.
+     */
+    public void awaitStop() throws InterruptedException {
+        stopped.await();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (server != null) {
+                server.close();
+                Files.deleteIfExists(socketPath);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to close the daemon socket", e);
+        }
+        connections.shutdownNow();
+        flusher.shutdownNow();
+        engine.cancelSearch();
+        synchronized (searchLock) {
+            engine.close();
+        }
+        stopped.countDown();
+    }
+
+    private void accept(ServerSocketChannel server) {
+        try {
+            while (true) {
+                SocketChannel channel = server.accept();
+                connections.execute(() -> serve(channel));
+            }
+        } catch (ClosedChannelException e) {
+            // The daemon was closed
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Search daemon stopped accepting connections", e);
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        try (channel;
+             BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8))) {
+            String line = in.readLine();
+            if (line == null) {
+                return;
+            }
+            Message request = gson.fromJson(line, Message.class);
+            if (request == null || request.type == null) {
+                send(out, Message.error("Message without a type"));
+                out.flush();
+                return;
+            }
+            switch (request.type) {
+                case Message.PING -> send(out, new Message(Message.PONG));
+                case Message.SEARCH -> search(request.request, in, out);
+                case Message.RELOAD -> {
+                    reload();
+                    send(out, new Message(Message.DONE));
+                }
+                case Message.SHUTDOWN -> {
+                    send(out, new Message(Message.DONE));
+                    out.flush();
+                    connections.execute(this::close);
+                }
+                default -> send(out, Message.error("Unknown message type " + request.type));
+            }
+            out.flush();
+        } catch (Exception e) {
+            logger.log(Level.FINE, "Daemon connection ended", e);
+        }
+    }
+
+    /**
+     * Runs a search, streaming its results while another thread watches the connection for a
+     * cancel message or for the client going away.
+     */
+    private void search(SearchRequest request, BufferedReader in, Writer out) throws IOException {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Thread watcher = new Thread(() -> {
+            try {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (Message.CANCEL.equals(gson.fromJson(line, Message.class).type)) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                // The connection was closed
+            }
+            cancelled.set(true);
+        }, "daemon-cancel-watch");
+        watcher.setDaemon(true);
+        watcher.start();
+
+        AtomicLong found = new AtomicLong();
+        Message done = new Message(Message.DONE);
+        synchronized (searchLock) {
+            SearchEngine engine = this.engine;
+            engine.setCancellation(cancelled::get);
+            SearchProgress previous = engine.getProgress();
+            SearchMetrics previousMetrics = engine.getMetrics();
+            // Results are flushed a few times per second, not once per file
+            ScheduledFuture<?> flushing = flusher.scheduleAtFixedRate(() -> {
+                sendProgress(engine, previous, out);
+                flush(out, cancelled);
+            }, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            try {
+                SearchCounts counts = request.run(engine, hit -> {
+                    found.incrementAndGet();
+                    Message message = new Message(Message.HIT);
+                    message.hit = hit;
+                    send(out, message);
+                }, status -> {
+                    Message message = new Message(Message.STATUS);
+                    message.status = status;
+                    send(out, message);
+                });
+                if (counts != null) {
+                    done.counts = counts.getRoots();
+                }
+            } catch (RuntimeException e) {
+                done = Message.error(e.getMessage() != null ? e.getMessage() : e.toString());
+            } finally {
+                flushing.cancel(false);
+            }
+            sendProgress(engine, previous, out);
+            SearchMetrics metrics = engine.getMetrics();
+            if (metrics != previousMetrics) {
+                done.metrics = metrics.getSummary();
+            }
+        }
+        done.found = found.get();
+        done.cancelled = cancelled.get();
+        send(out, done);
+        out.flush();
+    }
+
+    /**
+     * Sends the progress of the search, once the engine has started it.
+     */
+    private void sendProgress(SearchEngine engine, SearchProgress previous, Writer out) {
+        SearchProgress progress = engine.getProgress();
+        if (progress != previous) {
+            Message message = new Message(Message.PROGRESS);
+            message.progress = progress.getTotals();
+            send(out, message);
+        }
+    }
+
+    private void send(Writer out, Message message) {
+        String json = gson.toJson(message);
+        synchronized (out) {
+            try {
+                out.write(json);
+                out.write('\n');
+            } catch (IOException e) {
+                // The client went away, the watcher cancels the search
+            }
+        }
+    }
+
+    private static void flush(Writer out, AtomicBoolean cancelled) {
+        synchronized (out) {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                cancelled.set(true);
+            }
+        }
+    }
+
+    /**
+     * Replaces the engine with one using the settings saved on disk, e.g. after they were changed
+     * in the application. The match cache starts empty again.
+     */
+    private void reload() {
+        synchronized (searchLock) {
+            engine.close();
+            engine = new SearchEngine(SearchConfig.load());
+        }
+    }
+
+    /**
+     * A request or a reply. Only the fields of its type are set.
+     */
+    static class Message {
+        static final String PING = "ping";
+        static final String PONG = "pong";
+        static final String SEARCH = "search";
+        static final String CANCEL = "cancel";
+        static final String RELOAD = "reload";
+        static final String SHUTDOWN = "shutdown";
+        static final String HIT = "hit";
+        static final String STATUS = "status";
+        static final String PROGRESS = "progress";
+        static final String DONE = "done";
+        static final String ERROR = "error";
+
+        String type;
+        SearchRequest request;
+        SearchHit hit;
+        String status;
+        SearchProgress.Totals progress;
+        List<SearchCounts.RootCount> counts;
+        SearchMetrics.Summary metrics;
+        long found;
+        boolean cancelled;
+        String error;
+
+        Message(String type) {
+            this.type = type;
+        }
+
+        static Message error(String error) {
+            Message message = new Message(ERROR);
+            message.error = error;
+            return message;
+        }
+    }
+}
@@ -1,53 +1,145 @@
 package org.fastsearch;
 
-import javafx.concurrent.Task;
-
+import javax.management.JMException;
+import javax.management.ObjectName;
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class SearchEngine implements AutoCloseable {
     private static final Logger logger = Logger.getLogger(SearchEngine.class.getName());
     private static final int DEFAULT_PARALLELISM = Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
+    private static final String CONTENT_INDEX_FILE = "content.idx";
+    private static final String FILENAME_INDEX_FILE = "filenames.idx";
+    private static final String FILE_TYPE_CACHE_FILE = "filetypes.bin";
+    private static final ThreadLocal<byte[]> sniffBuffer =
+            ThreadLocal.withInitial(() -> new byte[LiteralScanner.HEAD_SIZE]);
+    private static final int CANDIDATE_BATCH_SIZE = 64;
+    private static final int FILENAME_BLOCK_BATCH_SIZE = 256;
+    // Reading is mostly waiting on the disk, so more reads than cores keep a local SSD busy
+    private static final int SCAN_PARALLELISM = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    private static final int SCAN_QUEUE_CAPACITY = 1024;
+    // A directory listing weighs on its device about as much as reading this much per entry
+    private static final long LISTED_ENTRY_BYTES = 1024;
+    // Matching lines reported per file; finding more means reading on past the first match
+    static final int MAX_MATCH_POSITIONS = 20;
+    private static final AtomicInteger engineIds = new AtomicInteger();
+    private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
     private final SearchConfig config;
-    private final List<PathMatcher> excludeMatchers;
+    private final ExcludeMatcher excludeMatcher;
     private final ForkJoinPool forkJoinPool;
-    private Task<?> searchTask;
+    private final ThreadPoolExecutor scanExecutor;
+    private final DeviceScheduler deviceScheduler = new DeviceScheduler(SCAN_PARALLELISM);
+    // Splits very large files so the traversal pool reads them in parallel, null if disabled
+    private final ParallelScan parallelScan;
+    private volatile ScanStage activeScanStage;
+    private volatile SearchProgress progress = new SearchProgress();
+    private volatile SearchMetrics metrics;
+    // The pools' threads, whose allocations are attributed to the search running on them
+    private final Set<Thread> engineThreads = ConcurrentHashMap.newKeySet();
+    private volatile BooleanSupplier cancellation;
+    private volatile boolean cancelRequested;
+    private TrigramIndex contentIndex;
+    private FilenameIndex filenameIndex;
+    private boolean indexesLoaded;
+    private IndexUpdater indexUpdater;
+    private volatile FileTypeCache fileTypeCache;
+    private final MatchCache matchCache = new MatchCache();
+    // Totals of the finished searches, for the MXBean
+    private final LongAdder searchCount = new LongAdder();
+    private final LongAdder totalFilesSeen = new LongAdder();
+    private final LongAdder totalBytesScanned = new LongAdder();
+    private final ObjectName objectName;
 
     public SearchEngine(SearchConfig config) {
         this.config = config;
-        this.excludeMatchers = new ArrayList<>();
-        for (String pattern : config.getExcludePatterns()) {
-            try {
-                excludeMatchers.add(FileSystems.getDefault().getPathMatcher("glob:**/" + pattern));
-            } catch (Exception e) {
-                logger.log(Level.WARNING, "Invalid exclude pattern: " + pattern, e);
-            }
+        this.excludeMatcher = new ExcludeMatcher(config.getExcludePatterns());
+        int parallelism = config.getParallelism() > 0 ? config.getParallelism() : DEFAULT_PARALLELISM;
+        this.forkJoinPool = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            engineThreads.add(thread);
+            return thread;
+        }, null, false);
+        AtomicInteger scanThreads = new AtomicInteger();
+        // Every device searched gets scan threads of its own, idle ones are retired after a minute
+        this.scanExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(r, "content-scan-" + scanThreads.incrementAndGet());
+            thread.setDaemon(true);
+            engineThreads.add(thread);
+            return thread;
+        });
+        this.parallelScan = config.getParallelScanThresholdMb() > 0
+                ? new ParallelScan(forkJoinPool, config.getParallelScanThresholdMb() * 1024L * 1024L, this::isSearchCancelled)
+                : null;
+        this.objectName = registerMXBean();
+    }
+
+    private ObjectName registerMXBean() {
+        try {
+            ObjectName name = new ObjectName("org.fastsearch:type=SearchEngine,id=" + engineIds.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Monitor(), name);
+            return name;
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Failed to register the search engine MXBean", e);
+            return null;
         }
-        this.forkJoinPool = new ForkJoinPool(DEFAULT_PARALLELISM);
     }
 
-    public void setSearchTask(Task<?> searchTask) {
-        this.searchTask = searchTask;
+    /**
+     * Returns the name of this engine's {@link SearchEngineMXBean}, or null if it is not registered.
+     */
+    ObjectName getObjectName() {
+        return objectName;
+    }
+
+    /**
+     * Sets what tells the engine that the search about to run was cancelled, e.g. a task's
+     * {@code isCancelled}. The search stops once it returns true or {@link #cancelSearch} is called.
+     */
+    public void setCancellation(BooleanSupplier cancellation) {
+        this.cancellation = cancellation;
+        this.cancelRequested = false;
     }
 
     public void cancelSearch() {
-        if (searchTask != null && !searchTask.isDone()) {
-            searchTask.cancel(true);
-        }
+        cancelRequested = true;
         // Don't shutdown the pool here, just cancel running tasks
         forkJoinPool.getQueuedSubmissionCount(); // This helps clear interrupted status
     }
@@ -62,93 +154,619 @@ public class SearchEngine implements AutoCloseable {
      */
     @Override
     public void close() {
+        synchronized (this) {
+            if (indexUpdater != null) {
+                indexUpdater.close();
+                indexUpdater = null;
+            }
+        }
         if (forkJoinPool != null && !forkJoinPool.isShutdown()) {
             forkJoinPool.shutdown();
         }
+        scanExecutor.shutdownNow();
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                // Already unregistered by an earlier close
+            }
+        }
+        FileTypeCache cache = fileTypeCache;
+        if (cache != null) {
+            try {
+                cache.save(getIndexFile(FILE_TYPE_CACHE_FILE));
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to save the file type cache", e);
+            }
+        }
     }
 
     public void searchFilenameRealtime(String query, String extension, String customFolder, SearchFilters filters,
-                                       int maxResults, boolean isCaseSensitive, Consumer<FileResult> resultCallback,
+                                       int maxResults, boolean isCaseSensitive, Consumer<SearchHit> resultCallback,
                                        Consumer<String> statusCallback) {
         // Clear any interrupted status from previous searches
         Thread.interrupted();
         Set<String> searchRoots = getSearchRoots(customFolder);
         String pattern = buildPattern(query);
         Pattern regex = Pattern.compile(pattern, isCaseSensitive ? 0 : Pattern.CASE_INSENSITIVE);
-        Collection<FileResult> allResults = new ConcurrentLinkedQueue<>();
 
-        SearchTask task = new SearchTask(searchRoots, regex, extension, filters, maxResults, resultCallback, allResults, true, statusCallback);
-        forkJoinPool.invoke(task);
+        SearchContext context = new SearchContext(regex, null, null, extension, filters, maxResults, resultCallback, true, statusCallback);
+        progress = context.progress;
+        beginSearch(context, "filename", query);
+        try {
+            // Roots covered by the filename index are answered from memory without touching the disk
+            FilenameIndex index = getFilenameIndex();
+            List<String> walkRoots = new ArrayList<>();
+            for (String root : searchRoots) {
+                if (index != null && index.covers(root)) {
+                    byte[] prefix = FilenameIndex.prefixOf(root);
+                    int[] range = index.blockRange(prefix);
+                    forkJoinPool.invoke(new FilenameIndexTask(index, prefix, range[0], range[1], true, context));
+                } else {
+                    walkRoots.add(root);
+                }
+            }
+            if (!walkRoots.isEmpty()) {
+                walk(walkRoots, context);
+            }
+        } finally {
+            endSearch(context);
+        }
     }
 
     public void searchContentRealtime(String text, String extension, String customFolder,
                                       SearchFilters filters, int maxResults, boolean isCaseSensitive,
-                                      boolean isRegex, Consumer<FileResult> resultCallback,
+                                      boolean isRegex, Consumer<SearchHit> resultCallback,
                                       Consumer<String> statusCallback) {
+        searchContent(getSearchRoots(customFolder), text, extension, filters, maxResults, isCaseSensitive, isRegex,
+                false, null, resultCallback, statusCallback);
+    }
+
+    /**
+     * Lists the files that do not contain {@code text}, e.g. sources lacking a license header.
+     * Every file has to be read, so the content index is not used.
+     */
+    public void searchContentWithoutMatch(String text, String extension, String customFolder,
+                                          SearchFilters filters, int maxResults, boolean isCaseSensitive,
+                                          boolean isRegex, Consumer<SearchHit> resultCallback,
+                                          Consumer<String> statusCallback) {
+        searchContent(getSearchRoots(customFolder), text, extension, filters, maxResults, isCaseSensitive, isRegex,
+                true, null, resultCallback, statusCallback);
+    }
+
+    /**
+     * Counts the files containing {@code text}, or with {@code withoutMatch} the files that do not,
+     * without building a {@link SearchHit} for any of them.
+     */
+    public SearchCounts countContent(String text, String extension, String customFolder, SearchFilters filters,
+                                     boolean isCaseSensitive, boolean isRegex, boolean withoutMatch,
+                                     Consumer<String> statusCallback) {
+        Set<String> searchRoots = getSearchRoots(customFolder);
+        SearchCounts counts = new SearchCounts(searchRoots);
+        searchContent(searchRoots, text, extension, filters, Integer.MAX_VALUE, isCaseSensitive, isRegex,
+                withoutMatch, counts, null, statusCallback);
+        return counts;
+    }
+
+    private void searchContent(Set<String> searchRoots, String text, String extension, SearchFilters filters,
+                               int maxResults, boolean isCaseSensitive, boolean isRegex, boolean withoutMatch,
+                               SearchCounts counts, Consumer<SearchHit> resultCallback,
+                               Consumer<String> statusCallback) {
         // Clear any interrupted status from previous searches
         Thread.interrupted();
-        Set<String> searchRoots = getSearchRoots(customFolder);
         String patternString = isRegex ? text : Pattern.quote(text);
         int flags = isCaseSensitive ? 0 : Pattern.CASE_INSENSITIVE;
         Pattern contentPattern = Pattern.compile(patternString, flags);
-        Collection<FileResult> allResults = new ConcurrentLinkedQueue<>();
 
-        SearchTask task = new SearchTask(searchRoots, contentPattern, extension, filters, maxResults, resultCallback, allResults, false, statusCallback);
-        forkJoinPool.invoke(task);
+        // Literal queries are matched on the raw bytes, skipping the decoding of every line. A regex
+        // only runs on the lines containing all the literals its matches require.
+        List<String> literals = isRegex ? RegexLiterals.required(text) : List.of(text);
+        LiteralScanner scanner = null;
+        if (!isRegex && LiteralScanner.supports(text)) {
+            scanner = new LiteralScanner(text, isCaseSensitive);
+        } else if (isRegex && !literals.isEmpty()) {
+            scanner = new LiteralScanner(literals, isCaseSensitive, contentPattern);
+        }
+
+        SearchContext context = new SearchContext(contentPattern, scanner, null, extension, filters, maxResults, resultCallback, false, statusCallback);
+        context.matchQuery = MatchCache.queryKey("content:" + flags + ":" + patternString);
+        context.withoutMatch = withoutMatch;
+        context.counts = counts;
+
+        // Roots covered by the content index only need their candidate files opened, unless the
+        // files that do not match are wanted
+        TrigramIndex index = withoutMatch ? null : getContentIndex();
+        List<String> walkRoots = new ArrayList<>();
+        List<String> candidates = new ArrayList<>();
+        for (String root : searchRoots) {
+            if (index != null && index.covers(root)) {
+                deviceScheduler.register(Paths.get(root));
+                candidates.addAll(index.candidatesForAll(root, literals));
+            } else {
+                walkRoots.add(root);
+            }
+        }
+
+        String mode = counts != null ? "count" : withoutMatch ? "content-without-match" : "content";
+        runContentSearch(context, mode, text, candidates, walkRoots);
+    }
+
+    /**
+     * Finds files containing any of {@code terms}, reading each file once however many terms there
+     * are. Every result lists the terms found in it.
+     */
+    public void searchContentMultiRealtime(List<String> terms, String extension, String customFolder,
+                                           SearchFilters filters, int maxResults, boolean isCaseSensitive,
+                                           Consumer<SearchHit> resultCallback, Consumer<String> statusCallback) {
+        // Clear any interrupted status from previous searches
+        Thread.interrupted();
+        Set<String> searchRoots = getSearchRoots(customFolder);
+        AhoCorasick automaton = new AhoCorasick(terms, isCaseSensitive);
+
+        SearchContext context = new SearchContext(null, null, automaton, extension, filters, maxResults,
+                resultCallback, false, statusCallback);
+        if (automaton.getTerms().size() <= MatchCache.MAX_TERMS) {
+            context.matchQuery = MatchCache.queryKey("multi:" + isCaseSensitive + ":" + String.join("\0", automaton.getTerms()));
+        }
+
+        // A file is a candidate if it may contain any one of the terms
+        TrigramIndex index = getContentIndex();
+        List<String> walkRoots = new ArrayList<>();
+        Set<String> candidates = new LinkedHashSet<>();
+        for (String root : searchRoots) {
+            if (index != null && index.covers(root)) {
+                deviceScheduler.register(Paths.get(root));
+                for (String term : automaton.getTerms()) {
+                    candidates.addAll(index.candidates(root, term));
+                }
+            } else {
+                walkRoots.add(root);
+            }
+        }
+
+        runContentSearch(context, "multi-term", String.join(", ", automaton.getTerms()), new ArrayList<>(candidates),
+                walkRoots);
+    }
+
+    /**
+     * Runs a content search as a pipeline: the fork/join pool enumerates directories and index
+     * candidates and hands files over to a {@link ScanStage}, whose own threads read them.
+     */
+    private void runContentSearch(SearchContext context, String mode, String query, List<String> candidates,
+                                  List<String> walkRoots) {
+        progress = context.progress;
+        beginSearch(context, mode, query);
+        ScanStage stage = new ScanStage(context);
+        context.scanStage = stage;
+        activeScanStage = stage;
+        try {
+            if (!candidates.isEmpty()) {
+                if (context.statusCallback != null) {
+                    context.statusCallback.accept("Checking " + candidates.size() + " indexed files");
+                }
+                forkJoinPool.invoke(new CandidateTask(candidates, 0, candidates.size(), context));
+            }
+            if (!walkRoots.isEmpty()) {
+                walk(walkRoots, context);
+            }
+        } finally {
+            stage.finish();
+            activeScanStage = null;
+            endSearch(context);
+        }
+    }
+
+    /**
+     * Walks {@code roots} with one task per device they live on, so every device is searched at
+     * the same time, each as fast as it allows.
+     */
+    private void walk(List<String> roots, SearchContext context) {
+        context.progress.directoriesFound(roots.size());
+        Map<DeviceScheduler.Device, List<String>> rootsByDevice = new LinkedHashMap<>();
+        for (String root : roots) {
+            rootsByDevice.computeIfAbsent(deviceScheduler.deviceOf(Paths.get(root)), d -> new ArrayList<>()).add(root);
+        }
+        List<SearchTask> tasks = new ArrayList<>();
+        rootsByDevice.forEach((device, deviceRoots) -> tasks.add(new SearchTask(deviceRoots, device, context)));
+        forkJoinPool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+    }
+
+    /**
+     * Starts the metrics and the flight recorder event of a search.
+     */
+    private void beginSearch(SearchContext context, String mode, String query) {
+        metrics = context.metrics;
+        context.metrics.start(searchThreads());
+        context.event.mode = mode;
+        context.event.query = query;
+        context.event.begin();
+    }
+
+    private void endSearch(SearchContext context) {
+        context.metrics.finish(searchThreads());
+        boolean cancelled = isSearchCancelled();
+        SearchProgress.Totals totals = context.progress.getTotals();
+        searchCount.increment();
+        totalFilesSeen.add(totals.filesSeen());
+        totalBytesScanned.add(totals.bytesScanned());
+        SearchEvents.SearchEvent event = context.event;
+        event.end();
+        if (event.shouldCommit()) {
+            event.filesSeen = totals.filesSeen();
+            event.bytesScanned = totals.bytesScanned();
+            event.filesMatched = totals.filesMatched();
+            event.cancelled = cancelled;
+            event.commit();
+        }
+        if (cancelled) {
+            SearchEvents.SearchCancelledEvent cancelledEvent = new SearchEvents.SearchCancelledEvent();
+            if (cancelledEvent.shouldCommit()) {
+                cancelledEvent.mode = event.mode;
+                cancelledEvent.query = event.query;
+                cancelledEvent.filesSeen = totals.filesSeen();
+                cancelledEvent.commit();
+            }
+        }
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Search metrics for " + event.mode + " search \"" + event.query + "\"\n"
+                    + context.metrics.getSummary().format());
+        }
+    }
+
+    /**
+     * Returns the threads a search may run on: the pools' threads and the caller.
+     */
+    private List<Thread> searchThreads() {
+        engineThreads.removeIf(thread -> !thread.isAlive());
+        List<Thread> threads = new ArrayList<>(engineThreads);
+        threads.add(Thread.currentThread());
+        return threads;
+    }
+
+    /**
+     * Returns the progress of the running search or index rebuild, or of the last one once it has
+     * finished. Meant to be sampled periodically.
+     */
+    public SearchProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * Returns the metrics of the running search, or of the last one once it has finished, or null
+     * before the first search.
+     */
+    public SearchMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the number of directory and candidate tasks waiting for a traversal thread.
+     */
+    public long getTraversalQueueDepth() {
+        return forkJoinPool.getQueuedTaskCount() + forkJoinPool.getQueuedSubmissionCount();
+    }
+
+    /**
+     * Returns the number of files waiting to have their content read by the running search.
+     */
+    public int getScanQueueDepth() {
+        ScanStage stage = activeScanStage;
+        return stage != null ? stage.depth() : 0;
+    }
+
+    /**
+     * Walks the search roots and rebuilds the persistent filename and content indexes from
+     * scratch. Searches below these roots are answered from the indexes until they are rebuilt.
+     *
+     * @return the number of indexed files
+     */
+    public int rebuildIndex(String customFolder, Consumer<String> statusCallback) throws IOException {
+        // Clear any interrupted status from previous searches
+        Thread.interrupted();
+        long started = System.currentTimeMillis();
+        Set<String> roots = getSearchRoots(customFolder);
+        TrigramIndex content = new TrigramIndex(roots, indexSignature());
+        Collection<String> files = new ConcurrentLinkedQueue<>();
+        SearchProgress indexProgress = new SearchProgress();
+        progress = indexProgress;
+        indexProgress.directoriesFound(roots.size());
+        forkJoinPool.invoke(new IndexTask(roots, content, files, indexProgress));
+        if (isSearchCancelled()) {
+            return 0;
+        }
+
+        if (statusCallback != null) {
+            statusCallback.accept("Saving index of " + files.size() + " files");
+        }
+
+        FilenameIndex filenames = FilenameIndex.build(roots, indexSignature(), files);
+        content.save(getIndexFile(CONTENT_INDEX_FILE));
+        filenames.save(getIndexFile(FILENAME_INDEX_FILE));
+        // Changes made during the walk may have been missed, the next reconcile starts before it
+        IndexUpdater.markUpToDate(getIndexFile(FILENAME_INDEX_FILE), started);
+        synchronized (this) {
+            contentIndex = content;
+            filenameIndex = filenames;
+            indexesLoaded = true;
+            startIndexUpdater(false);
+        }
+        logger.log(Level.INFO, "Indexed {0} files ({1} KB of path data)",
+                new Object[]{filenames.size(), filenames.encodedSize() / 1024});
+        return filenames.size();
+    }
+
+    private synchronized TrigramIndex getContentIndex() {
+        loadIndexes();
+        return config.isIndexEnabled() ? contentIndex : null;
+    }
+
+    private synchronized FilenameIndex getFilenameIndex() {
+        loadIndexes();
+        if (!config.isIndexEnabled()) {
+            return null;
+        }
+        return indexUpdater != null ? indexUpdater.getFilenameIndex() : filenameIndex;
+    }
+
+    private void loadIndexes() {
+        if (indexesLoaded || !config.isIndexEnabled()) {
+            return;
+        }
+        indexesLoaded = true;
+        Path contentFile = getIndexFile(CONTENT_INDEX_FILE);
+        Path filenameFile = getIndexFile(FILENAME_INDEX_FILE);
+        try {
+            if (Files.exists(contentFile)) {
+                TrigramIndex index = TrigramIndex.load(contentFile);
+                if (index.getSignature().equals(indexSignature())) {
+                    contentIndex = index;
+                } else {
+                    logger.info("Content index was built with different settings and is ignored until it is rebuilt");
+                }
+            }
+            if (Files.exists(filenameFile)) {
+                FilenameIndex index = FilenameIndex.load(filenameFile);
+                if (index.getSignature().equals(indexSignature())) {
+                    filenameIndex = index;
+                } else {
+                    logger.info("Filename index was built with different settings and is ignored until it is rebuilt");
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to load search index from " + config.getIndexDirectory(), e);
+        }
+        // Changes made while the application was not running are picked up by reconciling
+        startIndexUpdater(true);
+    }
+
+    /**
+     * Starts watching the indexed roots so both indexes follow changes on disk. Only called with
+     * the lock held, once a content and a filename index for the same roots are available.
+     */
+    private void startIndexUpdater(boolean reconcile) {
+        if (indexUpdater != null) {
+            indexUpdater.close();
+            indexUpdater = null;
+        }
+        if (contentIndex == null || filenameIndex == null || !contentIndex.getRoots().equals(filenameIndex.getRoots())) {
+            return;
+        }
+        try {
+            indexUpdater = new IndexUpdater(filenameIndex.getRoots(), contentIndex, filenameIndex,
+                    this::shouldExclude, this::isTextFile,
+                    getIndexFile(CONTENT_INDEX_FILE), getIndexFile(FILENAME_INDEX_FILE));
+            indexUpdater.start(reconcile);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Cannot watch indexed folders, the index is only updated on rebuild", e);
+        }
+    }
+
+    private Path getIndexFile(String name) {
+        return Paths.get(config.getIndexDirectory(), name);
+    }
+
+    /**
+     * The settings that decide which files end up in the index.
+     */
+    private String indexSignature() {
+        return "exclude=" + String.join("|", config.getExcludePatterns())
+                + ";text=" + String.join("|", config.getTextExtensions());
+    }
+
+    /**
+     * Lists the entries of one directory together with their attributes, which are read once per
+     * entry. Symbolic links report the attributes of their target unless it is a directory, so
+     * links to directories inside it are never followed; {@code dir} itself may be such a link.
+     *
+     * @throws IOException if the directory itself cannot be read; a missing directory is empty
+     */
+    private static void listDirectory(Path dir, EntryVisitor visitor) throws IOException {
+        if (!walkDirectory(dir, dir, visitor)) {
+            // The root is a link to a directory; "." inside it is the directory itself
+            walkDirectory(dir, dir.resolve("."), visitor);
+        }
+    }
+
+    /**
+     * @return false if {@code walked} turned out to be a symbolic link
+     */
+    private static boolean walkDirectory(Path dir, Path walked, EntryVisitor visitor) throws IOException {
+        boolean[] isLink = new boolean[1];
+        Files.walkFileTree(walked, EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (file.equals(walked)) {
+                    // The root is not a directory, or a link that may point to one
+                    isLink[0] = attrs.isSymbolicLink() && Files.isDirectory(walked);
+                    return FileVisitResult.TERMINATE;
+                }
+                if (attrs.isSymbolicLink()) {
+                    BasicFileAttributes target = readAttributes(file);
+                    if (target != null && !target.isDirectory()) {
+                        attrs = target;
+                    }
+                }
+                Path entry = walked == dir ? file : dir.resolve(file.getFileName());
+                return visitor.visit(entry, attrs) ? FileVisitResult.CONTINUE : FileVisitResult.TERMINATE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                if (file.equals(walked) && !(e instanceof NoSuchFileException)) {
+                    throw e;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return !isLink[0];
+    }
+
+    /**
+     * Returns the attributes of {@code file}, following a symbolic link if its target exists, or
+     * null if the file does not exist.
+     */
+    private static BasicFileAttributes readAttributes(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            try {
+                // A dangling link still shows up in the results, as the file it is
+                return Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException notFound) {
+                return null;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface EntryVisitor {
+        /**
+         * @return false to stop listing the directory
+         */
+        boolean visit(Path entry, BasicFileAttributes attrs);
+    }
+
+    private boolean isSearchCancelled() {
+        BooleanSupplier cancellation = this.cancellation;
+        return cancelRequested || cancellation != null && cancellation.getAsBoolean();
     }
 
     private boolean isTextFile(Path file) {
+        return isTextFile(file, readAttributes(file));
+    }
+
+    /**
+     * Decides whether a file holds text, first by its extension, then by what an earlier sniff
+     * found at the same size and modification time, and only then by reading its first bytes.
+     */
+    boolean isTextFile(Path file, BasicFileAttributes attrs) {
+        int known = knownFileType(file, attrs);
+        if (known != FileTypeCache.UNKNOWN) {
+            return known == 1;
+        }
+        boolean isText = sniffText(file);
+        if (attrs != null) {
+            rememberFileType(file, attrs, isText);
+        }
+        return isText;
+    }
+
+    /**
+     * Classifies a file without opening it.
+     *
+     * @return 1 for text, 0 for binary, or {@link FileTypeCache#UNKNOWN} if it has to be sniffed
+     */
+    private int knownFileType(Path file, BasicFileAttributes attrs) {
         String name = file.getFileName().toString().toLowerCase();
 
         // Check file extension first
         for (String ext : config.getTextExtensions()) {
             if (name.endsWith(ext.toLowerCase())) {
-                return true;
+                return 1;
             }
         }
 
-        // Content sniffing: check for NUL bytes in the first KB
-        byte[] buffer = new byte[1024];
+        if (attrs == null) {
+            return FileTypeCache.UNKNOWN;
+        }
+        return getFileTypeCache().lookup(file.toString(), attrs.size(), attrs.lastModifiedTime().toMillis());
+    }
+
+    private void rememberFileType(Path file, BasicFileAttributes attrs, boolean isText) {
+        getFileTypeCache().put(file.toString(), attrs.size(), attrs.lastModifiedTime().toMillis(), isText);
+    }
+
+    /**
+     * Reads the start of a file to tell whether it holds text. A file that cannot be read counts
+     * as binary.
+     */
+    private static boolean sniffText(Path file) {
+        byte[] buffer = sniffBuffer.get();
         try (InputStream is = Files.newInputStream(file)) {
-            int bytesRead = is.read(buffer);
-            for (int i = 0; i < bytesRead; i++) {
-                if (buffer[i] == 0) { // NUL byte indicates binary
-                    return false;
-                }
-            }
-            return true; // No NUL bytes found, likely a text file
+            int bytesRead = is.readNBytes(buffer, 0, buffer.length);
+            return isTextHead(ByteBuffer.wrap(buffer, 0, bytesRead));
         } catch (IOException e) {
-            // Log this, but assume it's not a text file if we can't read it
-            logger.log(Level.WARNING, "Error sniffing file content for " + file + ": " + e.getMessage(), e);
+            // Unreadable files are common (permissions, files in use), the reason is enough
+            logger.log(Level.FINE, "Cannot sniff {0}: {1}", new Object[]{file, e.toString()});
             return false;
         }
+    }
 
+    /**
+     * Returns the CPU time of the current thread, or 0 if the JVM does not measure it, in which
+     * case all of a read's time is put down to its device.
+     */
+    private static long currentThreadCpuNanos() {
+        return threadBean.isCurrentThreadCpuTimeSupported() ? threadBean.getCurrentThreadCpuTime() : 0;
     }
 
-    private boolean searchInFile(Path file, Pattern pattern) {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (pattern.matcher(line).find()) {
-                    return true;
+    /**
+     * Content sniffing: a NUL byte in the first KB marks a binary file.
+     */
+    private static boolean isTextHead(ByteBuffer head) {
+        for (int i = head.position(); i < head.limit(); i++) {
+            if (head.get(i) == 0) { // NUL byte indicates binary
+                return false;
+            }
+        }
+        return true; // No NUL bytes found, likely a text file
+    }
+
+    /**
+     * Returns the text/binary classification cache, loading it from the index directory the
+     * first time it is needed.
+     */
+    private FileTypeCache getFileTypeCache() {
+        FileTypeCache cache = fileTypeCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = fileTypeCache;
+                if (cache == null) {
+                    cache = loadFileTypeCache();
+                    fileTypeCache = cache;
                 }
             }
-        } catch (Exception e) {
-            // File not readable, binary, or other issue
         }
-        return false;
+        return cache;
     }
 
-    private boolean shouldExclude(Path path) {
-        for (PathMatcher matcher : excludeMatchers) {
-            if (matcher.matches(path)) {
-                return true;
+    private FileTypeCache loadFileTypeCache() {
+        Path file = getIndexFile(FILE_TYPE_CACHE_FILE);
+        if (Files.exists(file)) {
+            try {
+                return FileTypeCache.load(file);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Ignoring unreadable file type cache " + file, e);
             }
         }
-        return false;
+        return new FileTypeCache();
+    }
+
+    private boolean shouldExclude(Path path) {
+        return excludeMatcher.test(path);
     }
 
-    private String buildPattern(String query) {
+    static String buildPattern(String query) {
         if (query.contains("*") || query.contains("?")) {
             return query.replace(".", "\\.")
                     .replace("*", ".*")
@@ -197,107 +815,815 @@ public class SearchEngine implements AutoCloseable {
         return roots;
     }
 
-    private class SearchTask extends RecursiveAction {
-        private final Collection<String> roots;
+    /**
+     * The engine as seen through JMX.
+     */
+    private class Monitor implements SearchEngineMXBean {
+        @Override
+        public int getParallelism() {
+            return forkJoinPool.getParallelism();
+        }
+
+        @Override
+        public int getPoolSize() {
+            return forkJoinPool.getPoolSize();
+        }
+
+        @Override
+        public int getActiveThreadCount() {
+            return forkJoinPool.getActiveThreadCount();
+        }
+
+        @Override
+        public int getRunningThreadCount() {
+            return forkJoinPool.getRunningThreadCount();
+        }
+
+        @Override
+        public long getStealCount() {
+            return forkJoinPool.getStealCount();
+        }
+
+        @Override
+        public long getQueuedTaskCount() {
+            return forkJoinPool.getQueuedTaskCount();
+        }
+
+        @Override
+        public int getQueuedSubmissionCount() {
+            return forkJoinPool.getQueuedSubmissionCount();
+        }
+
+        @Override
+        public int getScanThreadCount() {
+            return scanExecutor.getPoolSize();
+        }
+
+        @Override
+        public int getScanQueueDepth() {
+            return SearchEngine.this.getScanQueueDepth();
+        }
+
+        @Override
+        public Map<String, Integer> getDeviceLimits() {
+            return deviceScheduler.getLimits();
+        }
+
+        @Override
+        public boolean isSearching() {
+            SearchMetrics current = metrics;
+            return current != null && !current.isFinished();
+        }
+
+        @Override
+        public double getFilesPerSecond() {
+            return isSearching() ? progress.getFilesPerSecond() : 0;
+        }
+
+        @Override
+        public double getBytesPerSecond() {
+            return isSearching() ? progress.getBytesPerSecond() : 0;
+        }
+
+        @Override
+        public long getSearchCount() {
+            return searchCount.sum();
+        }
+
+        @Override
+        public long getTotalFilesSeen() {
+            return totalFilesSeen.sum();
+        }
+
+        @Override
+        public long getTotalBytesScanned() {
+            return totalBytesScanned.sum();
+        }
+
+        @Override
+        public double getMatchCacheHitRate() {
+            return hitRate(matchCache.getHits(), matchCache.getMisses());
+        }
+
+        @Override
+        public double getFileTypeCacheHitRate() {
+            // Not loaded before the first file needed sniffing
+            FileTypeCache cache = fileTypeCache;
+            return cache != null ? hitRate(cache.getHits(), cache.getMisses()) : 0;
+        }
+
+        private static double hitRate(long hits, long misses) {
+            return hits + misses > 0 ? (double) hits / (hits + misses) : 0;
+        }
+
+        @Override
+        public void cancelSearch() {
+            SearchEngine.this.cancelSearch();
+        }
+
+        @Override
+        public void resizeParallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+            }
+            int previous = forkJoinPool.setParallelism(parallelism);
+            logger.log(Level.INFO, "Search parallelism changed from {0} to {1}", new Object[]{previous, parallelism});
+        }
+    }
+
+    /**
+     * State shared by all tasks of a single search.
+     */
+    private class SearchContext {
         private final Pattern pattern;
+        private final LiteralScanner scanner;
+        private final PatternScanner patternScanner;
+        private final AhoCorasick automaton;
         private final String extension;
         private final SearchFilters filters;
         private final int maxResults;
-        private final Consumer<FileResult> resultCallback;
-        private final Collection<FileResult> allResults;
+        private final Consumer<SearchHit> resultCallback;
+        private final AtomicInteger resultCount = new AtomicInteger();
+        private final SearchProgress progress = new SearchProgress();
+        private final SearchMetrics metrics = new SearchMetrics();
+        private final SearchEvents.SearchEvent event = new SearchEvents.SearchEvent();
         private final boolean isFilenameSearch;
         private final Consumer<String> statusCallback;
+        private ScanStage scanStage;
+        // Key of the query in the match cache, or 0 if its results are not cached
+        private long matchQuery;
+        // Whether the files that do not match are reported instead of those that do
+        private boolean withoutMatch;
+        // Set for a count-only search, which counts files instead of reporting them
+        private SearchCounts counts;
 
-        SearchTask(Collection<String> roots, Pattern pattern, String extension, SearchFilters filters, int maxResults,
-                   Consumer<FileResult> resultCallback, Collection<FileResult> allResults, boolean isFilenameSearch, Consumer<String> statusCallback) {
-            this.roots = roots;
+        SearchContext(Pattern pattern, LiteralScanner scanner, AhoCorasick automaton, String extension,
+                      SearchFilters filters, int maxResults, Consumer<SearchHit> resultCallback,
+                      boolean isFilenameSearch, Consumer<String> statusCallback) {
             this.pattern = pattern;
+            this.scanner = scanner;
+            this.patternScanner = scanner == null && automaton == null && !isFilenameSearch
+                    ? new PatternScanner(pattern) : null;
+            this.automaton = automaton;
             this.extension = extension;
             this.filters = filters;
             this.maxResults = maxResults;
             this.resultCallback = resultCallback;
-            this.allResults = allResults;
             this.isFilenameSearch = isFilenameSearch;
             this.statusCallback = statusCallback;
         }
 
+        boolean isDone() {
+            return Thread.currentThread().isInterrupted() || isSearchCancelled() || resultCount.get() >= maxResults;
+        }
+
+        void processFile(Path file, BasicFileAttributes attrs, DeviceScheduler.Device device) {
+            if (isDone()) {
+                return;
+            }
+
+            // Checked first, a file outside the size or date range is never opened
+            if (!matchesFilters(attrs)) return;
+
+            if (isExcluded(file)) return;
+
+            if (extension != null && !extension.isEmpty()) {
+                if (!file.getFileName().toString().toLowerCase().endsWith("." + extension.toLowerCase())) {
+                    return;
+                }
+            }
+
+            if (isFilenameSearch) {
+                long start = System.nanoTime();
+                boolean matches = pattern.matcher(file.getFileName().toString()).find();
+                metrics.add(SearchMetrics.Phase.MATCHING, System.nanoTime() - start);
+                if (matches) {
+                    addResult(file, attrs, Collections.emptyList());
+                }
+            } else {
+                // A file unchanged since the query last saw it is answered without opening it
+                long cached = matchQuery != 0
+                        ? matchCache.lookup(matchQuery, file.toString(), attrs.size(), attrs.lastModifiedTime().toMillis())
+                        : MatchCache.UNKNOWN;
+                // A cached match is only complete with where it is, if the search shows that
+                List<MatchPosition> positions = cached > 0 && reportsPositions()
+                        ? matchCache.positions(matchQuery, file.toString(), attrs.size(), attrs.lastModifiedTime().toMillis())
+                        : Collections.emptyList();
+                if (cached == MatchCache.UNKNOWN || positions == null) {
+                    long start = System.nanoTime();
+                    scanStage.submit(file, attrs, device);
+                    metrics.add(SearchMetrics.Phase.HANDOFF, System.nanoTime() - start);
+                } else {
+                    report(file, attrs, cached != 0, termsOf(cached), positions);
+                }
+            }
+        }
+
+        /**
+         * Returns whether the search reports where files match, not only which do.
+         */
+        private boolean reportsPositions() {
+            return automaton == null && counts == null && !withoutMatch;
+        }
+
+        /**
+         * Waits until {@code device} allows another read. The fork/join pool may start a spare
+         * thread meanwhile, so the other devices keep being walked.
+         *
+         * @return false if the search ended first
+         */
+        boolean acquire(DeviceScheduler.Device device) {
+            long start = System.nanoTime();
+            try {
+                return device.tryAcquire(0) || await(device::tryAcquire);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                metrics.add(SearchMetrics.Phase.THROTTLING, System.nanoTime() - start);
+            }
+        }
+
+        /**
+         * Retries {@code attempt} until it succeeds or the search ends. The fork/join pool may
+         * start a spare thread meanwhile, which keeps it running the tasks a scan thread may be
+         * waiting for, like the chunks of a large file.
+         *
+         * @return false if the search ended first
+         */
+        boolean await(ManagedWait.Attempt attempt) {
+            ManagedWait wait = new ManagedWait(attempt, this);
+            try {
+                ForkJoinPool.managedBlock(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return wait.succeeded;
+        }
+
+        boolean isExcluded(Path path) {
+            long start = System.nanoTime();
+            boolean excluded = shouldExclude(path);
+            metrics.add(SearchMetrics.Phase.EXCLUSION, System.nanoTime() - start);
+            return excluded;
+        }
+
+        private List<String> termsOf(long mask) {
+            if (automaton == null) {
+                return Collections.emptyList();
+            }
+            List<String> terms = new ArrayList<>();
+            for (int i = 0; i < automaton.getTerms().size(); i++) {
+                if ((mask & 1L << i) != 0) {
+                    terms.add(automaton.getTerms().get(i));
+                }
+            }
+            return terms;
+        }
+
+        private long maskOf(List<String> matchedTerms, boolean matches) {
+            if (automaton == null) {
+                return matches ? 1 : 0;
+            }
+            long mask = 0;
+            for (int i = 0; i < automaton.getTerms().size(); i++) {
+                if (matchedTerms.contains(automaton.getTerms().get(i))) {
+                    mask |= 1L << i;
+                }
+            }
+            return mask;
+        }
+
+        /**
+         * Reads a file handed over by the traversal and adds it if its content matches.
+         */
+        void scanFile(Path file, BasicFileAttributes attrs, DeviceScheduler.Device device) {
+            long start = System.nanoTime();
+            int known = knownFileType(file, attrs);
+            long classified = System.nanoTime();
+            metrics.add(SearchMetrics.Phase.SNIFFING, classified - start);
+            if (known == 0) {
+                return;
+            }
+            // An unclassified file is sniffed on the first bytes the search reads, not opened twice
+            boolean[] isBinary = new boolean[1];
+            long[] sniffNanos = new long[1];
+            Predicate<ByteBuffer> headCheck = known == 1 ? null : head -> {
+                long sniffStart = System.nanoTime();
+                boolean isText = isTextHead(head);
+                rememberFileType(file, attrs, isText);
+                isBinary[0] = !isText;
+                sniffNanos[0] = System.nanoTime() - sniffStart;
+                metrics.add(SearchMetrics.Phase.SNIFFING, sniffNanos[0]);
+                return isText;
+            };
+            if (!acquire(device)) {
+                return;
+            }
+            long reading = System.nanoTime();
+            long readingCpu = currentThreadCpuNanos();
+            SearchEvents.FileScanEvent scanEvent = new SearchEvents.FileScanEvent();
+            scanEvent.begin();
+            List<String> matchedTerms = Collections.emptyList();
+            List<MatchPosition> positions = Collections.emptyList();
+            boolean matches;
+            // Chunks of one file read at once would make a spinning disk seek between them and add
+            // to what a network share is sent; a local device gets no more at once than it allows
+            ParallelScan chunks = parallelScan != null && device.getKind() == DeviceScheduler.Kind.LOCAL
+                    && parallelScan.isLarge(attrs.size()) ? parallelScan.withParallelism(device.getLimit()) : null;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (automaton != null) {
+                    matchedTerms = automaton.matchedTerms(channel, headCheck);
+                    matches = !matchedTerms.isEmpty();
+                } else if (counts != null || withoutMatch) {
+                    // Where the matches are is not reported, the first one settles it
+                    matches = scanner != null
+                            ? scanner.matches(channel, headCheck, chunks)
+                            : !patternScanner.findMatches(channel, headCheck, 1, chunks).isEmpty();
+                } else {
+                    positions = scanner != null
+                            ? scanner.findMatches(channel, headCheck, MAX_MATCH_POSITIONS, chunks)
+                            : patternScanner.findMatches(channel, headCheck, MAX_MATCH_POSITIONS, chunks);
+                    matches = !positions.isEmpty();
+                }
+            } catch (Exception e) {
+                // File not readable, changed while it was scanned, not valid text, or the search was cancelled
+                return;
+            } finally {
+                scanEvent.end();
+                long end = System.nanoTime();
+                if (chunks != null) {
+                    // Waiting for the chunks includes the time they spent matching
+                    device.release();
+                } else {
+                    // What the thread did not spend on the CPU, it spent waiting for the device
+                    long cpu = currentThreadCpuNanos() - readingCpu;
+                    device.release(Math.max(0, end - reading - cpu), attrs.size());
+                }
+                metrics.add(SearchMetrics.Phase.MATCHING, end - reading - sniffNanos[0]);
+            }
+            if (isBinary[0]) {
+                return;
+            }
+            if (scanEvent.shouldCommit()) {
+                scanEvent.file = file.toString();
+                scanEvent.bytes = attrs.size();
+                scanEvent.matched = matches;
+                scanEvent.commit();
+            }
+            progress.bytesScanned(attrs.size());
+            if (isSearchCancelled()) {
+                // The scan may have stopped short of a match, its answer is neither kept nor reported
+                return;
+            }
+            if (matchQuery != 0) {
+                matchCache.put(matchQuery, file.toString(), attrs.size(), attrs.lastModifiedTime().toMillis(),
+                        maskOf(matchedTerms, matches), positions);
+            }
+            report(file, attrs, matches, matchedTerms, positions);
+        }
+
+        /**
+         * Reports or counts a text file whose content was checked, if it is one the search is after.
+         */
+        private void report(Path file, BasicFileAttributes attrs, boolean matches, List<String> matchedTerms,
+                            List<MatchPosition> positions) {
+            if (matches == withoutMatch) {
+                return;
+            }
+            if (counts != null) {
+                counts.add(file, attrs.size());
+                progress.fileMatched();
+            } else {
+                addResult(file, attrs, matchedTerms, positions);
+            }
+        }
+
+        boolean matchesFilters(BasicFileAttributes attrs) {
+            return filters.matches(attrs.size(), attrs.lastModifiedTime().toMillis());
+        }
+
+        /**
+         * Reports a file that passed the filters and matched the query.
+         */
+        void addResult(Path file, BasicFileAttributes attrs, List<String> matchedTerms) {
+            addResult(file, attrs, matchedTerms, Collections.emptyList());
+        }
+
+        void addResult(Path file, BasicFileAttributes attrs, List<String> matchedTerms, List<MatchPosition> positions) {
+            try {
+                SearchHit result = new SearchHit(file.toString(), attrs.size(), attrs.lastModifiedTime().toMillis(),
+                        matchedTerms, positions);
+                // Claim a slot first, several scan threads may find a match at the same time
+                if (resultCount.incrementAndGet() <= maxResults) {
+                    progress.fileMatched();
+                    long start = System.nanoTime();
+                    resultCallback.accept(result);
+                    metrics.add(SearchMetrics.Phase.DELIVERY, System.nanoTime() - start);
+                }
+            } catch (Exception e) {
+                if (!isSearchCancelled()) {
+                    logger.log(Level.SEVERE, "Error processing " + file + ": " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Walks directories on one device. The device's limit covers reading a directory, not
+     * handling its entries, which may wait for the scan threads reading from the same device.
+     */
+    private class SearchTask extends RecursiveAction {
+        private final Collection<String> roots;
+        private final DeviceScheduler.Device device;
+        private final SearchContext context;
+
+        SearchTask(Collection<String> roots, DeviceScheduler.Device device, SearchContext context) {
+            this.roots = roots;
+            this.device = device;
+            this.context = context;
+        }
+
         @Override
         protected void compute() {
             if (Thread.currentThread().isInterrupted() || isSearchCancelled()) {
                 return;
             }
             List<SearchTask> tasks = new ArrayList<>();
+            int[] fileCount = new int[1];
             for (String root : roots) {
-                if (statusCallback != null) {
-                    statusCallback.accept("Searching in: " + root);
-                }
-                File rootDir = new File(root);
-                if (rootDir.exists() && rootDir.isDirectory()) {
-                    try (DirectoryStream<Path> stream = Files.newDirectoryStream(rootDir.toPath())) {
-                        for (Path path : stream) {
-                            if (Thread.currentThread().isInterrupted() || isSearchCancelled() || allResults.size() >= maxResults) {
-                                return;
-                            }
-
-                            if (Files.isDirectory(path) && !Files.isSymbolicLink(path)) {
-                                if (!shouldExclude(path)) {
-                                    SearchTask task = new SearchTask(Collections.singleton(path.toString()), pattern, extension, filters, maxResults, resultCallback, allResults, isFilenameSearch, statusCallback);
-                                    tasks.add(task);
-                                }
-                            } else {
-                                processFile(path);
-                            }
+                context.progress.directoryVisited(root);
+                if (!context.acquire(device)) {
+                    break;
+                }
+                // The event covers reading the directory, like the listing phase, not handling its entries
+                SearchEvents.DirectoryListingEvent event = new SearchEvents.DirectoryListingEvent();
+                event.begin();
+                long start = System.nanoTime();
+                List<FileEntry> entries = new ArrayList<>();
+                try {
+                    listDirectory(Paths.get(root), (path, attrs) -> {
+                        if (context.isDone()) {
+                            return false;
                         }
-                    } catch (IOException e) {
-                        if (!isSearchCancelled()) {
-                            logger.log(Level.SEVERE, "Error reading directory: " + root, e);
+                        entries.add(new FileEntry(path, attrs));
+                        return true;
+                    });
+                } catch (IOException e) {
+                    if (!isSearchCancelled()) {
+                        logger.log(Level.SEVERE, "Error reading directory: " + root, e);
+                    }
+                } finally {
+                    long nanos = System.nanoTime() - start;
+                    device.release(nanos, entries.size() * LISTED_ENTRY_BYTES);
+                    context.metrics.add(SearchMetrics.Phase.LISTING, nanos);
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.directory = root;
+                        event.entries = entries.size();
+                        event.commit();
+                    }
+                }
+                for (FileEntry entry : entries) {
+                    if (context.isDone()) {
+                        break;
+                    }
+                    if (entry.attrs().isDirectory()) {
+                        if (!context.isExcluded(entry.file())) {
+                            tasks.add(new SearchTask(Collections.singleton(entry.file().toString()), device, context));
                         }
+                    } else {
+                        fileCount[0]++;
+                        context.processFile(entry.file(), entry.attrs(), device);
                     }
                 }
             }
-            invokeAll(tasks);
+            context.progress.filesSeen(fileCount[0]);
+            if (!context.isDone()) {
+                context.progress.directoriesFound(tasks.size());
+                invokeAll(tasks);
+            }
         }
+    }
 
-        private void processFile(Path file) {
-            if (Thread.currentThread().isInterrupted() || isSearchCancelled() || allResults.size() >= maxResults) {
-                return;
+    /**
+     * Waits in steps of 50 ms, in a way the fork/join pool can make up for.
+     */
+    private static class ManagedWait implements ForkJoinPool.ManagedBlocker {
+        private final Attempt attempt;
+        private final SearchContext context;
+        private boolean succeeded;
+
+        interface Attempt {
+            boolean tryFor(long millis) throws InterruptedException;
+        }
+
+        ManagedWait(Attempt attempt, SearchContext context) {
+            this.attempt = attempt;
+            this.context = context;
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            while (!succeeded && !context.isDone()) {
+                succeeded = attempt.tryFor(50);
             }
+            return true;
+        }
 
-            if (shouldExclude(file)) return;
+        @Override
+        public boolean isReleasable() {
+            return succeeded || context.isDone();
+        }
+    }
 
-            if (extension != null && !extension.isEmpty()) {
-                if (!file.getFileName().toString().toLowerCase().endsWith("." + extension.toLowerCase())) {
+    /**
+     * The content half of a search pipeline. Traversal threads hand files over through bounded
+     * queues and separate scan threads read them, so a slow read does not hold up enumeration and
+     * a slow directory listing does not leave the readers idle. A full queue makes the traversal
+     * wait until the readers catch up.
+     *
+     * <p>Every device gets a lane of its own, a queue with as many threads as the device may ever
+     * read with at once, so files waiting for a slow device never hold up those on a fast one.
+     */
+    private class ScanStage {
+        private final SearchContext context;
+        private final Map<DeviceScheduler.Device, Lane> lanes = new ConcurrentHashMap<>();
+        private volatile boolean inputDone;
+
+        ScanStage(SearchContext context) {
+            this.context = context;
+        }
+
+        void submit(Path file, BasicFileAttributes attrs, DeviceScheduler.Device device) {
+            lanes.computeIfAbsent(device, Lane::new).submit(new FileEntry(file, attrs));
+        }
+
+        int depth() {
+            int depth = 0;
+            for (Lane lane : lanes.values()) {
+                depth += lane.queue.size();
+            }
+            return depth;
+        }
+
+        /**
+         * Waits for the queued files to be read once the traversal has handed over the last one.
+         */
+        void finish() {
+            inputDone = true;
+            for (Lane lane : lanes.values()) {
+                for (Future<?> worker : lane.workers) {
+                    try {
+                        worker.get();
+                    } catch (InterruptedException e) {
+                        // The search was cancelled
+                        lanes.values().forEach(l -> l.workers.forEach(w -> w.cancel(true)));
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (ExecutionException e) {
+                        logger.log(Level.SEVERE, "Error scanning file content", e.getCause());
+                    }
+                }
+            }
+        }
+
+        private class Lane {
+            private final BlockingQueue<FileEntry> queue = new ArrayBlockingQueue<>(SCAN_QUEUE_CAPACITY);
+            private final DeviceScheduler.Device device;
+            private final List<Future<?>> workers = new ArrayList<>();
+
+            Lane(DeviceScheduler.Device device) {
+                this.device = device;
+                for (int i = 0; i < device.getMaxLimit(); i++) {
+                    workers.add(scanExecutor.submit(this::work));
+                }
+            }
+
+            void submit(FileEntry item) {
+                if (!queue.offer(item)) {
+                    context.await(millis -> queue.offer(item, millis, TimeUnit.MILLISECONDS));
+                }
+            }
+
+            private void work() {
+                try {
+                    while (!context.isDone()) {
+                        FileEntry item = queue.poll(50, TimeUnit.MILLISECONDS);
+                        if (item != null) {
+                            context.scanFile(item.file(), item.attrs(), device);
+                        } else if (inputDone && queue.isEmpty()) {
+                            return;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    // Cancelled while waiting for work
+                }
+            }
+        }
+    }
+
+    private record FileEntry(Path file, BasicFileAttributes attrs) {
+    }
+
+    /**
+     * Confirms a slice of the candidate files returned by the content index, splitting large
+     * slices so the candidates are checked in parallel.
+     */
+    private class CandidateTask extends RecursiveAction {
+        private final List<String> paths;
+        private final int from;
+        private final int to;
+        private final SearchContext context;
+
+        CandidateTask(List<String> paths, int from, int to, SearchContext context) {
+            this.paths = paths;
+            this.from = from;
+            this.to = to;
+            this.context = context;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CANDIDATE_BATCH_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new CandidateTask(paths, from, mid, context), new CandidateTask(paths, mid, to, context));
+                return;
+            }
+            context.progress.filesSeen(to - from);
+            for (int i = from; i < to; i++) {
+                if (context.isDone()) {
                     return;
                 }
+                Path file = Paths.get(paths.get(i));
+                // The file may have been deleted since the index was built
+                BasicFileAttributes attrs = readAttributes(file);
+                if (attrs != null) {
+                    context.processFile(file, attrs, deviceScheduler.deviceContaining(file));
+                }
             }
+        }
+    }
 
-            if (isFilenameSearch) {
-                if (pattern.matcher(file.getFileName().toString()).find()) {
-                    addResult(file);
+    /**
+     * Matches file names from a range of filename index blocks, splitting large ranges so the
+     * scan runs in parallel.
+     */
+    private class FilenameIndexTask extends RecursiveAction {
+        private final FilenameIndex index;
+        private final byte[] prefix;
+        private final int fromBlock;
+        private final int toBlock;
+        private final boolean includeAdded;
+        private final SearchContext context;
+
+        FilenameIndexTask(FilenameIndex index, byte[] prefix, int fromBlock, int toBlock, boolean includeAdded,
+                          SearchContext context) {
+            this.index = index;
+            this.prefix = prefix;
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+            this.includeAdded = includeAdded;
+            this.context = context;
+        }
+
+        @Override
+        protected void compute() {
+            if (toBlock - fromBlock > FILENAME_BLOCK_BATCH_SIZE) {
+                int mid = (fromBlock + toBlock) >>> 1;
+                invokeAll(new FilenameIndexTask(index, prefix, fromBlock, mid, includeAdded, context),
+                        new FilenameIndexTask(index, prefix, mid, toBlock, false, context));
+                return;
+            }
+            if (context.isDone()) {
+                return;
+            }
+
+            byte[] extensionSuffix = context.extension != null && !context.extension.isEmpty()
+                    ? ("." + context.extension.toLowerCase()).getBytes(StandardCharsets.UTF_8) : null;
+            char[] chars = new char[256];
+            CharBuffer name = CharBuffer.wrap(chars);
+            Matcher matcher = context.pattern.matcher("");
+            int[] nameCount = new int[1];
+            FilenameIndex.PathVisitor visitor = (path, length, nameStart) -> {
+                nameCount[0]++;
+                if (extensionSuffix != null && !endsWithIgnoreCase(path, length, extensionSuffix)) {
+                    return true;
                 }
-            } else {
-                if (isTextFile(file) && searchInFile(file, pattern)) {
-                    addResult(file);
+                CharSequence fileName = decodeName(path, nameStart, length, chars, name);
+                if (matcher.reset(fileName).find()) {
+                    Path file = Paths.get(new String(path, 0, length, StandardCharsets.UTF_8));
+                    // The file may have been deleted since the index was built
+                    BasicFileAttributes attrs = readAttributes(file);
+                    if (attrs != null && context.matchesFilters(attrs)) {
+                        context.addResult(file, attrs, Collections.emptyList());
+                    }
+                    return !context.isDone();
                 }
+                return true;
+            };
+            index.scan(fromBlock, toBlock, prefix, visitor);
+            if (includeAdded) {
+                // Files created since the index was built, kept aside until the next compaction
+                index.scanAdded(prefix, visitor);
             }
+            context.progress.filesSeen(nameCount[0]);
         }
 
-        public boolean isSearchCancelled() {
-            return searchTask != null && searchTask.isCancelled();
+        /**
+         * Decodes a file name, avoiding any allocation for the common pure-ASCII case.
+         */
+        private CharSequence decodeName(byte[] path, int from, int to, char[] chars, CharBuffer buffer) {
+            int length = to - from;
+            if (length > chars.length) {
+                return new String(path, from, length, StandardCharsets.UTF_8);
+            }
+            for (int i = 0; i < length; i++) {
+                byte b = path[from + i];
+                if (b < 0) {
+                    return new String(path, from, length, StandardCharsets.UTF_8);
+                }
+                chars[i] = (char) b;
+            }
+            buffer.clear().limit(length);
+            return buffer;
         }
 
-        private void addResult(Path file) {
-            try {
-                FileResult result = new FileResult(file.toString());
-                if (filters.matches(result)) {
-                    allResults.add(result);
-                    resultCallback.accept(result);
+        private boolean endsWithIgnoreCase(byte[] path, int length, byte[] suffix) {
+            if (length < suffix.length) {
+                return false;
+            }
+            int offset = length - suffix.length;
+            for (int i = 0; i < suffix.length; i++) {
+                byte b = path[offset + i];
+                if (b >= 'A' && b <= 'Z') {
+                    b += 'a' - 'A';
                 }
-            } catch (Exception e) {
-                if (!isSearchCancelled()) {
-                    logger.log(Level.SEVERE, "Error processing " + file + ": " + e.getMessage(), e);
+                if (b != suffix[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private class IndexTask extends RecursiveAction {
+        private final Collection<String> roots;
+        private final TrigramIndex index;
+        private final Collection<String> files;
+        private final SearchProgress progress;
+
+        IndexTask(Collection<String> roots, TrigramIndex index, Collection<String> files, SearchProgress progress) {
+            this.roots = roots;
+            this.index = index;
+            this.files = files;
+            this.progress = progress;
+        }
+
+        @Override
+        protected void compute() {
+            List<IndexTask> tasks = new ArrayList<>();
+            int[] fileCount = new int[1];
+            for (String root : roots) {
+                progress.directoryVisited(root);
+                try {
+                    listDirectory(Paths.get(root), (path, attrs) -> {
+                        if (isSearchCancelled()) {
+                            return false;
+                        }
+                        if (shouldExclude(path)) {
+                            return true;
+                        }
+                        if (attrs.isDirectory()) {
+                            tasks.add(new IndexTask(Collections.singleton(path.toString()), index, files, progress));
+                            return true;
+                        }
+                        files.add(path.toString());
+                        fileCount[0]++;
+                        if (attrs.isRegularFile() && isTextFile(path, attrs)) {
+                            indexFile(path, attrs);
+                            progress.bytesScanned(attrs.size());
+                        }
+                        return true;
+                    });
+                } catch (IOException e) {
+                    if (!isSearchCancelled()) {
+                        logger.log(Level.WARNING, "Error indexing directory: " + root, e);
+                    }
                 }
             }
+            progress.filesSeen(fileCount[0]);
+            progress.directoriesFound(tasks.size());
+            invokeAll(tasks);
+        }
+
+        private void indexFile(Path file, BasicFileAttributes attrs) {
+            try {
+                index.addDocument(file.toString(), attrs.size(), attrs.lastModifiedTime().toMillis(),
+                        TrigramIndex.extractTrigrams(file));
+            } catch (IOException e) {
+                logger.log(Level.FINE, "Skipping unreadable file " + file, e);
+            }
         }
     }
 }
@@ -0,0 +1,104 @@
+package org.fastsearch;
+
+import java.util.Map;
+
+/**
+ * Live statistics and controls of a {@link SearchEngine}. Every engine registers one with the
+ * platform MBean server as {@code org.fastsearch:type=SearchEngine,id=N}, so JConsole, VisualVM
+ * or any other JMX client can watch it while it runs.
+ */
+public interface SearchEngineMXBean {
+
+    /**
+     * Returns the number of threads the traversal pool aims to keep busy.
+     */
+    int getParallelism();
+
+    /**
+     * Returns the number of threads the traversal pool has started and not yet retired.
+     */
+    int getPoolSize();
+
+    int getActiveThreadCount();
+
+    /**
+     * Returns the number of traversal threads that are neither waiting to join a task nor blocked.
+     */
+    int getRunningThreadCount();
+
+    /**
+     * Returns how often a traversal thread took a task queued by another one.
+     */
+    long getStealCount();
+
+    long getQueuedTaskCount();
+
+    int getQueuedSubmissionCount();
+
+    /**
+     * Returns the number of threads reading file content, which grows with the devices searched.
+     */
+    int getScanThreadCount();
+
+    /**
+     * Returns the number of files waiting to have their content read.
+     */
+    int getScanQueueDepth();
+
+    /**
+     * Returns how many reads every device searched so far may run at once. The limits adapt to
+     * the latency each device shows.
+     */
+    Map<String, Integer> getDeviceLimits();
+
+    boolean isSearching();
+
+    /**
+     * Returns the files per second of the running search, or 0 if none is running.
+     */
+    double getFilesPerSecond();
+
+    /**
+     * Returns the bytes read per second by the running search, or 0 if none is running.
+     */
+    double getBytesPerSecond();
+
+    /**
+     * Returns the number of searches that have finished.
+     */
+    long getSearchCount();
+
+    /**
+     * Returns the files seen by all finished searches.
+     */
+    long getTotalFilesSeen();
+
+    /**
+     * Returns the bytes read by all finished searches.
+     */
+    long getTotalBytesScanned();
+
+    /**
+     * Returns the share of content checks answered by the match cache, from 0 to 1.
+     */
+    double getMatchCacheHitRate();
+
+    /**
+     * Returns the share of text/binary decisions answered by the file type cache instead of
+     * reading the file, from 0 to 1. Files with a known text extension are not counted.
+     */
+    double getFileTypeCacheHitRate();
+
+    /**
+     * Stops the running search, if any.
+     */
+    void cancelSearch();
+
+    /**
+     * Changes the number of traversal threads, e.g. to find the best value for this machine
+     * before setting it as {@code parallelism} in the settings.
+     *
+     * @throws IllegalArgumentException if {@code parallelism} is less than 1
+     */
+    void resizeParallelism(int parallelism);
+}
@@ -0,0 +1,87 @@
+package org.fastsearch;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The JDK Flight Recorder events of the search engine. They cost next to nothing unless a
+ * recording is running, e.g. one started with {@code -XX:StartFlightRecording} or {@code jcmd}.
+ */
+final class SearchEvents {
+    private static final String CATEGORY = "FastSearch";
+
+    private SearchEvents() {
+    }
+
+    @Name("org.fastsearch.Search")
+    @Label("Search")
+    @Description("A search from start to end")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static class SearchEvent extends Event {
+        @Label("Mode")
+        String mode;
+        @Label("Query")
+        String query;
+        @Label("Files Seen")
+        long filesSeen;
+        @Label("Bytes Scanned")
+        @DataAmount
+        long bytesScanned;
+        @Label("Files Matched")
+        long filesMatched;
+        @Label("Cancelled")
+        boolean cancelled;
+    }
+
+    @Name("org.fastsearch.DirectoryListing")
+    @Label("Directory Listing")
+    @Description("Listing the entries of one directory and handing them over")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static class DirectoryListingEvent extends Event {
+        @Label("Directory")
+        String directory;
+        @Label("Entries")
+        int entries;
+    }
+
+    /**
+     * Scans of small files take microseconds, so by default only the slow ones are recorded.
+     */
+    @Name("org.fastsearch.FileScan")
+    @Label("File Scan")
+    @Description("Reading one file and matching its content")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    @Threshold("1 ms")
+    static class FileScanEvent extends Event {
+        @Label("File")
+        String file;
+        @Label("Size")
+        @DataAmount
+        long bytes;
+        @Label("Matched")
+        boolean matched;
+    }
+
+    @Name("org.fastsearch.SearchCancelled")
+    @Label("Search Cancelled")
+    @Description("A search stopped before it was done")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static class SearchCancelledEvent extends Event {
+        @Label("Mode")
+        String mode;
+        @Label("Query")
+        String query;
+        @Label("Files Seen")
+        long filesSeen;
+    }
+}
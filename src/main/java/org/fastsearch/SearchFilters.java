@@ -1,37 +1,64 @@
 package org.fastsearch;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 
 // ============================================
 // SEARCH FILTERS
 // ============================================
 public class SearchFilters {
-    private Long minSize;
-    private Long maxSize;
-    private LocalDateTime modifiedAfter;
-    private LocalDateTime modifiedBefore;
+    // Bounds are kept as plain numbers so checking a file needs no date conversion
+    private long minSize = Long.MIN_VALUE;
+    private long maxSize = Long.MAX_VALUE;
+    private long modifiedAfterMillis = Long.MIN_VALUE;
+    private long modifiedBeforeMillis = Long.MAX_VALUE;
 
     public boolean matches(FileResult result) {
-        if (minSize != null && result.getSize() < minSize) return false;
-        if (maxSize != null && result.getSize() > maxSize) return false;
-        if (modifiedAfter != null && result.getModified().isBefore(modifiedAfter)) return false;
-        return modifiedBefore == null || !result.getModified().isAfter(modifiedBefore);
+        long modified = result.getModified().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return matches(result.getSize(), modified);
+    }
+
+    /**
+     * Checks a file's attributes as read from the file system, before the file is opened.
+     *
+     * @param lastModifiedMillis the modification time in milliseconds since the epoch
+     */
+    public boolean matches(long size, long lastModifiedMillis) {
+        return size >= minSize && size <= maxSize
+                && lastModifiedMillis >= modifiedAfterMillis && lastModifiedMillis <= modifiedBeforeMillis;
     }
 
     // Setters
     public void setMinSize(Long minSize) {
-        this.minSize = minSize;
+        this.minSize = minSize != null ? minSize : Long.MIN_VALUE;
     }
 
     public void setMaxSize(Long maxSize) {
-        this.maxSize = maxSize;
+        this.maxSize = maxSize != null ? maxSize : Long.MAX_VALUE;
     }
 
     public void setModifiedAfter(LocalDateTime modifiedAfter) {
-        this.modifiedAfter = modifiedAfter;
+        // Rounded up, a file modified within the same millisecond but before the bound is excluded
+        this.modifiedAfterMillis = modifiedAfter != null ? toEpochMillis(modifiedAfter, true) : Long.MIN_VALUE;
     }
 
     public void setModifiedBefore(LocalDateTime modifiedBefore) {
-        this.modifiedBefore = modifiedBefore;
+        this.modifiedBeforeMillis = modifiedBefore != null ? toEpochMillis(modifiedBefore, false) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Converts {@code time} to milliseconds since the epoch, rounding a fraction of a millisecond
+     * up or down. Times too far from the epoch for a long are clamped to its range.
+     */
+    private static long toEpochMillis(LocalDateTime time, boolean roundUp) {
+        Instant instant = time.atZone(ZoneId.systemDefault()).toInstant();
+        try {
+            long millis = Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1000L),
+                    instant.getNano() / 1_000_000);
+            return roundUp && instant.getNano() % 1_000_000 != 0 ? Math.addExact(millis, 1) : millis;
+        } catch (ArithmeticException e) {
+            return instant.getEpochSecond() < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
     }
-}
\ No newline at end of file
+}
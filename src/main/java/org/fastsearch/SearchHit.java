@@ -0,0 +1,18 @@
+package org.fastsearch;
+
+import java.util.List;
+
+/**
+ * A file found by the search engine, as it is handed to result callbacks. Unlike
+ * {@link FileResult} it has no JavaFX properties, so headless callers never load JavaFX.
+ *
+ * @param path               absolute path of the file
+ * @param size               size in bytes when the file was checked
+ * @param lastModifiedMillis modification time when the file was checked
+ * @param matchedTerms       the terms of a multi-term search found in the file, otherwise empty
+ * @param matchPositions     where a content search found matches, see
+ *                           {@link FileResult#getMatchPositions()}
+ */
+public record SearchHit(String path, long size, long lastModifiedMillis, List<String> matchedTerms,
+                        List<MatchPosition> matchPositions) {
+}
@@ -0,0 +1,179 @@
+package org.fastsearch;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Where the time of one search went, and how much its threads allocated. The engine's threads
+ * add the time of every step as they go; the times are summed over all threads, so together they
+ * usually exceed the elapsed time of the search.
+ */
+public class SearchMetrics {
+    /**
+     * The steps a search spends its time on.
+     */
+    public enum Phase {
+        LISTING("Listing directories"),
+        EXCLUSION("Checking exclusions"),
+        SNIFFING("Detecting binary files"),
+        MATCHING("Reading and matching"),
+        THROTTLING("Waiting for a busy device"),
+        HANDOFF("Waiting for scan threads"),
+        DELIVERY("Delivering results");
+
+        private final String description;
+
+        Phase(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private static final com.sun.management.ThreadMXBean threadBean = allocationBean();
+
+    private final long startNanos = System.nanoTime();
+    private volatile long endNanos;
+    private final LongAdder[] nanos = new LongAdder[Phase.values().length];
+    private final LongAdder[] counts = new LongAdder[Phase.values().length];
+    private final Map<Long, Long> allocatedAtStart = new HashMap<>();
+    private volatile List<ThreadAllocation> allocations = List.of();
+
+    public SearchMetrics() {
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] = new LongAdder();
+            counts[i] = new LongAdder();
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+            return bean;
+        }
+        return null;
+    }
+
+    /**
+     * Adds one step of {@code phase} that took {@code nanos}.
+     */
+    void add(Phase phase, long nanos) {
+        this.nanos[phase.ordinal()].add(nanos);
+        counts[phase.ordinal()].increment();
+    }
+
+    /**
+     * Notes how much {@code threads} have allocated so far, before the search starts.
+     */
+    void start(Collection<Thread> threads) {
+        if (threadBean == null) {
+            return;
+        }
+        for (Thread thread : threads) {
+            allocatedAtStart.put(thread.threadId(), threadBean.getThreadAllocatedBytes(thread.threadId()));
+        }
+    }
+
+    /**
+     * Ends the search, attributing to it what {@code threads} allocated since {@link #start}.
+     * Threads started during the search count from zero.
+     */
+    void finish(Collection<Thread> threads) {
+        endNanos = System.nanoTime();
+        if (threadBean == null) {
+            return;
+        }
+        List<ThreadAllocation> allocated = new ArrayList<>();
+        for (Thread thread : threads) {
+            long bytes = threadBean.getThreadAllocatedBytes(thread.threadId());
+            if (bytes < 0) {
+                // The thread has ended
+                continue;
+            }
+            bytes -= allocatedAtStart.getOrDefault(thread.threadId(), 0L);
+            if (bytes > 0) {
+                allocated.add(new ThreadAllocation(thread.getName(), bytes));
+            }
+        }
+        allocated.sort(Comparator.comparingLong(ThreadAllocation::bytes).reversed());
+        allocations = List.copyOf(allocated);
+    }
+
+    public boolean isFinished() {
+        return endNanos != 0;
+    }
+
+    /**
+     * Returns how long the search took, or has been running.
+     */
+    public long getElapsedMillis() {
+        long end = endNanos;
+        return ((end != 0 ? end : System.nanoTime()) - startNanos) / 1_000_000;
+    }
+
+    public long getNanos(Phase phase) {
+        return nanos[phase.ordinal()].sum();
+    }
+
+    public long getCount(Phase phase) {
+        return counts[phase.ordinal()].sum();
+    }
+
+    /**
+     * Returns the bytes every thread allocated for the search, largest first. Empty until the
+     * search has finished, or if the JVM cannot measure allocations.
+     */
+    public List<ThreadAllocation> getAllocations() {
+        return allocations;
+    }
+
+    /**
+     * Returns a snapshot of the metrics.
+     */
+    public Summary getSummary() {
+        List<PhaseTime> phases = new ArrayList<>();
+        for (Phase phase : Phase.values()) {
+            phases.add(new PhaseTime(phase, getCount(phase), getNanos(phase)));
+        }
+        return new Summary(getElapsedMillis(), phases, allocations);
+    }
+
+    public record PhaseTime(Phase phase, long count, long nanos) {
+    }
+
+    public record ThreadAllocation(String thread, long bytes) {
+    }
+
+    public record Summary(long elapsedMillis, List<PhaseTime> phases, List<ThreadAllocation> allocations) {
+        public long allocatedBytes() {
+            return allocations.stream().mapToLong(ThreadAllocation::bytes).sum();
+        }
+
+        /**
+         * Formats the summary as a few lines of text, one per phase and thread.
+         */
+        public String format() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format(Locale.ROOT, "Elapsed: %d ms%n%n", elapsedMillis));
+            for (PhaseTime phase : phases) {
+                text.append(String.format(Locale.ROOT, "%-26s %10.1f ms %10d steps%n",
+                        phase.phase().getDescription(), phase.nanos() / 1e6, phase.count()));
+            }
+            text.append(String.format(Locale.ROOT, "%nAllocated: %.1f MB%n", allocatedBytes() / 1e6));
+            for (ThreadAllocation allocation : allocations) {
+                text.append(String.format(Locale.ROOT, "  %-24s %10.1f MB%n", allocation.thread(),
+                        allocation.bytes() / 1e6));
+            }
+            return text.toString();
+        }
+    }
+}
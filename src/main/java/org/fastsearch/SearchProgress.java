@@ -0,0 +1,126 @@
+package org.fastsearch;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters describing how far a search or index rebuild has got. The engine's threads update
+ * them as they go and the UI samples them at its own pace, so nothing is pushed per directory.
+ */
+public class SearchProgress {
+    private final long startNanos = System.nanoTime();
+    private final LongAdder directoriesFound = new LongAdder();
+    private final LongAdder directoriesVisited = new LongAdder();
+    private final LongAdder filesSeen = new LongAdder();
+    private final LongAdder bytesScanned = new LongAdder();
+    private final LongAdder filesMatched = new LongAdder();
+    private volatile String currentDirectory;
+
+    /**
+     * Records directories that were found and still have to be listed.
+     */
+    void directoriesFound(int count) {
+        directoriesFound.add(count);
+    }
+
+    void directoryVisited(String directory) {
+        directoriesVisited.increment();
+        currentDirectory = directory;
+    }
+
+    void filesSeen(int count) {
+        filesSeen.add(count);
+    }
+
+    void bytesScanned(long bytes) {
+        bytesScanned.add(bytes);
+    }
+
+    void fileMatched() {
+        filesMatched.increment();
+    }
+
+    /**
+     * Adds whatever {@code totals} counted beyond this progress, so a search running elsewhere
+     * can be followed from snapshots of its progress.
+     */
+    void catchUp(Totals totals) {
+        Totals current = getTotals();
+        directoriesFound.add(totals.directoriesFound() - current.directoriesFound());
+        directoriesVisited.add(totals.directoriesVisited() - current.directoriesVisited());
+        filesSeen.add(totals.filesSeen() - current.filesSeen());
+        bytesScanned.add(totals.bytesScanned() - current.bytesScanned());
+        filesMatched.add(totals.filesMatched() - current.filesMatched());
+        if (totals.currentDirectory() != null) {
+            currentDirectory = totals.currentDirectory();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the counters.
+     */
+    public Totals getTotals() {
+        return new Totals(directoriesFound.sum(), getDirectoriesVisited(), getFilesSeen(), getBytesScanned(),
+                getFilesMatched(), currentDirectory);
+    }
+
+    public long getDirectoriesVisited() {
+        return directoriesVisited.sum();
+    }
+
+    public long getFilesSeen() {
+        return filesSeen.sum();
+    }
+
+    public long getBytesScanned() {
+        return bytesScanned.sum();
+    }
+
+    public long getFilesMatched() {
+        return filesMatched.sum();
+    }
+
+    /**
+     * Returns the directory listed most recently, or null before the first one.
+     */
+    public String getCurrentDirectory() {
+        return currentDirectory;
+    }
+
+    public long getElapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    public double getFilesPerSecond() {
+        return perSecond(getFilesSeen());
+    }
+
+    public double getBytesPerSecond() {
+        return perSecond(getBytesScanned());
+    }
+
+    /**
+     * Estimates the time left from the directories waiting to be listed and the rate at which
+     * directories have been listed so far. Directories found later are not known yet, so the
+     * estimate grows while large trees are being discovered.
+     *
+     * @return the estimate in milliseconds, or -1 if there is nothing to base it on
+     */
+    public long getEstimatedMillisLeft() {
+        long visited = getDirectoriesVisited();
+        long elapsed = getElapsedMillis();
+        if (visited == 0 || elapsed == 0) {
+            return -1;
+        }
+        long pending = Math.max(0, directoriesFound.sum() - visited);
+        return pending * elapsed / visited;
+    }
+
+    private double perSecond(long count) {
+        long elapsed = getElapsedMillis();
+        return elapsed > 0 ? count * 1000.0 / elapsed : 0;
+    }
+
+    public record Totals(long directoriesFound, long directoriesVisited, long filesSeen, long bytesScanned,
+                         long filesMatched, String currentDirectory) {
+    }
+}
@@ -0,0 +1,155 @@
+package org.fastsearch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Everything that describes one search, so it can be run on a local {@link SearchEngine} or sent
+ * to a {@link SearchDaemon} as is.
+ */
+public class SearchRequest {
+    public enum Mode {
+        FILENAME, CONTENT, MULTI_TERM
+    }
+
+    private Mode mode = Mode.CONTENT;
+    private String query;
+    private List<String> terms = new ArrayList<>();
+    private String extension;
+    private String folder;
+    private SearchFilters filters = new SearchFilters();
+    private int maxResults = Integer.MAX_VALUE;
+    private boolean caseSensitive;
+    private boolean regex;
+    private boolean withoutMatch;
+    private boolean countOnly;
+
+    /**
+     * Runs the search on {@code engine}, handing every file found to {@code resultCallback}.
+     *
+     * @return the counts of a count-only search, otherwise null
+     */
+    public SearchCounts run(SearchEngine engine, Consumer<SearchHit> resultCallback, Consumer<String> statusCallback) {
+        if (countOnly) {
+            return engine.countContent(query, extension, folder, filters, caseSensitive, regex, withoutMatch,
+                    statusCallback);
+        }
+        switch (mode) {
+            case FILENAME -> engine.searchFilenameRealtime(query, extension, folder, filters, maxResults,
+                    caseSensitive, resultCallback, statusCallback);
+            case MULTI_TERM -> engine.searchContentMultiRealtime(terms, extension, folder, filters, maxResults,
+                    caseSensitive, resultCallback, statusCallback);
+            case CONTENT -> {
+                if (withoutMatch) {
+                    engine.searchContentWithoutMatch(query, extension, folder, filters, maxResults, caseSensitive,
+                            regex, resultCallback, statusCallback);
+                } else {
+                    engine.searchContentRealtime(query, extension, folder, filters, maxResults, caseSensitive,
+                            regex, resultCallback, statusCallback);
+                }
+            }
+        }
+        return null;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    /**
+     * The terms of a {@link Mode#MULTI_TERM} search.
+     */
+    public List<String> getTerms() {
+        return terms;
+    }
+
+    public void setTerms(List<String> terms) {
+        this.terms = terms;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public void setExtension(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * The folder to search, or null or empty for the configured default folders.
+     */
+    public String getFolder() {
+        return folder;
+    }
+
+    public void setFolder(String folder) {
+        this.folder = folder;
+    }
+
+    public SearchFilters getFilters() {
+        return filters;
+    }
+
+    public void setFilters(SearchFilters filters) {
+        this.filters = filters;
+    }
+
+    public int getMaxResults() {
+        return maxResults;
+    }
+
+    public void setMaxResults(int maxResults) {
+        this.maxResults = maxResults;
+    }
+
+    public boolean isCaseSensitive() {
+        return caseSensitive;
+    }
+
+    public void setCaseSensitive(boolean caseSensitive) {
+        this.caseSensitive = caseSensitive;
+    }
+
+    public boolean isRegex() {
+        return regex;
+    }
+
+    public void setRegex(boolean regex) {
+        this.regex = regex;
+    }
+
+    /**
+     * Whether a content search reports the files that do not match instead of those that do.
+     */
+    public boolean isWithoutMatch() {
+        return withoutMatch;
+    }
+
+    public void setWithoutMatch(boolean withoutMatch) {
+        this.withoutMatch = withoutMatch;
+    }
+
+    /**
+     * Whether a content search only counts files, see {@link SearchEngine#countContent}.
+     */
+    public boolean isCountOnly() {
+        return countOnly;
+    }
+
+    public void setCountOnly(boolean countOnly) {
+        this.countOnly = countOnly;
+    }
+}
@@ -0,0 +1,480 @@
+package org.fastsearch;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Persistent trigram index over the text files below a set of search roots.
+ *
+ * <p>Every indexed file contributes the set of byte trigrams found in its content, ASCII-folded
+ * to lower case and never spanning a line break. A literal can only occur in a file that
+ * contains all of the literal's trigrams, so intersecting their posting lists yields a small
+ * candidate set that still has to be confirmed by reading the candidates.
+ *
+ * <p>Documents are only ever appended; replacing or removing a file marks its old entry dead and
+ * {@link #save(Path)} compacts the dead entries away.
+ */
+public class TrigramIndex {
+    private static final int MAGIC = 0x46535449; // "FSTI"
+    private static final int VERSION = 1;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int TRIGRAM_SPACE = 1 << 24;
+
+    private static final ThreadLocal<TrigramCollector> collectors = ThreadLocal.withInitial(TrigramCollector::new);
+
+    private final List<String> roots;
+    private final String signature;
+    private final List<String> paths = new ArrayList<>();
+    private long[] sizes = new long[1024];
+    private long[] modified = new long[1024];
+    private final BitSet live = new BitSet();
+    private Map<String, Integer> docIds;
+    private final Map<Integer, PostingList> postings = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * @param roots     absolute paths of the directories this index covers
+     * @param signature describes the settings the index was built with; an index whose signature
+     *                  no longer matches the configuration must be rebuilt
+     */
+    public TrigramIndex(Collection<String> roots, String signature) {
+        this.roots = List.copyOf(roots);
+        this.signature = signature;
+    }
+
+    public List<String> getRoots() {
+        return roots;
+    }
+
+    public String getSignature() {
+        return signature;
+    }
+
+    /**
+     * Returns whether {@code root} is one of the indexed roots or lies below one of them.
+     */
+    public boolean covers(String root) {
+        for (String indexed : roots) {
+            if (isUnder(root, indexed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Number of live documents in the index.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return live.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a document, replacing any previous entry for the same path.
+     *
+     * @param trigrams the distinct trigrams of the file, as returned by {@link #extractTrigrams(Path)}
+     */
+    public void addDocument(String path, long size, long lastModified, int[] trigrams) {
+        lock.writeLock().lock();
+        try {
+            Integer previous = docIds().get(path);
+            if (previous != null) {
+                live.clear(previous);
+            }
+            int id = paths.size();
+            paths.add(path);
+            if (id == sizes.length) {
+                sizes = Arrays.copyOf(sizes, id * 2);
+                modified = Arrays.copyOf(modified, id * 2);
+            }
+            sizes[id] = size;
+            modified[id] = lastModified;
+            live.set(id);
+            docIds.put(path, id);
+            for (int trigram : trigrams) {
+                postings.computeIfAbsent(trigram, k -> new PostingList()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return whether the file was indexed
+     */
+    public boolean removeDocument(String path) {
+        lock.writeLock().lock();
+        try {
+            Integer id = docIds().remove(path);
+            if (id != null) {
+                live.clear(id);
+            }
+            return id != null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns whether {@code path} is indexed with exactly this size and modification time.
+     */
+    public boolean isCurrent(String path, long size, long lastModified) {
+        // The path lookup table is built lazily, which needs the write lock
+        lock.writeLock().lock();
+        try {
+            Integer id = docIds().get(path);
+            return id != null && sizes[id] == size && modified[id] == lastModified;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns every indexed file below {@code root}.
+     */
+    public List<String> pathsUnder(String root) {
+        return candidates(root, null);
+    }
+
+    /**
+     * Returns the indexed files below {@code root} that may contain {@code literal}. A null literal,
+     * or one too short to form a trigram, selects every indexed file below the root.
+     */
+    public List<String> candidates(String root, String literal) {
+        return candidatesForAll(root, literal == null ? Collections.emptyList() : List.of(literal));
+    }
+
+    /**
+     * Returns the indexed files below {@code root} that may contain all of {@code literals}.
+     */
+    public List<String> candidatesForAll(String root, Collection<String> literals) {
+        int[] queryTrigrams = literals.stream()
+                .flatMapToInt(literal -> Arrays.stream(queryTrigrams(literal)))
+                .distinct()
+                .toArray();
+        lock.readLock().lock();
+        try {
+            BitSet matches = (BitSet) live.clone();
+            if (queryTrigrams.length > 0) {
+                List<PostingList> lists = new ArrayList<>(queryTrigrams.length);
+                for (int trigram : queryTrigrams) {
+                    PostingList list = postings.get(trigram);
+                    if (list == null) {
+                        return Collections.emptyList();
+                    }
+                    lists.add(list);
+                }
+                lists.sort((a, b) -> Integer.compare(a.count, b.count));
+                matches.and(lists.get(0).toBitSet());
+                for (int i = 1; i < lists.size() && !matches.isEmpty(); i++) {
+                    lists.get(i).retainAll(matches);
+                }
+            }
+            List<String> result = new ArrayList<>();
+            for (int id = matches.nextSetBit(0); id >= 0; id = matches.nextSetBit(id + 1)) {
+                String path = paths.get(id);
+                if (isUnder(path, root)) {
+                    result.add(path);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the index to {@code file}, compacting away dead documents first. The file is written
+     * to a temporary sibling and moved into place so a crash never leaves a truncated index.
+     */
+    public void save(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        lock.writeLock().lock();
+        try {
+            compact();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), READ_BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(signature);
+                out.writeInt(roots.size());
+                for (String root : roots) {
+                    out.writeUTF(root);
+                }
+                out.writeInt(paths.size());
+                for (int id = 0; id < paths.size(); id++) {
+                    out.writeUTF(paths.get(id));
+                    out.writeLong(sizes[id]);
+                    out.writeLong(modified[id]);
+                }
+                out.writeInt(postings.size());
+                for (Map.Entry<Integer, PostingList> entry : postings.entrySet()) {
+                    PostingList list = entry.getValue();
+                    out.writeInt(entry.getKey());
+                    out.writeInt(list.count);
+                    out.writeInt(list.last);
+                    out.writeInt(list.length);
+                    out.write(list.data, 0, list.length);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static TrigramIndex load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), READ_BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a trigram index: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported trigram index version " + version + ": " + file);
+            }
+            String signature = in.readUTF();
+            int rootCount = in.readInt();
+            List<String> roots = new ArrayList<>(rootCount);
+            for (int i = 0; i < rootCount; i++) {
+                roots.add(in.readUTF());
+            }
+            TrigramIndex index = new TrigramIndex(roots, signature);
+            int docCount = in.readInt();
+            index.sizes = new long[Math.max(1024, docCount)];
+            index.modified = new long[index.sizes.length];
+            for (int id = 0; id < docCount; id++) {
+                index.paths.add(in.readUTF());
+                index.sizes[id] = in.readLong();
+                index.modified[id] = in.readLong();
+            }
+            index.live.set(0, docCount);
+            int trigramCount = in.readInt();
+            for (int i = 0; i < trigramCount; i++) {
+                int key = in.readInt();
+                PostingList list = new PostingList();
+                list.count = in.readInt();
+                list.last = in.readInt();
+                list.length = in.readInt();
+                list.data = new byte[list.length];
+                in.readFully(list.data);
+                index.postings.put(key, list);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Reads {@code file} and returns its distinct trigrams in ascending order.
+     */
+    public static int[] extractTrigrams(Path file) throws IOException {
+        TrigramCollector collector = collectors.get();
+        try (InputStream in = Files.newInputStream(file)) {
+            return collector.collect(in);
+        }
+    }
+
+    /**
+     * Trigrams a file must contain for {@code literal} to occur in it, or an empty array when the
+     * literal gives no usable constraint.
+     */
+    static int[] queryTrigrams(String literal) {
+        if (literal.indexOf('\uFFFD') >= 0) {
+            // The replacement character stands for undecodable input that has no fixed byte form
+            return new int[0];
+        }
+        byte[] bytes = literal.getBytes(StandardCharsets.UTF_8);
+        int[] result = new int[Math.max(0, bytes.length - 2)];
+        int count = 0;
+        int window = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            window = ((window << 8) | fold(bytes[i])) & 0xFFFFFF;
+            if (i >= 2) {
+                result[count++] = window;
+            }
+        }
+        return Arrays.stream(result, 0, count).distinct().toArray();
+    }
+
+    private static int fold(byte b) {
+        int c = b & 0xFF;
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    private static boolean isUnder(String path, String root) {
+        if (!path.startsWith(root)) {
+            return false;
+        }
+        if (path.length() == root.length()) {
+            return true;
+        }
+        char next = path.charAt(root.length());
+        return next == File.separatorChar || root.endsWith(File.separator);
+    }
+
+    private Map<String, Integer> docIds() {
+        if (docIds == null) {
+            docIds = new HashMap<>();
+            for (int id = live.nextSetBit(0); id >= 0; id = live.nextSetBit(id + 1)) {
+                docIds.put(paths.get(id), id);
+            }
+        }
+        return docIds;
+    }
+
+    private void compact() {
+        int liveCount = live.cardinality();
+        if (liveCount == paths.size()) {
+            return;
+        }
+        int[] remap = new int[paths.size()];
+        List<String> newPaths = new ArrayList<>(liveCount);
+        long[] newSizes = new long[Math.max(1024, liveCount)];
+        long[] newModified = new long[newSizes.length];
+        for (int id = 0; id < paths.size(); id++) {
+            if (live.get(id)) {
+                int newId = newPaths.size();
+                remap[id] = newId;
+                newPaths.add(paths.get(id));
+                newSizes[newId] = sizes[id];
+                newModified[newId] = modified[id];
+            } else {
+                remap[id] = -1;
+            }
+        }
+        postings.replaceAll((trigram, list) -> list.remap(remap));
+        postings.values().removeIf(list -> list.count == 0);
+        paths.clear();
+        paths.addAll(newPaths);
+        sizes = newSizes;
+        modified = newModified;
+        live.clear();
+        live.set(0, liveCount);
+        docIds = null;
+    }
+
+    /**
+     * Ascending document ids, stored as variable-length deltas.
+     */
+    private static final class PostingList {
+        private byte[] data = new byte[4];
+        private int length;
+        private int count;
+        private int last = -1;
+
+        void add(int id) {
+            if (id == last) {
+                return;
+            }
+            int delta = id - last;
+            last = id;
+            count++;
+            if (length + 5 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+            }
+            while ((delta & ~0x7F) != 0) {
+                data[length++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            data[length++] = (byte) delta;
+        }
+
+        BitSet toBitSet() {
+            BitSet bits = new BitSet(last + 1);
+            int pos = 0;
+            int id = -1;
+            while (pos < length) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[pos++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                id += delta;
+                bits.set(id);
+            }
+            return bits;
+        }
+
+        void retainAll(BitSet matches) {
+            matches.and(toBitSet());
+        }
+
+        PostingList remap(int[] remap) {
+            PostingList result = new PostingList();
+            BitSet ids = toBitSet();
+            for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                if (remap[id] >= 0) {
+                    result.add(remap[id]);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Per-thread scratch space for trigram extraction: a bitmap over the whole trigram space plus
+     * the list of keys set in it, so the bitmap can be cleared without touching all 2 MB of it.
+     */
+    private static final class TrigramCollector {
+        private final long[] seen = new long[TRIGRAM_SPACE / 64];
+        private final byte[] buffer = new byte[READ_BUFFER_SIZE];
+        private int[] keys = new int[4096];
+        private int count;
+
+        int[] collect(InputStream in) throws IOException {
+            count = 0;
+            int window = 0;
+            int valid = 0;
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    byte b = buffer[i];
+                    if (b == '\n' || b == '\r') {
+                        valid = 0;
+                        continue;
+                    }
+                    window = ((window << 8) | fold(b)) & 0xFFFFFF;
+                    if (++valid >= 3) {
+                        mark(window);
+                    }
+                }
+            }
+            int[] result = Arrays.copyOf(keys, count);
+            for (int i = 0; i < count; i++) {
+                seen[keys[i] >>> 6] = 0;
+            }
+            Arrays.sort(result);
+            return result;
+        }
+
+        private void mark(int trigram) {
+            long bit = 1L << (trigram & 63);
+            int word = trigram >>> 6;
+            if ((seen[word] & bit) == 0) {
+                seen[word] |= bit;
+                if (count == keys.length) {
+                    keys = Arrays.copyOf(keys, count * 2);
+                }
+                keys[count++] = trigram;
+            }
+        }
+    }
+}
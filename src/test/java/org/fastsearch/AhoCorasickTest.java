@@ -0,0 +1,73 @@
+package org.fastsearch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AhoCorasickTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path write(String name, String content) throws IOException {
+        return Files.writeString(tempDir.resolve(name), content);
+    }
+
+    @Test
+    void testReportsMatchedTermsInGivenOrder() throws IOException {
+        Path file = write("code.java", "new Vector<>(); Thread.stop(); Date d;");
+        AhoCorasick automaton = new AhoCorasick(List.of("Thread.stop", "Hashtable", "Vector"), true);
+        assertEquals(List.of("Thread.stop", "Vector"), automaton.matchedTerms(file));
+    }
+
+    @Test
+    void testOverlappingAndNestedTerms() throws IOException {
+        Path file = write("text.txt", "ushers");
+        AhoCorasick automaton = new AhoCorasick(List.of("he", "she", "his", "hers"), true);
+        assertEquals(List.of("he", "she", "hers"), automaton.matchedTerms(file));
+    }
+
+    @Test
+    void testCaseInsensitiveFoldsAscii() throws IOException {
+        Path file = write("keys.env", "AWS_SECRET=abc\nÄrger");
+        AhoCorasick insensitive = new AhoCorasick(List.of("aws_secret", "ärger"), false);
+        assertEquals(List.of("aws_secret"), insensitive.matchedTerms(file));
+        AhoCorasick sensitive = new AhoCorasick(List.of("aws_secret", "Ärger"), true);
+        assertEquals(List.of("Ärger"), sensitive.matchedTerms(file));
+    }
+
+    @Test
+    void testNoMatch() throws IOException {
+        Path file = write("empty.txt", "");
+        assertTrue(new AhoCorasick(List.of("anything"), true).matchedTerms(file).isEmpty());
+    }
+
+    @Test
+    void testManyTermsInLargeFile() throws IOException {
+        List<String> terms = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            terms.add("deprecated_api_" + i + ")");
+        }
+        StringBuilder content = new StringBuilder();
+        while (content.length() < 256 * 1024) {
+            content.append("call(deprecated_api_x);\n");
+        }
+        content.append("call(deprecated_api_42);\n");
+        content.append("call(deprecated_api_499);\n");
+        Path file = write("large.txt", content.toString());
+        assertEquals(List.of("deprecated_api_42)", "deprecated_api_499)"),
+                new AhoCorasick(terms, true).matchedTerms(file));
+    }
+
+    @Test
+    void testRejectsNoUsableTerms() {
+        assertThrows(IllegalArgumentException.class, () -> new AhoCorasick(List.of("", "a\nb"), true));
+    }
+}
@@ -0,0 +1,120 @@
+package org.fastsearch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeviceSchedulerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRootsOnOneStoreShareADevice() throws IOException {
+        DeviceScheduler scheduler = new DeviceScheduler(8);
+        Path first = Files.createDirectory(tempDir.resolve("first"));
+        Path second = Files.createDirectory(tempDir.resolve("second"));
+        DeviceScheduler.Device device = scheduler.deviceOf(first);
+
+        assertSame(device, scheduler.deviceOf(second));
+        assertSame(device, scheduler.deviceContaining(first.resolve("sub/file.txt")));
+        assertEquals(1, scheduler.getLimits().size());
+    }
+
+    @Test
+    void testStoresAreClassified() throws IOException {
+        Path sysBlock = tempDir.resolve("block");
+        Files.createDirectories(sysBlock.resolve("sda/queue"));
+        Files.writeString(sysBlock.resolve("sda/queue/rotational"), "1\n");
+        Files.createDirectories(sysBlock.resolve("sda/sda1"));
+        Files.createDirectories(sysBlock.resolve("nvme0n1/queue"));
+        Files.writeString(sysBlock.resolve("nvme0n1/queue/rotational"), "0\n");
+
+        assertEquals(DeviceScheduler.Kind.NETWORK, DeviceScheduler.kindOf("cifs", "//nas/share", sysBlock));
+        assertEquals(DeviceScheduler.Kind.NETWORK, DeviceScheduler.kindOf("NFS", "nas:/export", sysBlock));
+        assertEquals(DeviceScheduler.Kind.ROTATIONAL, DeviceScheduler.kindOf("ext4", "/dev/sda", sysBlock));
+        // A partition is as rotational as its disk
+        assertEquals(DeviceScheduler.Kind.ROTATIONAL, DeviceScheduler.kindOf("ext4", "/dev/sda/sda1", sysBlock));
+        assertEquals(DeviceScheduler.Kind.LOCAL, DeviceScheduler.kindOf("ext4", "/dev/nvme0n1", sysBlock));
+        assertEquals(DeviceScheduler.Kind.LOCAL, DeviceScheduler.kindOf("tmpfs", "tmpfs", sysBlock));
+    }
+
+    @Test
+    void testReadsWaitForTheLimit() throws InterruptedException {
+        DeviceScheduler.Device device = new DeviceScheduler.Device("disk", DeviceScheduler.Kind.ROTATIONAL, 2, 4);
+        assertTrue(device.tryAcquire(0));
+        assertTrue(device.tryAcquire(0));
+        assertFalse(device.tryAcquire(10));
+        assertEquals(2, device.getInFlight());
+
+        device.release(1_000_000, 0);
+        assertTrue(device.tryAcquire(0));
+    }
+
+    @Test
+    void testReadsWithoutLatencyLeaveTheLimit() throws InterruptedException {
+        DeviceScheduler.Device device = new DeviceScheduler.Device("ssd", DeviceScheduler.Kind.LOCAL, 2, 4);
+        for (int i = 0; i < 40; i++) {
+            fill(device);
+            while (device.getInFlight() > 0) {
+                device.release();
+            }
+        }
+        assertEquals(2, device.getLimit());
+    }
+
+    @Test
+    void testLimitGrowsWhileLatencyHolds() throws InterruptedException {
+        DeviceScheduler.Device device = new DeviceScheduler.Device("ssd", DeviceScheduler.Kind.LOCAL, 2, 4);
+        for (int i = 0; i < 40; i++) {
+            fill(device);
+            drain(device, 2_000_000);
+        }
+        assertEquals(4, device.getLimit());
+    }
+
+    @Test
+    void testLimitSettlesWhereReadsStartQueueing() throws InterruptedException {
+        DeviceScheduler.Device device = new DeviceScheduler.Device("nas", DeviceScheduler.Kind.NETWORK, 4, 16);
+        for (int i = 0; i < 200; i++) {
+            // Up to four reads are served at once, more wait in line
+            int reads = fill(device);
+            drain(device, 2_000_000L * Math.max(4, reads) / 4);
+        }
+        assertTrue(device.getLimit() > 4 && device.getLimit() < 10, "limit " + device.getLimit());
+    }
+
+    @Test
+    void testCachedReadsDoNotShrinkTheLimit() throws InterruptedException {
+        DeviceScheduler.Device device = new DeviceScheduler.Device("ssd", DeviceScheduler.Kind.LOCAL, 4, 4);
+        for (int i = 0; i < 20; i++) {
+            fill(device);
+            drain(device, 5_000);
+        }
+        for (int i = 0; i < 20; i++) {
+            fill(device);
+            // Ten times slower, but still far too fast to be waiting on the device
+            drain(device, 50_000);
+        }
+        assertEquals(4, device.getLimit());
+    }
+
+    private static int fill(DeviceScheduler.Device device) throws InterruptedException {
+        int reads = 0;
+        while (device.tryAcquire(0)) {
+            reads++;
+        }
+        return reads;
+    }
+
+    private static void drain(DeviceScheduler.Device device, long nanos) {
+        while (device.getInFlight() > 0) {
+            device.release(nanos, 0);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.fastsearch;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExcludeMatcherTest {
+
+    @Test
+    void testPlainNamesMatchLastComponent() {
+        ExcludeMatcher matcher = new ExcludeMatcher(List.of("node_modules", ".git"), false);
+        assertTrue(matcher.test(Paths.get("/home/user/project/node_modules")));
+        assertTrue(matcher.test(Paths.get("/home/user/project/.git")));
+        assertFalse(matcher.test(Paths.get("/home/user/project/node_modules_backup")));
+        assertFalse(matcher.test(Paths.get("/home/user/project/.gitignore")));
+    }
+
+    @Test
+    void testSuffixPatterns() {
+        ExcludeMatcher matcher = new ExcludeMatcher(List.of("*.tmp", "*~", "*.tar.gz"), false);
+        assertTrue(matcher.test(Paths.get("/data/file.tmp")));
+        assertTrue(matcher.test(Paths.get("/data/.tmp")));
+        assertTrue(matcher.test(Paths.get("/data/notes.txt~")));
+        assertTrue(matcher.test(Paths.get("/data/backup.tar.gz")));
+        assertFalse(matcher.test(Paths.get("/data/file.tmp.txt")));
+        assertFalse(matcher.test(Paths.get("/data/archive.gz")));
+        assertFalse(matcher.test(Paths.get("/data/file.TMP")));
+    }
+
+    @Test
+    void testIgnoreCase() {
+        ExcludeMatcher matcher = new ExcludeMatcher(List.of("Thumbs.db", "*.TMP"), true);
+        assertTrue(matcher.test(Paths.get("/data/thumbs.DB")));
+        assertTrue(matcher.test(Paths.get("/data/file.tmp")));
+    }
+
+    @Test
+    void testAgreesWithGlobMatchers() {
+        List<String> patterns = List.of("node_modules", "*.tmp", "~$*", "*.[oa]", "build-?", "{target,out}",
+                "cache/*", "**/generated/**", "*.log.*");
+        List<String> paths = List.of("/p/node_modules", "/p/src/a.tmp", "/p/~$report.docx", "/p/lib.o",
+                "/p/lib.a", "/p/lib.so", "/p/build-1", "/p/build-10", "/p/target", "/p/out", "/p/output",
+                "/p/cache/x", "/p/cache/x/y", "/p/src/generated/a/b.java", "/p/app.log.1", "/p/app.log",
+                "/", "/p/.tmp");
+        ExcludeMatcher matcher = new ExcludeMatcher(patterns, false);
+        for (String path : paths) {
+            boolean expected = false;
+            for (String pattern : patterns) {
+                PathMatcher glob = FileSystems.getDefault().getPathMatcher("glob:**/" + pattern);
+                expected |= glob.matches(Paths.get(path));
+            }
+            assertEquals(expected, matcher.test(Path.of(path)), path);
+        }
+    }
+
+    @Test
+    void testInvalidPatternIsIgnored() {
+        ExcludeMatcher matcher = new ExcludeMatcher(List.of("[unclosed", "*.tmp"), false);
+        assertTrue(matcher.test(Paths.get("/data/file.tmp")));
+        assertFalse(matcher.test(Paths.get("/data/file.txt")));
+    }
+}
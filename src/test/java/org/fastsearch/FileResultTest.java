@@ -6,7 +6,9 @@ import org.junit.jupiter.api.io.TempDir;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -124,4 +126,16 @@ public class FileResultTest {
             assertEquals(expectedTypes[i], result.getType(), "Type mismatch for extension: " + extensions[i]);
         }
     }
+
+    @Test
+    void testFileResultFromAttributes() {
+        // No file is needed, the attributes are taken as given
+        long modified = 1_700_000_000_000L;
+        FileResult result = new FileResult(tempDir.resolve("absent.java").toString(), 4096, modified);
+        assertEquals("absent.java", result.getName());
+        assertEquals("Java", result.getType());
+        assertEquals(4096, result.getSize());
+        assertEquals(LocalDateTime.ofInstant(Instant.ofEpochMilli(modified), ZoneId.systemDefault()),
+                result.getModified());
+    }
 }
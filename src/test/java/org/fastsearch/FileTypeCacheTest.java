@@ -0,0 +1,75 @@
+package org.fastsearch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileTypeCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testLookupMatchesSizeAndModificationTime() {
+        FileTypeCache cache = new FileTypeCache();
+        cache.put("/data/a.dat", 100, 5000, true);
+        cache.put("/data/b.dat", 100, 5000, false);
+
+        assertEquals(1, cache.lookup("/data/a.dat", 100, 5000));
+        assertEquals(0, cache.lookup("/data/b.dat", 100, 5000));
+        assertEquals(FileTypeCache.UNKNOWN, cache.lookup("/data/a.dat", 101, 5000));
+        assertEquals(FileTypeCache.UNKNOWN, cache.lookup("/data/a.dat", 100, 5001));
+        assertEquals(FileTypeCache.UNKNOWN, cache.lookup("/data/c.dat", 100, 5000));
+        assertEquals(2, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    void testUpdateReplacesEntry() {
+        FileTypeCache cache = new FileTypeCache();
+        cache.put("/data/a.dat", 100, 5000, true);
+        cache.put("/data/a.dat", 200, 6000, false);
+
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.lookup("/data/a.dat", 200, 6000));
+        assertEquals(FileTypeCache.UNKNOWN, cache.lookup("/data/a.dat", 100, 5000));
+    }
+
+    @Test
+    void testSizeIsBounded() {
+        FileTypeCache cache = new FileTypeCache(1 << 16);
+        for (int i = 0; i < 200_000; i++) {
+            cache.put("/data/file" + i, i, i, i % 2 == 0);
+        }
+        assertTrue(cache.size() <= 1 << 16);
+        // Recent entries are still found
+        assertEquals(1, cache.lookup("/data/file199998", 199_998, 199_998));
+    }
+
+    @Test
+    void testSaveAndLoad() throws Exception {
+        Path file = tempDir.resolve("filetypes.bin");
+        FileTypeCache cache = new FileTypeCache();
+        for (int i = 0; i < 100_000; i++) {
+            cache.put("/data/file" + i, i, 1000L + i, i % 3 == 0);
+        }
+        cache.save(file);
+
+        FileTypeCache loaded = FileTypeCache.load(file);
+        assertEquals(cache.size(), loaded.size());
+        for (int i = 0; i < 100_000; i++) {
+            assertEquals(i % 3 == 0 ? 1 : 0, loaded.lookup("/data/file" + i, i, 1000L + i));
+        }
+    }
+
+    @Test
+    void testSaveSkippedWhenUnchanged() throws Exception {
+        Path file = tempDir.resolve("filetypes.bin");
+        new FileTypeCache().save(file);
+        assertFalse(Files.exists(file));
+    }
+}
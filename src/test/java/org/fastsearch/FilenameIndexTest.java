@@ -0,0 +1,188 @@
+package org.fastsearch;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FilenameIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final String root = File.separator + "data";
+    private List<String> paths;
+    private FilenameIndex index;
+
+    @BeforeEach
+    void setUp() {
+        paths = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            paths.add(root + File.separator + "logs" + File.separator + "app-" + i + ".log");
+        }
+        paths.add(root + File.separator + "docs" + File.separator + "readme.md");
+        paths.add(root + File.separator + "docs" + File.separator + "résumé.txt");
+        paths.add(root + "2" + File.separator + "other.txt");
+        paths.add(root + File.separator + "docs" + File.separator + "readme.md"); // duplicate
+        index = FilenameIndex.build(List.of(root, root + "2"), "test", paths);
+    }
+
+    private List<String> scan(String scanRoot) {
+        List<String> visited = new ArrayList<>();
+        byte[] prefix = FilenameIndex.prefixOf(scanRoot);
+        int[] range = index.blockRange(prefix);
+        FilenameIndex.PathVisitor visitor = (path, length, nameStart) -> {
+            visited.add(new String(path, 0, length, StandardCharsets.UTF_8));
+            return true;
+        };
+        index.scan(range[0], range[1], prefix, visitor);
+        index.scanAdded(prefix, visitor);
+        return visited;
+    }
+
+    @Test
+    void testSizeIgnoresDuplicates() {
+        assertEquals(103, index.size());
+    }
+
+    @Test
+    void testFrontCodingCompressesSharedPrefixes() {
+        int rawSize = paths.stream().mapToInt(p -> p.getBytes(StandardCharsets.UTF_8).length).sum();
+        assertTrue(index.encodedSize() < rawSize / 2, "encoded " + index.encodedSize() + " of " + rawSize);
+    }
+
+    @Test
+    void testScanWholeRoot() {
+        List<String> visited = scan(root);
+        assertEquals(102, visited.size());
+        assertTrue(visited.contains(root + File.separator + "docs" + File.separator + "résumé.txt"));
+        assertFalse(visited.contains(root + "2" + File.separator + "other.txt"));
+    }
+
+    @Test
+    void testScanSubdirectory() {
+        assertEquals(List.of(root + File.separator + "docs" + File.separator + "readme.md",
+                root + File.separator + "docs" + File.separator + "résumé.txt"), scan(root + File.separator + "docs"));
+        assertEquals(100, scan(root + File.separator + "logs").size());
+        assertTrue(scan(root + File.separator + "missing").isEmpty());
+    }
+
+    @Test
+    void testVisitorSeesFileNameOffset() {
+        byte[] prefix = FilenameIndex.prefixOf(root + "2");
+        int[] range = index.blockRange(prefix);
+        List<String> names = new ArrayList<>();
+        index.scan(range[0], range[1], prefix, (path, length, nameStart) -> {
+            names.add(new String(path, nameStart, length - nameStart, StandardCharsets.UTF_8));
+            return true;
+        });
+        assertEquals(List.of("other.txt"), names);
+    }
+
+    @Test
+    void testVisitorCanStopScan() {
+        byte[] prefix = FilenameIndex.prefixOf(root);
+        int[] range = index.blockRange(prefix);
+        List<String> visited = new ArrayList<>();
+        index.scan(range[0], range[1], prefix, (path, length, nameStart) -> {
+            visited.add(new String(path, 0, length, StandardCharsets.UTF_8));
+            return visited.size() < 5;
+        });
+        assertEquals(5, visited.size());
+    }
+
+    @Test
+    void testCovers() {
+        assertTrue(index.covers(root));
+        assertTrue(index.covers(root + File.separator + "logs"));
+        assertFalse(index.covers(root + "3"));
+    }
+
+    @Test
+    void testSaveAndLoad() throws IOException {
+        Path file = tempDir.resolve("filenames.idx");
+        index.save(file);
+        FilenameIndex loaded = FilenameIndex.load(file);
+        assertEquals(index.size(), loaded.size());
+        assertEquals("test", loaded.getSignature());
+        assertEquals(List.of(root, root + "2"), loaded.getRoots());
+
+        index = loaded;
+        assertEquals(102, scan(root).size());
+    }
+
+    @Test
+    void testEmptyIndex() {
+        index = FilenameIndex.build(List.of(root), "test", List.of());
+        assertEquals(0, index.size());
+        assertTrue(scan(root).isEmpty());
+    }
+
+    @Test
+    void testWithChanges() {
+        String added = root + File.separator + "logs" + File.separator + "new.log";
+        String removed = root + File.separator + "docs" + File.separator + "readme.md";
+        FilenameIndex original = index;
+        index = index.withChanges(List.of(added), List.of(removed));
+
+        assertEquals(103, index.size());
+        assertTrue(index.contains(added));
+        assertFalse(index.contains(removed));
+        assertTrue(scan(root).contains(added));
+        assertFalse(scan(root).contains(removed));
+        // Indexes are immutable, searches in progress keep their view
+        assertTrue(original.contains(removed));
+        assertFalse(original.contains(added));
+
+        index = index.withChanges(List.of(removed), List.of(added));
+        assertEquals(103, index.size());
+        assertTrue(index.contains(removed));
+        assertFalse(index.contains(added));
+    }
+
+    @Test
+    void testPathsUnderIncludeTheOverlay() {
+        String docs = root + File.separator + "docs";
+        String added = docs + File.separator + "new.md";
+        index = index.withChanges(List.of(added), List.of(docs + File.separator + "readme.md"));
+
+        assertEquals(List.of(docs + File.separator + "résumé.txt", added), index.pathsUnder(docs));
+        assertEquals(102, index.pathsUnder(root).size());
+        assertEquals(List.of(root + "2" + File.separator + "other.txt"), index.pathsUnder(root + "2"));
+    }
+
+    @Test
+    void testLargeChangesAreCompacted() {
+        List<String> added = new ArrayList<>();
+        for (int i = 0; i <= FilenameIndex.MAX_OVERLAY_SIZE; i++) {
+            added.add(root + File.separator + "new" + File.separator + i + ".txt");
+        }
+        index = index.withChanges(added, List.of());
+
+        assertEquals(103 + added.size(), index.size());
+        assertEquals(index.encodedSize(), index.compacted().encodedSize());
+        assertTrue(index.contains(added.get(FilenameIndex.MAX_OVERLAY_SIZE)));
+    }
+
+    @Test
+    void testOverlayIsCompactedOnSave() throws IOException {
+        String added = root + File.separator + "logs" + File.separator + "new.log";
+        index = index.withChanges(List.of(added), List.of(paths.get(0)));
+        Path file = tempDir.resolve("filenames.idx");
+        index.save(file);
+
+        FilenameIndex loaded = FilenameIndex.load(file);
+        assertEquals(103, loaded.size());
+        assertTrue(loaded.contains(added));
+        assertFalse(loaded.contains(paths.get(0)));
+        assertEquals(index.compacted().encodedSize(), loaded.encodedSize());
+    }
+}
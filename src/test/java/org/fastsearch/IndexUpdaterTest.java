@@ -0,0 +1,189 @@
+package org.fastsearch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IndexUpdaterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @TempDir
+    Path indexDir;
+
+    private TrigramIndex contentIndex;
+    private IndexUpdater updater;
+    private Path existing;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        existing = tempDir.resolve("existing.txt");
+        Files.writeString(existing, "original content");
+
+        List<String> roots = List.of(tempDir.toString());
+        contentIndex = new TrigramIndex(roots, "test");
+        contentIndex.addDocument(existing.toString(), Files.size(existing),
+                Files.getLastModifiedTime(existing).toMillis(), TrigramIndex.extractTrigrams(existing));
+        FilenameIndex filenameIndex = FilenameIndex.build(roots, "test", List.of(existing.toString()));
+
+        updater = new IndexUpdater(roots, contentIndex, filenameIndex,
+                path -> path.getFileName().toString().equals("excluded"), path -> true,
+                indexDir.resolve("content.idx"), indexDir.resolve("filenames.idx"));
+        updater.start(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        updater.close();
+    }
+
+    private void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Index was not updated in time");
+            Thread.sleep(100);
+        }
+    }
+
+    @Test
+    void testCreatedFileIsIndexed() throws Exception {
+        Path created = tempDir.resolve("created.txt");
+        Files.writeString(created, "freshly written");
+
+        awaitCondition(() -> updater.getFilenameIndex().contains(created.toString()));
+        awaitCondition(() -> !contentIndex.candidates(tempDir.toString(), "freshly").isEmpty());
+    }
+
+    @Test
+    void testModifiedFileIsReindexed() throws Exception {
+        Files.writeString(existing, "replacement text");
+
+        awaitCondition(() -> !contentIndex.candidates(tempDir.toString(), "replacement").isEmpty());
+        assertTrue(contentIndex.candidates(tempDir.toString(), "original").isEmpty());
+    }
+
+    @Test
+    void testDeletedFileIsRemoved() throws Exception {
+        Files.delete(existing);
+
+        awaitCondition(() -> !updater.getFilenameIndex().contains(existing.toString()));
+        awaitCondition(() -> contentIndex.size() == 0);
+    }
+
+    @Test
+    void testNewDirectoryIsWatched() throws Exception {
+        Path subdir = Files.createDirectory(tempDir.resolve("sub"));
+        Path nested = Files.writeString(subdir.resolve("nested.txt"), "nested file");
+        awaitCondition(() -> updater.getFilenameIndex().contains(nested.toString()));
+
+        // Files created after the directory was registered arrive as events on the directory itself
+        Path later = Files.writeString(subdir.resolve("later.txt"), "later file");
+        awaitCondition(() -> updater.getFilenameIndex().contains(later.toString()));
+
+        deleteTree(subdir);
+        awaitCondition(() -> updater.getFilenameIndex().size() == 1);
+        awaitCondition(() -> contentIndex.size() == 1);
+    }
+
+    @Test
+    void testExcludedPathsAreIgnored() throws Exception {
+        Path excludedDir = Files.createDirectory(tempDir.resolve("excluded"));
+        Files.writeString(excludedDir.resolve("hidden.txt"), "hidden");
+        Path marker = Files.writeString(tempDir.resolve("marker.txt"), "marker");
+
+        awaitCondition(() -> updater.getFilenameIndex().contains(marker.toString()));
+        assertFalse(updater.getFilenameIndex().contains(excludedDir.resolve("hidden.txt").toString()));
+        assertEquals(2, contentIndex.size());
+    }
+
+    @Test
+    void testCloseSavesChanges() throws Exception {
+        Path created = Files.writeString(tempDir.resolve("created.txt"), "saved on close");
+        awaitCondition(() -> updater.getFilenameIndex().contains(created.toString()));
+        updater.close();
+
+        assertTrue(FilenameIndex.load(indexDir.resolve("filenames.idx")).contains(created.toString()));
+        assertEquals(2, TrigramIndex.load(indexDir.resolve("content.idx")).size());
+    }
+
+    @Test
+    void testUnwatchedSubtreeIsPolled() throws Exception {
+        Path logs = Files.createDirectories(tempDir.resolve("polled").resolve("logs"));
+        Path old = Files.writeString(logs.resolve("old.log"), "old entry");
+        updater.close();
+        List<String> roots = List.of(tempDir.toString());
+        FilenameIndex filenameIndex = FilenameIndex.build(roots, "test", List.of(existing.toString(), old.toString()));
+        // Only the root is watched
+        updater = new IndexUpdater(roots, contentIndex, filenameIndex, path -> false, path -> true,
+                indexDir.resolve("content.idx"), indexDir.resolve("filenames.idx"), 1);
+        updater.start(false);
+
+        Path added = Files.writeString(logs.resolve("new.log"), "polled entry");
+        updater.pollUnwatched();
+        assertTrue(updater.getFilenameIndex().contains(added.toString()));
+        assertFalse(contentIndex.candidates(tempDir.toString(), "polled").isEmpty());
+
+        // Rewriting a file in place leaves its directory's time alone, the next poll still sees it
+        Files.writeString(old, "rewritten in place");
+        updater.pollUnwatched();
+        assertFalse(contentIndex.candidates(tempDir.toString(), "rewritten").isEmpty());
+        assertTrue(contentIndex.candidates(tempDir.toString(), "old entry").isEmpty());
+
+        deleteTree(logs);
+        updater.pollUnwatched();
+        assertFalse(updater.getFilenameIndex().contains(old.toString()));
+        assertFalse(updater.getFilenameIndex().contains(added.toString()));
+        assertEquals(1, contentIndex.size());
+    }
+
+    @Test
+    void testReconcileListsOnlyChangedDirectories() throws Exception {
+        updater.close();
+        Path old = Files.createDirectory(tempDir.resolve("old"));
+        Path rewritten = Files.writeString(old.resolve("rewritten.txt"), "stale entry");
+        contentIndex.addDocument(rewritten.toString(), Files.size(rewritten),
+                Files.getLastModifiedTime(rewritten).toMillis(), TrigramIndex.extractTrigrams(rewritten));
+        Files.writeString(rewritten, "rewritten while nothing watched");
+        Path unlisted = Files.writeString(old.resolve("unlisted.txt"), "unlisted");
+        // A directory moved in keeps its own time
+        Path moved = Files.createDirectory(tempDir.resolve("moved"));
+        Path inner = Files.writeString(moved.resolve("inner.txt"), "moved in");
+        long now = System.currentTimeMillis();
+        Files.setLastModifiedTime(old, FileTime.fromMillis(now - 3_600_000));
+        Files.setLastModifiedTime(moved, FileTime.fromMillis(now - 3_600_000));
+
+        List<String> roots = List.of(tempDir.toString());
+        Path filenameFile = indexDir.resolve("filenames.idx");
+        FilenameIndex.build(roots, "test", List.of(existing.toString(), rewritten.toString())).save(filenameFile);
+        IndexUpdater.markUpToDate(filenameFile, now - 600_000);
+        updater = new IndexUpdater(roots, contentIndex, FilenameIndex.load(filenameFile), path -> false, path -> true,
+                indexDir.resolve("content.idx"), filenameFile);
+        updater.start(true);
+
+        awaitCondition(() -> updater.getFilenameIndex().contains(inner.toString()));
+        assertFalse(contentIndex.candidates(tempDir.toString(), "rewritten").isEmpty());
+        assertTrue(contentIndex.candidates(tempDir.toString(), "stale").isEmpty());
+        // A directory not modified since the index was saved is not listed again
+        assertFalse(updater.getFilenameIndex().contains(unlisted.toString()));
+    }
+
+    private void deleteTree(Path dir) throws IOException {
+        try (var stream = Files.walk(dir)) {
+            for (Path path : stream.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package org.fastsearch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LiteralScannerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path write(String name, String content) throws IOException {
+        return Files.writeString(tempDir.resolve(name), content);
+    }
+
+    @Test
+    void testFindsLiteralInSmallFile() throws IOException {
+        Path file = write("small.txt", "first line\nsecond line with needle\n");
+        assertTrue(new LiteralScanner("needle", true).matches(file));
+        assertFalse(new LiteralScanner("haystack", true).matches(file));
+    }
+
+    @Test
+    void testCaseInsensitiveFoldsAsciiOnly() throws IOException {
+        Path file = write("case.txt", "ERROR in Ärger");
+        assertTrue(new LiteralScanner("error", false).matches(file));
+        assertFalse(new LiteralScanner("error", true).matches(file));
+        // Like Pattern.CASE_INSENSITIVE without UNICODE_CASE
+        assertFalse(new LiteralScanner("ärger", false).matches(file));
+        assertTrue(new LiteralScanner("Ärger", false).matches(file));
+    }
+
+    @Test
+    void testMatchAtStartAndEnd() throws IOException {
+        Path file = write("edges.txt", "abc middle xyz");
+        assertTrue(new LiteralScanner("abc", true).matches(file));
+        assertTrue(new LiteralScanner("xyz", true).matches(file));
+        assertTrue(new LiteralScanner("abc middle xyz", true).matches(file));
+        assertFalse(new LiteralScanner("abc middle xyz!", true).matches(file));
+    }
+
+    @Test
+    void testLargeFileIsMapped() throws IOException {
+        StringBuilder content = new StringBuilder();
+        while (content.length() < 512 * 1024) {
+            content.append("2024-01-01 INFO request handled in 12ms\n");
+        }
+        content.append("2024-01-01 ERROR disk full\n");
+        Path file = write("large.log", content.toString());
+        assertTrue(new LiteralScanner("disk full", false).matches(file));
+        assertFalse(new LiteralScanner("disk empty", false).matches(file));
+    }
+
+    @Test
+    void testMatchAcrossMappedWindows() throws IOException {
+        byte[] content = new byte[200 * 1024];
+        Arrays.fill(content, (byte) 'x');
+        byte[] needle = "boundary".getBytes(StandardCharsets.UTF_8);
+        // Straddles the first 100 KB window
+        System.arraycopy(needle, 0, content, 100 * 1024 - 3, needle.length);
+        Path file = Files.write(tempDir.resolve("windows.bin"), content);
+        assertTrue(new LiteralScanner(List.of("boundary"), true, null, 100 * 1024).matches(file));
+        assertFalse(new LiteralScanner(List.of("boundaries"), true, null, 100 * 1024).matches(file));
+    }
+
+    @Test
+    void testLinePatternConfirmsCandidateLines() throws IOException {
+        Path file = write("app.log", "ERROR none\nINFO ERROR 42 in text\r\nERROR 1234 disk\n");
+        Pattern pattern = Pattern.compile("^ERROR\\s+\\d{4}");
+        assertTrue(new LiteralScanner(List.of("ERROR"), true, pattern).matches(file));
+        assertFalse(new LiteralScanner(List.of("ERROR"), true, Pattern.compile("^ERROR\\s+\\d{5}")).matches(file));
+        // The regex only sees whole lines, so nothing matches across a line break
+        assertFalse(new LiteralScanner(List.of("none"), true, Pattern.compile("none.INFO", Pattern.DOTALL)).matches(file));
+    }
+
+    @Test
+    void testLinePatternWithLinesAcrossMappedWindows() throws IOException {
+        StringBuilder content = new StringBuilder();
+        while (content.length() < 300 * 1024) {
+            content.append("WARN ").append(content.length()).append(" slow request\n");
+        }
+        content.append("WARN 7 slow request 99ms\n");
+        Path file = write("windows.log", content.toString());
+        Pattern pattern = Pattern.compile("WARN \\d slow request \\d+ms");
+        assertTrue(new LiteralScanner(List.of("slow request"), true, pattern, 100 * 1024).matches(file));
+        assertFalse(new LiteralScanner(List.of("slow request"), true, Pattern.compile("WARN \\d+ slow request \\d+s$"),
+                100 * 1024).matches(file));
+    }
+
+    @Test
+    void testLinesMustContainEveryLiteral() throws IOException {
+        Path file = write("workers.log", "worker-1 ok\nworker-2 ok\nworker-3 failed\n");
+        Pattern pattern = Pattern.compile("worker-\\d+ failed");
+        assertTrue(new LiteralScanner(List.of("worker-", " failed"), true, pattern).matches(file));
+        assertFalse(new LiteralScanner(List.of("worker-", " crashed"), true,
+                Pattern.compile("worker-\\d+ crashed")).matches(file));
+    }
+
+    @Test
+    void testHeadCheckSeesStartOfFileBeforeSearch() throws IOException {
+        Path small = write("small.dat", "head\0 with needle");
+        Path large = write("large.dat", "head\0" + "x".repeat(LiteralScanner.READ_THRESHOLD) + "needle");
+        LiteralScanner scanner = new LiteralScanner("needle", true);
+        for (Path file : List.of(small, large)) {
+            List<Integer> heads = new ArrayList<>();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                assertFalse(scanner.matches(channel, head -> {
+                    heads.add(head.remaining());
+                    return head.get(4) != 0;
+                }));
+            }
+            assertEquals(List.of((int) Math.min(Files.size(file), LiteralScanner.HEAD_SIZE)), heads);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                assertTrue(scanner.matches(channel, head -> true));
+            }
+        }
+    }
+
+    @Test
+    void testHeadCheckSeesFileShorterThanLiteral() throws IOException {
+        Path file = write("tiny.dat", "\0x");
+        List<Integer> heads = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertFalse(new LiteralScanner("needle", true).matches(channel, head -> heads.add(head.remaining())));
+        }
+        assertEquals(List.of(2), heads);
+    }
+
+    @Test
+    void testFindMatchesReportsLineColumnAndOffset() throws IOException {
+        Path file = write("positions.txt", "no match\n  Größe needle here\r\nneedle and needle\n");
+        List<MatchPosition> positions = new LiteralScanner("needle", true).findMatches(file, 10);
+
+        assertEquals(2, positions.size());
+        MatchPosition first = positions.get(0);
+        assertEquals(2, first.line());
+        assertEquals(9, first.column());
+        assertEquals(6, first.length());
+        // "Größe" takes two more bytes than characters
+        assertEquals(9 + 2 + 8, first.offset());
+        assertEquals("Größe needle here", first.snippet());
+        // One position per line, the first match on it
+        assertEquals(new MatchPosition(32, 3, 1, 6, "needle and needle"), positions.get(1));
+    }
+
+    @Test
+    void testSnippetOfHugeLineIsDecodedAroundTheHit() throws IOException {
+        String before = "é".repeat(1_000_000) + " x".repeat(500_000);
+        String after = " y".repeat(1_000_000);
+        String line = before + " needle " + after;
+        Path file = write("minified.js", line + "\n" + "  short needle line  \n");
+        LiteralScanner scanner = new LiteralScanner("needle", true);
+        scanner.findMatches(file, 10);
+
+        long allocated = allocatedBytes();
+        List<MatchPosition> positions = scanner.findMatches(file, 10);
+        allocated = allocatedBytes() - allocated;
+
+        MatchPosition hit = positions.get(0);
+        assertEquals(before.length() + 2, hit.column());
+        assertEquals(MatchPosition.snippet(line, before.length() + 1), hit.snippet());
+        assertTrue(hit.snippet().length() <= MatchPosition.MAX_SNIPPET_LENGTH + 6);
+        assertEquals("short needle line", positions.get(1).snippet());
+        // Nothing the size of the 5 MB line
+        assertTrue(allocated < 1024 * 1024, allocated + " bytes allocated");
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    @Test
+    void testFindMatchesStopsAtLimit() throws IOException {
+        Path file = write("many.txt", "hit\n".repeat(100));
+        List<MatchPosition> positions = new LiteralScanner("hit", true).findMatches(file, 5);
+        assertEquals(5, positions.size());
+        assertEquals(5, positions.get(4).line());
+        assertEquals(16, positions.get(4).offset());
+    }
+
+    @Test
+    void testFindMatchesWithLinePatternAcrossMappedWindows() throws IOException {
+        StringBuilder content = new StringBuilder();
+        int lines = 0;
+        while (content.length() < 300 * 1024) {
+            content.append("WARN ").append(lines++).append(" slow request\n");
+        }
+        long offset = content.length();
+        content.append("WARN 7 slow request 99ms\n");
+        Path file = write("positions.log", content.toString());
+        Pattern pattern = Pattern.compile("request \\d+ms");
+        List<MatchPosition> positions = new LiteralScanner(List.of("slow request"), true, pattern, 100 * 1024)
+                .findMatches(file, 10);
+
+        assertEquals(1, positions.size());
+        assertEquals(lines + 1, positions.get(0).line());
+        assertEquals(13, positions.get(0).column());
+        assertEquals(offset + 12, positions.get(0).offset());
+        assertEquals(12, positions.get(0).length());
+    }
+
+    @Test
+    void testSupports() {
+        assertTrue(LiteralScanner.supports("hello"));
+        assertFalse(LiteralScanner.supports(""));
+        assertFalse(LiteralScanner.supports("two\nlines"));
+        assertFalse(LiteralScanner.supports("bad\uFFFDbyte"));
+    }
+}
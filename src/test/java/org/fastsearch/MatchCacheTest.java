@@ -0,0 +1,82 @@
+package org.fastsearch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MatchCacheTest {
+
+    @Test
+    void testEntriesAreKeyedByQueryAndFileState() {
+        MatchCache cache = new MatchCache();
+        long error = MatchCache.queryKey("content:0:ERROR");
+        long warning = MatchCache.queryKey("content:0:WARNING");
+        cache.put(error, "/logs/a.log", 100, 5000, 1);
+        cache.put(warning, "/logs/a.log", 100, 5000, 0);
+
+        assertEquals(1, cache.lookup(error, "/logs/a.log", 100, 5000));
+        assertEquals(0, cache.lookup(warning, "/logs/a.log", 100, 5000));
+        assertEquals(MatchCache.UNKNOWN, cache.lookup(error, "/logs/b.log", 100, 5000));
+        assertEquals(MatchCache.UNKNOWN, cache.lookup(MatchCache.queryKey("content:2:ERROR"), "/logs/a.log", 100, 5000));
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    void testChangedFileIsUnknown() {
+        MatchCache cache = new MatchCache();
+        long query = MatchCache.queryKey("content:0:ERROR");
+        cache.put(query, "/logs/a.log", 100, 5000, 1);
+
+        assertEquals(MatchCache.UNKNOWN, cache.lookup(query, "/logs/a.log", 120, 5000));
+        assertEquals(MatchCache.UNKNOWN, cache.lookup(query, "/logs/a.log", 100, 6000));
+
+        cache.put(query, "/logs/a.log", 120, 6000, 0);
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.lookup(query, "/logs/a.log", 120, 6000));
+    }
+
+    @Test
+    void testKeepsTermMasks() {
+        MatchCache cache = new MatchCache();
+        long query = MatchCache.queryKey("multi:false:a\0b\0c");
+        cache.put(query, "/src/Main.java", 10, 20, 0b101);
+        assertEquals(0b101, cache.lookup(query, "/src/Main.java", 10, 20));
+    }
+
+    @Test
+    void testKeepsPositionsOfRecentMatches() {
+        MatchCache cache = new MatchCache();
+        long query = MatchCache.queryKey("content:0:ERROR");
+        List<MatchPosition> positions = List.of(new MatchPosition(6, 1, 7, 5, "disk ERROR"));
+        cache.put(query, "/logs/a.log", 100, 5000, 1, positions);
+        cache.put(query, "/logs/b.log", 100, 5000, 1);
+
+        assertEquals(positions, cache.positions(query, "/logs/a.log", 100, 5000));
+        assertNull(cache.positions(query, "/logs/a.log", 120, 5000));
+        assertNull(cache.positions(query, "/logs/b.log", 100, 5000));
+
+        for (int i = 0; i < MatchCache.MAX_POSITION_ENTRIES; i++) {
+            cache.put(query, "/logs/other" + i + ".log", 100, 5000, 1, positions);
+        }
+        assertNull(cache.positions(query, "/logs/a.log", 100, 5000));
+        assertEquals(positions, cache.positions(query, "/logs/other0.log", 100, 5000));
+    }
+
+    @Test
+    void testSizeIsBoundedAndClearable() {
+        MatchCache cache = new MatchCache(1 << 16);
+        long query = MatchCache.queryKey("content:0:x");
+        for (int i = 0; i < 200_000; i++) {
+            cache.put(query, "/data/file" + i, i, i, i & 1);
+        }
+        assertTrue(cache.size() <= 1 << 16);
+        assertEquals(1, cache.lookup(query, "/data/file199999", 199_999, 199_999));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(MatchCache.UNKNOWN, cache.lookup(query, "/data/file199999", 199_999, 199_999));
+    }
+}
@@ -0,0 +1,144 @@
+package org.fastsearch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelScanTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private final ParallelScan parallelScan = new ParallelScan(pool, 0, 1024, () -> false);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    private Path log(String lineBreak, int lines) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 1; i <= lines; i++) {
+            content.append("2024-01-01 line ").append(i).append(i % 97 == 0 ? " ERROR disk full" : " ok")
+                    .append(lineBreak);
+        }
+        return Files.writeString(tempDir.resolve("app.log"), content);
+    }
+
+    @Test
+    void testChunksFindWhatOneThreadFinds() throws IOException {
+        for (String lineBreak : List.of("\n", "\r\n")) {
+            Path file = log(lineBreak, 5000);
+            LiteralScanner literal = new LiteralScanner("error", false);
+            LiteralScanner regex = new LiteralScanner(List.of("ERROR"), true, Pattern.compile("ERROR \\w+"));
+            PatternScanner pattern = new PatternScanner(Pattern.compile("line \\d+5 ok$"));
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                assertNotNull(parallelScan.split(channel));
+                for (int max : new int[]{1, 20, 1000}) {
+                    List<MatchPosition> expected = literal.findMatches(channel, null, max);
+                    assertEquals(expected, literal.findMatches(channel, null, max, parallelScan), "literal " + max);
+                    assertEquals(regex.findMatches(channel, null, max), regex.findMatches(channel, null, max, parallelScan),
+                            "regex " + max);
+                    assertEquals(pattern.findMatches(channel, null, max),
+                            pattern.findMatches(channel, null, max, parallelScan), "pattern " + max);
+                }
+                assertEquals(51, literal.findMatches(channel, null, 1000, parallelScan).size());
+                assertTrue(literal.matches(channel, null, parallelScan));
+                assertFalse(new LiteralScanner("missing", false).matches(channel, null, parallelScan));
+            }
+        }
+    }
+
+    @Test
+    void testHeadCheckSkipsTheFile() throws IOException {
+        Path file = log("\n", 2000);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            LiteralScanner scanner = new LiteralScanner("ERROR", true);
+            assertFalse(scanner.matches(channel, head -> false, parallelScan));
+            assertTrue(scanner.findMatches(channel, head -> false, 10, parallelScan).isEmpty());
+        }
+    }
+
+    @Test
+    void testSmallFilesAndLongLinesAreNotSplit() throws IOException {
+        Path small = Files.writeString(tempDir.resolve("small.log"), "one\ntwo\n");
+        Path oneLine = Files.writeString(tempDir.resolve("line.log"), "x".repeat(200_000));
+        try (FileChannel smallChannel = FileChannel.open(small, StandardOpenOption.READ);
+             FileChannel lineChannel = FileChannel.open(oneLine, StandardOpenOption.READ)) {
+            assertNull(parallelScan.split(smallChannel));
+            // No line starts after the first chunk, which leaves it as the only one
+            assertNull(parallelScan.split(lineChannel));
+        }
+        try (FileChannel channel = FileChannel.open(log("\n", 2000), StandardOpenOption.READ)) {
+            assertNull(new ParallelScan(pool, channel.size(), 1024, () -> false).split(channel));
+        }
+    }
+
+    @Test
+    void testParallelismCapsChunksReadAtOnce() throws IOException {
+        Path file = log("\n", 5000);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ParallelScan scan = parallelScan.withParallelism(2);
+            long[] chunks = scan.split(channel);
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger most = new AtomicInteger();
+            AtomicInteger scanned = new AtomicInteger();
+            assertFalse(scan.matches(channel, chunks, (chunk, length, collector) -> {
+                most.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                scanned.incrementAndGet();
+                return false;
+            }));
+            assertEquals(chunks.length - 1, scanned.get());
+            assertTrue(most.get() <= 2, "read " + most.get() + " chunks at once");
+        }
+    }
+
+    @Test
+    void testHitCancelsTheChunksAfterIt() throws IOException {
+        Path file = log("\n", 5000);
+        ForkJoinPool single = new ForkJoinPool(1);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ParallelScan scan = new ParallelScan(single, 0, 1024, () -> false);
+            long[] chunks = scan.split(channel);
+            AtomicInteger scanned = new AtomicInteger();
+            assertTrue(scan.matches(channel, chunks, (chunk, length, collector) -> {
+                scanned.incrementAndGet();
+                return true;
+            }));
+            assertEquals(1, scanned.get());
+
+            // Skipped chunks could hold the match, a cancelled scan has no answer rather than a negative one
+            AtomicInteger cancelledScans = new AtomicInteger();
+            ParallelScan cancelled = new ParallelScan(single, 0, 1024, () -> true);
+            assertThrows(CancellationException.class, () -> cancelled.matches(channel, chunks, (chunk, length, collector) -> {
+                cancelledScans.incrementAndGet();
+                return true;
+            }));
+            assertThrows(CancellationException.class,
+                    () -> cancelled.findMatches(channel, chunks, (chunk, length, collector) -> false, 10));
+            assertEquals(0, cancelledScans.get());
+        } finally {
+            single.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.fastsearch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PatternScannerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private List<MatchPosition> find(PatternScanner scanner, String content, int maxMatches) throws IOException {
+        Path file = Files.writeString(tempDir.resolve("file.txt"), content);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return scanner.findMatches(channel, null, maxMatches);
+        }
+    }
+
+    @Test
+    void testReportsMatchingLines() throws IOException {
+        List<MatchPosition> positions = find(new PatternScanner(Pattern.compile("\\d{3}")),
+                "abc\nid=123\r\nnone\n4567 and 890\n", 10);
+        assertEquals(List.of(new MatchPosition(7, 2, 4, 3, "id=123"), new MatchPosition(17, 4, 1, 3, "4567 and 890")),
+                positions);
+    }
+
+    @Test
+    void testCrLfIsOneLineBreak() throws IOException {
+        List<MatchPosition> positions = find(new PatternScanner(Pattern.compile("^$")), "a\r\nb\r\n\r\nc", 10);
+        assertEquals(1, positions.size());
+        assertEquals(3, positions.get(0).line());
+    }
+
+    @Test
+    void testLinesAcrossMappedWindows() throws IOException {
+        StringBuilder content = new StringBuilder();
+        while (content.length() < 200 * 1024) {
+            content.append("line without digits\n");
+        }
+        int lines = content.length() / "line without digits\n".length();
+        content.append("value 42\n");
+        List<MatchPosition> positions = find(new PatternScanner(Pattern.compile("\\d+"), 64 * 1024),
+                content.toString(), 10);
+        assertEquals(1, positions.size());
+        assertEquals(lines + 1, positions.get(0).line());
+        assertEquals(7, positions.get(0).column());
+    }
+
+    @Test
+    void testHeadCheckCanSkipFile() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("file.txt"), "123");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertTrue(new PatternScanner(Pattern.compile("\\d")).findMatches(channel, head -> false, 10).isEmpty());
+        }
+    }
+
+    @Test
+    void testLongLinesAreShortenedAroundMatch() {
+        String line = "x".repeat(500) + "MATCH" + "y".repeat(500);
+        String snippet = MatchPosition.snippet(line, 500);
+        assertTrue(snippet.contains("MATCH"));
+        assertTrue(snippet.length() <= MatchPosition.MAX_SNIPPET_LENGTH + 6);
+        assertTrue(snippet.startsWith("...") && snippet.endsWith("..."));
+    }
+}
@@ -0,0 +1,57 @@
+package org.fastsearch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RegexLiteralsTest {
+
+    @Test
+    void testLiteralBeforeCharacterClasses() {
+        assertEquals(List.of("ERROR"), RegexLiterals.required("ERROR\\s+\\d{4}"));
+    }
+
+    @Test
+    void testLiteralsAreSortedLongestFirst() {
+        assertEquals(List.of("timeout", "at"), RegexLiterals.required("at\\s\\w+\\stimeout"));
+    }
+
+    @Test
+    void testOptionalAtomsBreakLiterals() {
+        assertEquals(List.of("colo", "r"), RegexLiterals.required("colou?r"));
+        assertEquals(List.of("ab", "d"), RegexLiterals.required("abc*d"));
+        assertEquals(List.of("ab", "c"), RegexLiterals.required("ab+c"));
+    }
+
+    @Test
+    void testEscapesAndAnchors() {
+        assertEquals(List.of("file.txt"), RegexLiterals.required("^file\\.txt$"));
+        assertEquals(List.of("word"), RegexLiterals.required("\\bword\\b"));
+        assertEquals(List.of("a+b"), RegexLiterals.required("\\Qa+b\\E"));
+    }
+
+    @Test
+    void testGroups() {
+        assertEquals(List.of("error", "id="), RegexLiterals.required("(?:error)id=\\d+"));
+        assertEquals(List.of("user"), RegexLiterals.required("(?<name>user)\\d"));
+        assertEquals(List.of("key"), RegexLiterals.required("key(value)?"));
+        assertEquals(List.of("foo"), RegexLiterals.required("foo(bar|baz)"));
+    }
+
+    @Test
+    void testNothingRequired() {
+        assertTrue(RegexLiterals.required("foo|bar").isEmpty());
+        assertTrue(RegexLiterals.required("\\d+").isEmpty());
+        assertTrue(RegexLiterals.required("[abc]+.*").isEmpty());
+        assertTrue(RegexLiterals.required("(?i)Error").isEmpty());
+        assertTrue(RegexLiterals.required("").isEmpty());
+    }
+
+    @Test
+    void testCharacterClassContentIsNotLiteral() {
+        assertEquals(List.of("x"), RegexLiterals.required("[]a]x"));
+        assertEquals(List.of("end"), RegexLiterals.required("[\\]]end"));
+    }
+}
@@ -0,0 +1,96 @@
+package org.fastsearch;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchCliTest {
+
+    @TempDir
+    Path tempDir;
+
+    @TempDir
+    Path indexDir;
+
+    private SearchConfig config;
+    private ByteArrayOutputStream out;
+    private ByteArrayOutputStream err;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        config = new SearchConfig();
+        config.getExcludePatterns().clear();
+        config.setIndexDirectory(indexDir.toString());
+        out = new ByteArrayOutputStream();
+        err = new ByteArrayOutputStream();
+
+        Files.writeString(tempDir.resolve("a.txt"), "first line\nHello World\n");
+        Files.writeString(tempDir.resolve("b.log"), "nothing to see");
+    }
+
+    private int run(String... args) {
+        return SearchCli.run(args, config, out, new PrintStream(err, true, StandardCharsets.UTF_8), false);
+    }
+
+    private List<String> lines() {
+        return out.toString(StandardCharsets.UTF_8).lines().toList();
+    }
+
+    @Test
+    void testPrintsPathsAndExitsLikeGrep() {
+        assertEquals(SearchCli.FOUND, run("Hello", tempDir.toString()));
+        assertEquals(List.of(tempDir.resolve("a.txt").toString()), lines());
+
+        out.reset();
+        assertEquals(SearchCli.NOT_FOUND, run("absent", tempDir.toString()));
+        assertEquals(List.of(), lines());
+    }
+
+    @Test
+    void testJsonLinesCarrySizeAndMatches() {
+        assertEquals(SearchCli.FOUND, run("--json", "-i", "hello", tempDir.toString()));
+
+        JsonObject hit = JsonParser.parseString(lines().get(0)).getAsJsonObject();
+        assertEquals(tempDir.resolve("a.txt").toString(), hit.get("path").getAsString());
+        assertEquals(23, hit.get("size").getAsLong());
+        JsonObject match = hit.getAsJsonArray("matches").get(0).getAsJsonObject();
+        assertEquals(2, match.get("line").getAsInt());
+        assertEquals("Hello World", match.get("text").getAsString());
+    }
+
+    @Test
+    void testCountAndFilesWithoutMatch() {
+        assertEquals(SearchCli.FOUND, run("-c", "Hello", tempDir.toString()));
+        assertEquals(List.of("1"), lines());
+
+        out.reset();
+        assertEquals(SearchCli.FOUND, run("-L", "Hello", tempDir.toString()));
+        assertEquals(List.of(tempDir.resolve("b.log").toString()), lines());
+    }
+
+    @Test
+    void testErrorsExitWithTwo() {
+        assertEquals(SearchCli.ERROR, run());
+        assertEquals(SearchCli.ERROR, run("--bogus", "x"));
+        assertEquals(SearchCli.ERROR, run("x", tempDir.resolve("missing").toString()));
+        assertEquals(SearchCli.ERROR, run("-E", "(", tempDir.toString()));
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("invalid regular expression"));
+        assertEquals(SearchCli.ERROR, run("-m", "0", "Hello", tempDir.toString()));
+        assertEquals(SearchCli.ERROR, run("-m", "-3", "Hello", tempDir.toString()));
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("not a positive number: -3"));
+        assertEquals(SearchCli.ERROR, run("-n", "-E", "a.c", tempDir.toString()));
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("-E, -L and -c only apply to content searches"));
+    }
+}
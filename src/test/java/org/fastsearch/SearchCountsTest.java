@@ -0,0 +1,27 @@
+package org.fastsearch;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchCountsTest {
+
+    @Test
+    void testFilesAreCountedUnderInnermostRoot() {
+        SearchCounts counts = new SearchCounts(List.of("/data", "/data/logs", "/home"));
+        counts.add(Paths.get("/data/a.txt"), 10);
+        counts.add(Paths.get("/data/logs/b.log"), 20);
+        counts.add(Paths.get("/data/logs/old/c.log"), 30);
+        counts.add(Paths.get("/datastore/d.txt"), 40);
+
+        assertEquals(List.of(
+                new SearchCounts.RootCount("/data", 1, 10),
+                new SearchCounts.RootCount("/data/logs", 2, 50),
+                new SearchCounts.RootCount("/home", 0, 0)), counts.getRoots());
+        assertEquals(3, counts.getFiles());
+        assertEquals(60, counts.getBytes());
+    }
+}
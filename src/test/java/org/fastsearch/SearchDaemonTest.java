@@ -0,0 +1,157 @@
+package org.fastsearch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.gson.Gson;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchDaemonTest {
+
+    @TempDir
+    Path tempDir;
+
+    @TempDir
+    Path indexDir;
+
+    private SearchDaemon daemon;
+    private DaemonClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        SearchConfig config = new SearchConfig();
+        config.getExcludePatterns().clear();
+        config.setIndexDirectory(indexDir.toString());
+        Path socket = SearchDaemon.socketPath(config);
+        daemon = new SearchDaemon(config, socket);
+        daemon.start();
+        client = new DaemonClient(socket);
+
+        Files.writeString(tempDir.resolve("a.txt"), "first line\nHello World\n");
+        Files.writeString(tempDir.resolve("b.log"), "nothing to see");
+    }
+
+    @AfterEach
+    void tearDown() {
+        daemon.close();
+    }
+
+    private static SearchRequest request(String query, Path folder) {
+        SearchRequest request = new SearchRequest();
+        request.setQuery(query);
+        request.setFolder(folder.toString());
+        return request;
+    }
+
+    @Test
+    void testSearchStreamsHitsWithPositions() throws IOException {
+        List<SearchHit> hits = new CopyOnWriteArrayList<>();
+        assertNull(client.search(request("Hello", tempDir), hits::add, null));
+
+        assertEquals(1, hits.size());
+        assertEquals(tempDir.resolve("a.txt").toString(), hits.get(0).path());
+        assertEquals(List.of(new MatchPosition(11, 2, 1, 5, "Hello World")), hits.get(0).matchPositions());
+        assertEquals(1, client.getProgress().getFilesMatched());
+        assertEquals(1, client.getMetrics().phases().stream()
+                .filter(phase -> phase.phase() == SearchMetrics.Phase.DELIVERY)
+                .findFirst().orElseThrow().count());
+    }
+
+    @Test
+    void testCountOnlySearchReturnsCounts() throws IOException {
+        SearchRequest request = request("Hello", tempDir);
+        request.setCountOnly(true);
+        request.setWithoutMatch(true);
+
+        SearchCounts counts = client.search(request, hit -> fail("Counting reports no files"), null);
+        assertEquals(1, counts.getFiles());
+        assertEquals(tempDir.toString(), counts.getRoots().get(0).root());
+    }
+
+    @Test
+    void testErrorsAreReported() {
+        SearchRequest request = request("(", tempDir);
+        request.setRegex(true);
+        assertThrows(IOException.class, () -> client.search(request, hit -> {
+        }, null));
+    }
+
+    @Test
+    void testCancelStopsSearch() throws Exception {
+        Path many = Files.createDirectory(tempDir.resolve("many"));
+        for (int i = 0; i < 2000; i++) {
+            Files.writeString(many.resolve("f" + i + ".txt"), "needle " + i);
+        }
+        CountDownLatch firstHit = new CountDownLatch(1);
+        List<SearchHit> hits = new CopyOnWriteArrayList<>();
+        Thread canceller = new Thread(() -> {
+            try {
+                firstHit.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            client.cancel();
+        });
+        canceller.start();
+
+        client.search(request("needle", many), hit -> {
+            hits.add(hit);
+            firstHit.countDown();
+            try {
+                // Slow reader, so the daemon is still searching when the cancel arrives
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, null);
+        canceller.join();
+
+        assertFalse(hits.isEmpty());
+        assertTrue(hits.size() < 2000);
+    }
+
+    @Test
+    void testSocketIsPrivate() throws IOException {
+        Path socket = indexDir.resolve(SearchDaemon.SOCKET_FILE);
+        assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(indexDir)));
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(socket)));
+    }
+
+    @Test
+    void testMessageWithoutTypeIsAnswered() throws IOException {
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(indexDir.resolve(SearchDaemon.SOCKET_FILE)))) {
+            channel.write(ByteBuffer.wrap("{}\n".getBytes(StandardCharsets.UTF_8)));
+            BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            SearchDaemon.Message reply = new Gson().fromJson(in.readLine(), SearchDaemon.Message.class);
+            assertEquals(SearchDaemon.Message.ERROR, reply.type);
+        }
+        assertTrue(client.isRunning());
+    }
+
+    @Test
+    void testShutdownStopsDaemon() throws Exception {
+        assertTrue(client.isRunning());
+        client.shutdown();
+        daemon.awaitStop();
+        assertFalse(client.isRunning());
+    }
+}
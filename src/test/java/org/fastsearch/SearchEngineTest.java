@@ -1,15 +1,29 @@
 package org.fastsearch;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import javax.management.JMX;
+import javax.management.MBeanServer;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -18,6 +32,9 @@ public class SearchEngineTest {
     @TempDir
     Path tempDir;
 
+    @TempDir
+    Path indexDir;
+
     private SearchConfig config;
     private SearchEngine searchEngine;
 
@@ -26,6 +43,8 @@ public class SearchEngineTest {
         config = new SearchConfig();
         // Clear exclude patterns before each test
         config.getExcludePatterns().clear();
+        // Keep the file type cache out of the user's home
+        config.setIndexDirectory(indexDir.toString());
         searchEngine = new SearchEngine(config);
 
         // Create a diverse set of test files
@@ -49,16 +68,21 @@ public class SearchEngineTest {
 
     private List<FileResult> runFilenameSearch(String query, String extension, String folder, SearchFilters filters, int maxResults, boolean caseSensitive) {
         List<FileResult> results = new CopyOnWriteArrayList<>();
-        searchEngine.searchFilenameRealtime(query, extension, folder, filters, maxResults, caseSensitive, results::add, null);
+        searchEngine.searchFilenameRealtime(query, extension, folder, filters, maxResults, caseSensitive, hit -> results.add(new FileResult(hit)), null);
         return results;
     }
 
     private List<FileResult> runContentSearch(String query, String extension, String folder, SearchFilters filters, int maxResults, boolean caseSensitive, boolean isRegex) {
         List<FileResult> results = new CopyOnWriteArrayList<>();
-        searchEngine.searchContentRealtime(query, extension, folder, filters, maxResults, caseSensitive, isRegex, results::add, null);
+        searchEngine.searchContentRealtime(query, extension, folder, filters, maxResults, caseSensitive, isRegex, hit -> results.add(new FileResult(hit)), null);
         return results;
     }
 
+    @AfterEach
+    void tearDown() {
+        searchEngine.close();
+    }
+
     @Test
     void testFilenameSearch() {
         List<FileResult> results = runFilenameSearch("testFile1", null, tempDir.toString(), new SearchFilters(), 10, false);
@@ -103,6 +127,53 @@ public class SearchEngineTest {
         assertEquals("testFile3.txt", results.get(0).getName());
     }
 
+    @Test
+    void testContentRegexWithRequiredLiteral() throws IOException {
+        Files.writeString(tempDir.resolve("app.log"), "ERROR in module\nstatus ERROR 1234 reported\n");
+        Files.writeString(tempDir.resolve("other.log"), "ERROR without code\n1234 without prefix\n");
+        List<FileResult> results = runContentSearch("error\\s+\\d{4}", null, tempDir.toString(), new SearchFilters(), 10, false, true);
+        assertEquals(1, results.size());
+        assertEquals("app.log", results.get(0).getName());
+
+        results = runContentSearch("^error\\s+\\d{4}", null, tempDir.toString(), new SearchFilters(), 10, false, true);
+        assertTrue(results.isEmpty());
+    }
+
+    @Test
+    void testMultiTermContentSearch() {
+        List<FileResult> results = new CopyOnWriteArrayList<>();
+        searchEngine.searchContentMultiRealtime(List.of("hello", "subdirectory", "missing"), null, tempDir.toString(),
+                new SearchFilters(), 10, false, hit -> results.add(new FileResult(hit)), null);
+        assertEquals(3, results.size());
+        for (FileResult result : results) {
+            List<String> expected = result.getName().equals("testFile3.txt") ? List.of("subdirectory") : List.of("hello");
+            assertEquals(expected, result.getMatchedTerms(), result.getName());
+        }
+    }
+
+    @Test
+    void testSearchThroughLinkedRoot() throws IOException {
+        Path link = Files.createSymbolicLink(indexDir.resolve("linked"), tempDir);
+        List<FileResult> results = runFilenameSearch("testFile3", null, link.toString(), new SearchFilters(), 10, false);
+        assertEquals(1, results.size());
+        assertEquals(link.resolve("subdir").resolve("testFile3.txt").toString(), results.get(0).getPath());
+        assertEquals(Files.size(tempDir.resolve("subdir/testFile3.txt")), results.get(0).getSize());
+    }
+
+    @Test
+    void testPipelinedContentSearchStopsAtMaxResults() throws IOException {
+        Path many = Files.createDirectory(tempDir.resolve("many"));
+        for (int i = 0; i < 300; i++) {
+            Files.writeString(many.resolve("file" + i + ".txt"), "needle number " + i);
+        }
+        List<FileResult> results = runContentSearch("needle", null, many.toString(), new SearchFilters(), 7, false, false);
+        assertEquals(7, results.size());
+        assertEquals(0, searchEngine.getScanQueueDepth());
+
+        results = runContentSearch("needle", null, many.toString(), new SearchFilters(), 1000, false, false);
+        assertEquals(300, results.size());
+    }
+
     @Test
     void testExcludeDir() {
         config.getExcludePatterns().add("excluded_dir");
@@ -189,9 +260,340 @@ public class SearchEngineTest {
         assertEquals(0, results.size());
     }
     
+    @Test
+    void testProgressCountsSearchedFiles() {
+        List<FileResult> results = runContentSearch("hello", null, tempDir.toString(), new SearchFilters(), 10, false, false);
+
+        SearchProgress progress = searchEngine.getProgress();
+        assertEquals(2, results.size());
+        assertEquals(2, progress.getFilesMatched());
+        assertEquals(8, progress.getFilesSeen());
+        assertEquals(3, progress.getDirectoriesVisited());
+        assertTrue(progress.getBytesScanned() > 0);
+        assertEquals(0, progress.getEstimatedMillisLeft());
+    }
+
+    @Test
+    void testDateFilterSkipsReadingFilesOutOfRange() throws IOException {
+        FileTime old = FileTime.from(Instant.parse("2020-01-01T00:00:00Z"));
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                Files.setLastModifiedTime(file, old);
+            }
+        }
+        Path recent = tempDir.resolve("testFile1.txt");
+        Files.setLastModifiedTime(recent, FileTime.from(Instant.now()));
+
+        SearchFilters filters = new SearchFilters();
+        filters.setModifiedAfter(LocalDateTime.now().minusDays(1));
+        List<FileResult> results = runContentSearch("hello", null, tempDir.toString(), filters, 10, false, false);
+
+        assertEquals(1, results.size());
+        assertEquals("testFile1.txt", results.get(0).getName());
+        // Only the file in range was read
+        assertEquals(Files.size(recent), searchEngine.getProgress().getBytesScanned());
+    }
+
+    @Test
+    void testFileTypeIsRememberedAcrossSearchesAndRestarts() throws IOException {
+        config.setIndexDirectory(indexDir.toString());
+        Path data = tempDir.resolve("data.dat");
+        Files.writeString(data, "hello x");
+        assertEquals(1, runContentSearch("hello", "dat", tempDir.toString(), new SearchFilters(), 10, false, false).size());
+
+        // A NUL byte would make the file binary, but size and time are unchanged so it is not sniffed again
+        FileTime modified = Files.getLastModifiedTime(data);
+        Files.write(data, "hello\0x".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(data, modified);
+        assertEquals(1, runContentSearch("hello", "dat", tempDir.toString(), new SearchFilters(), 10, false, false).size());
+
+        searchEngine.close();
+        searchEngine = new SearchEngine(config);
+        assertEquals(1, runContentSearch("hello", "dat", tempDir.toString(), new SearchFilters(), 10, false, false).size());
+
+        Files.setLastModifiedTime(data, FileTime.fromMillis(modified.toMillis() + 1000));
+        assertTrue(runContentSearch("hello", "dat", tempDir.toString(), new SearchFilters(), 10, false, false).isEmpty());
+    }
+
+    @Test
+    void testSniffedBinaryFilesAreSkippedInEveryMode() throws IOException {
+        Files.write(tempDir.resolve("image.dat"), "hello\0binary".getBytes(StandardCharsets.UTF_8));
+        Files.writeString(tempDir.resolve("notes.dat"), "hello text");
+
+        List<FileResult> literal = runContentSearch("hello", "dat", tempDir.toString(), new SearchFilters(), 10, false, false);
+        List<FileResult> regex = runContentSearch("h.llo", "dat", tempDir.toString(), new SearchFilters(), 10, false, true);
+        List<FileResult> multi = new CopyOnWriteArrayList<>();
+        searchEngine.searchContentMultiRealtime(List.of("hello", "binary"), "dat", tempDir.toString(),
+                new SearchFilters(), 10, false, hit -> multi.add(new FileResult(hit)), null);
+
+        for (List<FileResult> results : List.of(literal, regex, multi)) {
+            assertEquals(1, results.size());
+            assertEquals("notes.dat", results.get(0).getName());
+        }
+    }
+
+    @Test
+    void testRepeatedQueryUsesMatchCacheUntilFileChanges() throws IOException {
+        Path file = tempDir.resolve("testFile1.txt");
+        assertEquals(2, runContentSearch("hello", null, tempDir.toString(), new SearchFilters(), 10, false, false).size());
+
+        // Same size and time: the earlier answer is reused and nothing is read
+        FileTime modified = Files.getLastModifiedTime(file);
+        Files.writeString(file, "Jello World from test file 1.");
+        Files.setLastModifiedTime(file, modified);
+        assertEquals(2, runContentSearch("hello", null, tempDir.toString(), new SearchFilters(), 10, false, false).size());
+        assertEquals(0, searchEngine.getProgress().getBytesScanned());
+
+        // A case-sensitive search is a different query
+        assertTrue(runContentSearch("hello", null, tempDir.toString(), new SearchFilters(), 10, true, false).stream()
+                .noneMatch(r -> r.getName().equals("testFile1.txt")));
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified.toMillis() + 1000));
+        List<FileResult> results = runContentSearch("hello", null, tempDir.toString(), new SearchFilters(), 10, false, false);
+        assertEquals(1, results.size());
+        assertEquals("testFile2.log", results.get(0).getName());
+    }
+
+    @Test
+    void testMultiTermResultsAreCachedWithTheirTerms() throws IOException {
+        List<FileResult> first = new CopyOnWriteArrayList<>();
+        searchEngine.searchContentMultiRealtime(List.of("hello", "file 1"), null, tempDir.toString(),
+                new SearchFilters(), 10, false, hit -> first.add(new FileResult(hit)), null);
+        List<FileResult> second = new CopyOnWriteArrayList<>();
+        searchEngine.searchContentMultiRealtime(List.of("hello", "file 1"), null, tempDir.toString(),
+                new SearchFilters(), 10, false, hit -> second.add(new FileResult(hit)), null);
+
+        assertEquals(0, searchEngine.getProgress().getBytesScanned());
+        assertEquals(terms(first), terms(second));
+        assertEquals(List.of("hello", "file 1"), terms(second).get("testFile1.txt"));
+    }
+
+    private static Map<String, List<String>> terms(List<FileResult> results) {
+        return results.stream().collect(Collectors.toMap(FileResult::getName, FileResult::getMatchedTerms));
+    }
+
+    @Test
+    void testContentResultsCarryMatchPositions() throws IOException {
+        Files.writeString(tempDir.resolve("server.log"), "started\nERROR 1234 disk full\nstopped\n");
+        List<FileResult> literal = runContentSearch("disk", "log", tempDir.toString(), new SearchFilters(), 10, false, false);
+        List<FileResult> regex = runContentSearch("\\d{4}", "log", tempDir.toString(), new SearchFilters(), 10, false, true);
+
+        assertEquals(List.of(new MatchPosition(19, 2, 12, 4, "ERROR 1234 disk full")), literal.get(0).getMatchPositions());
+        assertEquals(List.of(new MatchPosition(14, 2, 7, 4, "ERROR 1234 disk full")), regex.get(0).getMatchPositions());
+
+        // Answered by the match cache, with the same positions
+        List<FileResult> again = runContentSearch("disk", "log", tempDir.toString(), new SearchFilters(), 10, false, false);
+        assertEquals(0, searchEngine.getProgress().getBytesScanned());
+        assertEquals(literal.get(0).getMatchPositions(), again.get(0).getMatchPositions());
+    }
+
+    @Test
+    void testCountContentCountsWithoutBuildingResults() {
+        SearchCounts counts = searchEngine.countContent("hello", null, tempDir.toString(), new SearchFilters(),
+                false, false, false, null);
+        assertEquals(2, counts.getFiles());
+        assertEquals(List.of(new SearchCounts.RootCount(tempDir.toString(), 2, counts.getBytes())), counts.getRoots());
+        assertEquals(2, searchEngine.getProgress().getFilesMatched());
+    }
+
+    @Test
+    void testFilesWithoutMatch() throws IOException {
+        Files.write(tempDir.resolve("image.bin"), new byte[]{0, 1, 2, 3});
+        // Shorter than the query, still sniffed as binary
+        Files.write(tempDir.resolve("tiny.bin"), new byte[]{0, 1});
+        List<FileResult> results = new CopyOnWriteArrayList<>();
+        searchEngine.searchContentWithoutMatch("file", "txt", tempDir.toString(), new SearchFilters(), 10, false,
+                false, hit -> results.add(new FileResult(hit)), null);
+        SearchCounts counts = searchEngine.countContent("file", null, tempDir.toString(), new SearchFilters(),
+                false, false, true, null);
+
+        // Files sniffed as binary are left out rather than reported as not matching
+        assertEquals(List.of("TESTFILE_UPPER.txt", "small.txt"), results.stream().map(FileResult::getName).sorted().toList());
+        assertEquals(3, counts.getFiles());
+
+        // Answers from the match cache are inverted the same way
+        assertEquals(3, searchEngine.countContent("file", null, tempDir.toString(), new SearchFilters(),
+                false, false, true, null).getFiles());
+        assertEquals(0, searchEngine.getProgress().getBytesScanned());
+    }
+
+    @Test
+    void testCancelledChunkedScanIsNotCachedOrReported() throws IOException {
+        Path logs = Files.createDirectory(tempDir.resolve("logs"));
+        // Two chunks, the match only in the second
+        byte[] content = (("2024-01-01 ok\n".repeat(1_300_000)) + "2024-01-02 ERROR disk full\n").getBytes(StandardCharsets.US_ASCII);
+        assertTrue(content.length > ParallelScan.DEFAULT_CHUNK_SIZE);
+        Files.write(logs.resolve("app.log"), content);
+        config.setParallelScanThresholdMb(1);
+        searchEngine.close();
+        searchEngine = new SearchEngine(config);
+
+        // Cancelled once the file is being read: before any chunk is scanned, or, where the device is
+        // not split, right after the whole file was
+        searchEngine.setCancellation(() -> StackWalker.getInstance().walk(frames -> frames.anyMatch(frame ->
+                frame.getClassName().startsWith(ParallelScan.class.getName()) || frame.getMethodName().equals("scanFile"))));
+        assertEquals(0, searchEngine.countContent("disk full", null, logs.toString(), new SearchFilters(),
+                false, false, true, null).getFiles());
+        assertEquals(0, searchEngine.countContent("disk full", null, logs.toString(), new SearchFilters(),
+                false, false, false, null).getFiles());
+
+        // Nothing was cached, the file is read again and found
+        searchEngine.setCancellation(null);
+        assertEquals(1, searchEngine.countContent("disk full", null, logs.toString(), new SearchFilters(),
+                false, false, false, null).getFiles());
+        assertEquals(content.length, searchEngine.getProgress().getBytesScanned());
+    }
+
+    @Test
+    void testMetricsOfContentSearch() {
+        assertNull(searchEngine.getMetrics());
+        List<FileResult> results = runContentSearch("hello", null, tempDir.toString(), new SearchFilters(), 100, false, false);
+
+        SearchMetrics metrics = searchEngine.getMetrics();
+        assertTrue(metrics.isFinished());
+        assertEquals(3, metrics.getCount(SearchMetrics.Phase.LISTING));
+        assertEquals(results.size(), metrics.getCount(SearchMetrics.Phase.DELIVERY));
+        assertTrue(metrics.getCount(SearchMetrics.Phase.MATCHING) >= results.size());
+        assertTrue(metrics.getNanos(SearchMetrics.Phase.MATCHING) > 0);
+        assertTrue(metrics.getSummary().allocatedBytes() > 0);
+    }
+
+    @Test
+    void testFlightRecorderEvents() throws IOException {
+        Path dump = indexDir.resolve("search.jfr");
+        try (Recording recording = new Recording()) {
+            for (String event : List.of("Search", "DirectoryListing", "FileScan", "SearchCancelled")) {
+                recording.enable("org.fastsearch." + event).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+            runContentSearch("hello", null, tempDir.toString(), new SearchFilters(), 100, false, false);
+            searchEngine.setCancellation(() -> true);
+            runContentSearch("hello", null, tempDir.toString(), new SearchFilters(), 100, false, false);
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        Map<String, List<RecordedEvent>> events = RecordingFile.readAllEvents(dump).stream()
+                .collect(Collectors.groupingBy(event -> event.getEventType().getName()));
+        List<RecordedEvent> searches = events.get("org.fastsearch.Search");
+        assertEquals(2, searches.size());
+        assertEquals("content", searches.get(0).getString("mode"));
+        assertEquals(2, searches.get(0).getLong("filesMatched"));
+        assertTrue(searches.get(1).getBoolean("cancelled"));
+        assertEquals(3, events.get("org.fastsearch.DirectoryListing").size());
+        assertTrue(events.get("org.fastsearch.FileScan").stream()
+                .anyMatch(event -> event.getString("file").endsWith("testFile1.txt") && event.getBoolean("matched")));
+        assertEquals(1, events.get("org.fastsearch.SearchCancelled").size());
+    }
+
+    @Test
+    void testMXBean() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        SearchEngineMXBean bean = JMX.newMXBeanProxy(server, searchEngine.getObjectName(), SearchEngineMXBean.class);
+        runContentSearch("hello", null, tempDir.toString(), new SearchFilters(), 100, false, false);
+        runContentSearch("hello", null, tempDir.toString(), new SearchFilters(), 100, false, false);
+
+        assertEquals(2, bean.getSearchCount());
+        assertEquals(2 * searchEngine.getProgress().getFilesSeen(), bean.getTotalFilesSeen());
+        // The second search is answered from the match cache
+        assertEquals(0.5, bean.getMatchCacheHitRate(), 0.01);
+        assertFalse(bean.isSearching());
+        assertEquals(0, bean.getFilesPerSecond());
+        // The temporary folder's device, read with at least one file at a time
+        assertEquals(1, bean.getDeviceLimits().size());
+        assertTrue(bean.getDeviceLimits().values().iterator().next() >= 1);
+
+        bean.resizeParallelism(3);
+        assertEquals(3, bean.getParallelism());
+        assertEquals(3, runContentSearch("file", "txt", tempDir.toString(), new SearchFilters(), 100, false, false).size());
+        assertThrows(IllegalArgumentException.class, () -> bean.resizeParallelism(0));
+
+        searchEngine.close();
+        assertFalse(server.isRegistered(searchEngine.getObjectName()));
+    }
+
     @Test
     void testMaxResults() {
         List<FileResult> results = runContentSearch("file", null, tempDir.toString(), new SearchFilters(), 2, false, false);
         assertEquals(2, results.size());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testIndexedContentSearch() throws IOException {
+        config.setIndexEnabled(true);
+        config.setIndexDirectory(indexDir.toString());
+        searchEngine = new SearchEngine(config);
+        int indexed = searchEngine.rebuildIndex(tempDir.toString(), null);
+        assertTrue(indexed >= 7);
+        assertTrue(Files.exists(indexDir.resolve("content.idx")));
+
+        List<FileResult> results = runContentSearch("hello", null, tempDir.toString(), new SearchFilters(), 10, false, false);
+        assertEquals(2, results.size());
+
+        results = runContentSearch("Hello", null, tempDir.toString(), new SearchFilters(), 10, true, false);
+        assertEquals(1, results.size());
+        assertEquals("testFile1.txt", results.get(0).getName());
+
+        results = runContentSearch("\\bsub.*", null, tempDir.resolve("subdir").toString(), new SearchFilters(), 10, false, true);
+        assertEquals(1, results.size());
+    }
+
+    @Test
+    void testIndexIsReloadedFromDisk() throws Exception {
+        config.setIndexEnabled(true);
+        config.setIndexDirectory(indexDir.toString());
+        try (SearchEngine indexer = new SearchEngine(config)) {
+            indexer.rebuildIndex(tempDir.toString(), null);
+        }
+
+        // A file created while nothing was watching is picked up when the loaded index is reconciled
+        Files.writeString(tempDir.resolve("late.txt"), "hello from a late file");
+        searchEngine = new SearchEngine(config);
+        long deadline = System.currentTimeMillis() + 10_000;
+        List<FileResult> results = runContentSearch("hello", null, tempDir.toString(), new SearchFilters(), 10, false, false);
+        while (results.size() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+            results = runContentSearch("hello", null, tempDir.toString(), new SearchFilters(), 10, false, false);
+        }
+        assertEquals(3, results.size());
+    }
+
+    @Test
+    void testIndexIgnoredWhenSettingsChange() throws IOException {
+        config.setIndexEnabled(true);
+        config.setIndexDirectory(indexDir.toString());
+        try (SearchEngine indexer = new SearchEngine(config)) {
+            indexer.rebuildIndex(tempDir.toString(), null);
+        }
+
+        Files.writeString(tempDir.resolve("late.txt"), "hello from a late file");
+        config.getExcludePatterns().add("*.tmp");
+        searchEngine = new SearchEngine(config);
+        List<FileResult> results = runContentSearch("hello", null, tempDir.toString(), new SearchFilters(), 10, false, false);
+        assertEquals(3, results.size());
+    }
+
+    @Test
+    void testIndexedFilenameSearch() throws IOException {
+        config.setIndexEnabled(true);
+        config.setIndexDirectory(indexDir.toString());
+        searchEngine = new SearchEngine(config);
+        searchEngine.rebuildIndex(tempDir.toString(), null);
+
+        List<FileResult> results = runFilenameSearch("testFile", null, tempDir.toString(), new SearchFilters(), 10, false);
+        assertEquals(4, results.size());
+
+        results = runFilenameSearch("test*.log", null, tempDir.toString(), new SearchFilters(), 10, false);
+        assertEquals(1, results.size());
+        assertEquals("testFile2.log", results.get(0).getName());
+
+        results = runFilenameSearch("test", "txt", tempDir.resolve("subdir").toString(), new SearchFilters(), 10, false);
+        assertEquals(1, results.size());
+        assertEquals("testFile3.txt", results.get(0).getName());
+
+        // Deleted files are dropped even before the index is rebuilt
+        Files.delete(tempDir.resolve("testFile1.txt"));
+        results = runFilenameSearch("testFile1", null, tempDir.toString(), new SearchFilters(), 10, false);
+        assertEquals(0, results.size());
+    }
+}
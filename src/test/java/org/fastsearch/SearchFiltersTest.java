@@ -7,6 +7,7 @@ import org.junit.jupiter.api.io.TempDir;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -142,6 +143,48 @@ public class SearchFiltersTest {
         assertDoesNotThrow(() -> filters.setModifiedBefore(dateTime));
     }
 
+    @Test
+    void testMatchesAttributeValues() {
+        LocalDateTime after = LocalDateTime.of(2024, 3, 1, 12, 0);
+        long afterMillis = after.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        filters.setMinSize(100L);
+        filters.setModifiedAfter(after);
+
+        assertTrue(filters.matches(100, afterMillis));
+        assertFalse(filters.matches(99, afterMillis));
+        assertFalse(filters.matches(100, afterMillis - 1));
+    }
+
+    @Test
+    void testModifiedBoundsWithSubMillisecondPrecision() {
+        LocalDateTime bound = LocalDateTime.of(2024, 3, 1, 12, 0, 0, 500_000);
+        long boundMillis = bound.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+        filters.setModifiedAfter(bound);
+        assertFalse(filters.matches(0, boundMillis));
+        assertTrue(filters.matches(0, boundMillis + 1));
+
+        filters = new SearchFilters();
+        filters.setModifiedBefore(bound);
+        assertTrue(filters.matches(0, boundMillis));
+        assertFalse(filters.matches(0, boundMillis + 1));
+    }
+
+    @Test
+    void testModifiedBoundsFarFromTheEpoch() {
+        // Beyond what nanoseconds since the epoch can hold in a long
+        filters.setModifiedBefore(LocalDateTime.of(2500, 1, 1, 0, 0));
+        filters.setModifiedAfter(LocalDateTime.of(1500, 1, 1, 0, 0));
+        assertTrue(filters.matches(testResult));
+
+        filters.setModifiedBefore(LocalDateTime.MAX);
+        filters.setModifiedAfter(LocalDateTime.MIN);
+        assertTrue(filters.matches(testResult));
+
+        filters.setModifiedAfter(LocalDateTime.MAX);
+        assertFalse(filters.matches(testResult));
+    }
+
     @Test
     void testNullMinSize() {
         filters.setMinSize(null);
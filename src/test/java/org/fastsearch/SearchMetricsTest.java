@@ -0,0 +1,46 @@
+package org.fastsearch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchMetricsTest {
+
+    @Test
+    void testPhasesAddUp() {
+        SearchMetrics metrics = new SearchMetrics();
+        metrics.add(SearchMetrics.Phase.MATCHING, 1_000_000);
+        metrics.add(SearchMetrics.Phase.MATCHING, 500_000);
+        metrics.add(SearchMetrics.Phase.DELIVERY, 200);
+
+        assertEquals(2, metrics.getCount(SearchMetrics.Phase.MATCHING));
+        assertEquals(1_500_000, metrics.getNanos(SearchMetrics.Phase.MATCHING));
+        assertEquals(0, metrics.getCount(SearchMetrics.Phase.LISTING));
+
+        SearchMetrics.Summary summary = metrics.getSummary();
+        assertEquals(SearchMetrics.Phase.values().length, summary.phases().size());
+        assertTrue(summary.format().contains("Reading and matching"));
+        assertTrue(summary.format().contains("1.5 ms"));
+    }
+
+    @Test
+    void testAllocationsOfThreadsAreAttributed() {
+        SearchMetrics metrics = new SearchMetrics();
+        List<Thread> threads = List.of(Thread.currentThread());
+        metrics.start(threads);
+        byte[][] garbage = new byte[64][];
+        for (int i = 0; i < garbage.length; i++) {
+            garbage[i] = new byte[64 * 1024];
+        }
+        assertFalse(metrics.isFinished());
+        metrics.finish(threads);
+
+        assertTrue(metrics.isFinished());
+        List<SearchMetrics.ThreadAllocation> allocations = metrics.getAllocations();
+        assertEquals(1, allocations.size());
+        assertEquals(Thread.currentThread().getName(), allocations.get(0).thread());
+        assertTrue(allocations.get(0).bytes() >= 64 * 64 * 1024, allocations.toString());
+    }
+}
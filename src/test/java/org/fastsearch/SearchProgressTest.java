@@ -0,0 +1,49 @@
+package org.fastsearch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchProgressTest {
+
+    @Test
+    void testCountersAddUp() {
+        SearchProgress progress = new SearchProgress();
+        progress.directoriesFound(1);
+        progress.directoryVisited("/data");
+        progress.filesSeen(3);
+        progress.filesSeen(2);
+        progress.bytesScanned(1000);
+        progress.fileMatched();
+
+        assertEquals(1, progress.getDirectoriesVisited());
+        assertEquals(5, progress.getFilesSeen());
+        assertEquals(1000, progress.getBytesScanned());
+        assertEquals(1, progress.getFilesMatched());
+        assertEquals("/data", progress.getCurrentDirectory());
+    }
+
+    @Test
+    void testEstimateUnknownBeforeFirstDirectory() {
+        SearchProgress progress = new SearchProgress();
+        progress.directoriesFound(4);
+        assertEquals(-1, progress.getEstimatedMillisLeft());
+        assertNull(progress.getCurrentDirectory());
+    }
+
+    @Test
+    void testEstimateFollowsPendingDirectories() throws InterruptedException {
+        SearchProgress progress = new SearchProgress();
+        progress.directoriesFound(3);
+        progress.directoryVisited("/a");
+        Thread.sleep(20);
+
+        // Two directories left at the rate of the first one
+        long estimate = progress.getEstimatedMillisLeft();
+        assertTrue(estimate >= 2 * 20 && estimate <= 2 * progress.getElapsedMillis(), "estimate " + estimate);
+
+        progress.directoryVisited("/b");
+        progress.directoryVisited("/c");
+        assertEquals(0, progress.getEstimatedMillisLeft());
+    }
+}
@@ -0,0 +1,129 @@
+package org.fastsearch;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrigramIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private TrigramIndex index;
+    private Path hello;
+    private Path logFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        hello = tempDir.resolve("hello.txt");
+        Files.writeString(hello, "Hello World from the index test.");
+        logFile = tempDir.resolve("app.log");
+        Files.writeString(logFile, "ERROR 1234 something failed\nINFO all good");
+
+        index = new TrigramIndex(List.of(tempDir.toString()), "test");
+        add(hello);
+        add(logFile);
+    }
+
+    private void add(Path file) throws IOException {
+        index.addDocument(file.toString(), Files.size(file), Files.getLastModifiedTime(file).toMillis(),
+                TrigramIndex.extractTrigrams(file));
+    }
+
+    @Test
+    void testLiteralCandidates() {
+        List<String> candidates = index.candidates(tempDir.toString(), "world");
+        assertEquals(List.of(hello.toString()), candidates);
+    }
+
+    @Test
+    void testCandidatesAreCaseInsensitive() {
+        assertEquals(List.of(logFile.toString()), index.candidates(tempDir.toString(), "error"));
+        assertEquals(List.of(logFile.toString()), index.candidates(tempDir.toString(), "Error"));
+    }
+
+    @Test
+    void testMissingTrigramHasNoCandidates() {
+        assertTrue(index.candidates(tempDir.toString(), "nonexistent").isEmpty());
+    }
+
+    @Test
+    void testShortOrNullLiteralSelectsAllFiles() {
+        assertEquals(2, index.candidates(tempDir.toString(), "o").size());
+        assertEquals(2, index.candidates(tempDir.toString(), null).size());
+    }
+
+    @Test
+    void testTrigramsDoNotSpanLines() {
+        // "failed\nINFO" would produce "d\nI" style trigrams if lines were not split
+        assertTrue(index.candidates(tempDir.toString(), "dIN").isEmpty());
+        assertEquals(1, index.candidates(tempDir.toString(), "INFO all").size());
+    }
+
+    @Test
+    void testCandidatesRestrictedToRoot() throws IOException {
+        Path subdir = Files.createDirectory(tempDir.resolve("sub"));
+        Path nested = subdir.resolve("nested.txt");
+        Files.writeString(nested, "Hello again");
+        add(nested);
+
+        assertEquals(List.of(nested.toString()), index.candidates(subdir.toString(), "hello"));
+        assertEquals(2, index.candidates(tempDir.toString(), "hello").size());
+    }
+
+    @Test
+    void testCandidatesForAllLiterals() {
+        assertEquals(List.of(logFile.toString()), index.candidatesForAll(tempDir.toString(), List.of("error", "failed")));
+        assertTrue(index.candidatesForAll(tempDir.toString(), List.of("error", "world")).isEmpty());
+        assertEquals(2, index.candidatesForAll(tempDir.toString(), List.of()).size());
+    }
+
+    @Test
+    void testCovers() {
+        assertTrue(index.covers(tempDir.toString()));
+        assertTrue(index.covers(tempDir.resolve("sub").toString()));
+        assertFalse(index.covers(tempDir.toString() + "other"));
+        assertFalse(index.covers(tempDir.getParent().toString()));
+    }
+
+    @Test
+    void testReplaceAndRemoveDocument() throws IOException {
+        Files.writeString(hello, "Completely different content");
+        add(hello);
+        assertTrue(index.candidates(tempDir.toString(), "world").isEmpty());
+        assertEquals(List.of(hello.toString()), index.candidates(tempDir.toString(), "different"));
+        assertEquals(2, index.size());
+
+        index.removeDocument(logFile.toString());
+        assertTrue(index.candidates(tempDir.toString(), "error").isEmpty());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void testSaveAndLoad() throws IOException {
+        index.removeDocument(hello.toString());
+        Path file = tempDir.resolve("index/content.idx");
+        index.save(file);
+
+        TrigramIndex loaded = TrigramIndex.load(file);
+        assertEquals("test", loaded.getSignature());
+        assertEquals(List.of(tempDir.toString()), loaded.getRoots());
+        assertEquals(1, loaded.size());
+        assertEquals(List.of(logFile.toString()), loaded.candidates(tempDir.toString(), "something"));
+        assertTrue(loaded.candidates(tempDir.toString(), "world").isEmpty());
+    }
+
+    @Test
+    void testLoadRejectsForeignFile() throws IOException {
+        Path file = tempDir.resolve("garbage.idx");
+        Files.writeString(file, "not an index at all");
+        assertThrows(IOException.class, () -> TrigramIndex.load(file));
+    }
+}